@@ -0,0 +1,172 @@
+package libsys.comp41720.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.dto.BookImportReport;
+import libsys.comp41720.bookservice.repository.BookImportRepository;
+import libsys.comp41720.bookservice.repository.BookInventoryRepository;
+import libsys.comp41720.bookservice.repository.BookRepository;
+import libsys.comp41720.bookservice.repository.BookStreamingRepository;
+import libsys.comp41720.bookservice.search.BookFacetCounters;
+import libsys.comp41720.bookservice.search.BookSearchIndex;
+import libsys.comp41720.bookservice.search.BookSuggestIndex;
+import libsys.comp41720.bookservice.service.BookImportService;
+import libsys.comp41720.bookservice.service.BookManagementService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// A million-row upload through BookImportService into PostgreSQL (see PostgresFixture), with the search, suggest
+// and facet indexes the service keeps up to date, so the time is what POST /api/books/import costs end to end
+// minus HTTP. Every thousandth CSV title is quoted and spans lines. Each iteration starts from an empty table and
+// fails if any row is rejected. The indexes hold every imported book, so give the fork a large heap.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class BookImportBenchmark {
+
+    @Param({"CSV", "NDJSON"})
+    private BookImportService.Format format;
+
+    @Param({"500", "5000"})
+    private int batchSize;
+
+    @Param({"1000000"})
+    private int rows;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] upload;
+    private BookImportService importService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = PostgresFixture.dataSource(4);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        PostgresFixture.createBooksTable(jdbcTemplate);
+        upload = format == BookImportService.Format.CSV ? csv() : ndjson();
+    }
+
+    // The indexes are rebuilt with the table, so each iteration imports into an empty catalog
+    @Setup(Level.Iteration)
+    public void emptyCatalog() throws ReflectiveOperationException {
+        jdbcTemplate.execute("TRUNCATE books RESTART IDENTITY");
+        importService = newImportService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public BookImportReport importBooks() throws IOException {
+        BookImportReport report = importService.importBooks(new ByteArrayInputStream(upload), format);
+        if (report.getImported() != rows || report.getRejected() != 0) {
+            throw new IllegalStateException("Imported " + report.getImported() + " of " + rows + " rows, first errors: "
+                    + report.getErrors().subList(0, Math.min(5, report.getErrors().size())));
+        }
+        return report;
+    }
+
+    private BookImportService newImportService() throws ReflectiveOperationException {
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(dataSource);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Registering imported books never reads through the JPA repository
+        BookRepository unusedRepository = (BookRepository) Proxy.newProxyInstance(
+                BookRepository.class.getClassLoader(), new Class<?>[]{BookRepository.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        BookManagementService managementService = new BookManagementService(
+                unusedRepository,
+                new BookInventoryRepository(named),
+                new BookAvailabilityCache(rows, Duration.ofSeconds(30), meterRegistry),
+                new BookSearchIndex(named),
+                new BookSuggestIndex(named, meterRegistry, 32, 8, "popularity"),
+                new BookFacetCounters(named, new CatalogVersion(), meterRegistry, Duration.ofMinutes(5)),
+                new BookStreamingRepository(dataSource, 500),
+                event -> { });
+        BookImportService service = new BookImportService(new BookImportRepository(named), managementService,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+        setField(service, "batchSize", batchSize);
+        setField(service, "maxReportedErrors", 1000);
+        return service;
+    }
+
+    // Stands in for the @Value injection the service gets from Spring
+    private static void setField(Object target, String name, int value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.setInt(target, value);
+    }
+
+    private byte[] csv() {
+        StringBuilder csv = new StringBuilder(rows * 96);
+        csv.append("isbn,title,author,publisher,publication_year,category,total_copies\n");
+        for (int i = 1; i <= rows; i++) {
+            String title = i % 1000 == 0 ? "\"Collected Papers, Volume " + i + "\nSecond Edition\"" : "Book " + i;
+            csv.append(PostgresFixture.isbn(i)).append(',')
+                    .append(title).append(',')
+                    .append(author(i)).append(',')
+                    .append("Benchmark Press,")
+                    .append(1950 + i % 75).append(',')
+                    .append(category(i)).append(',')
+                    .append(1 + i % 5).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] ndjson() {
+        StringBuilder ndjson = new StringBuilder(rows * 160);
+        for (int i = 1; i <= rows; i++) {
+            ndjson.append("{\"isbn\":\"").append(PostgresFixture.isbn(i))
+                    .append("\",\"title\":\"Book ").append(i)
+                    .append("\",\"author\":\"").append(author(i))
+                    .append("\",\"publisher\":\"Benchmark Press\",\"publicationYear\":").append(1950 + i % 75)
+                    .append(",\"category\":\"").append(category(i))
+                    .append("\",\"totalCopies\":").append(1 + i % 5).append("}\n");
+        }
+        return ndjson.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String author(int i) {
+        return "Author " + i % 5000;
+    }
+
+    private static String category(int i) {
+        return switch (i % 4) {
+            case 0 -> "Computer Science";
+            case 1 -> "Mathematics";
+            case 2 -> "Engineering";
+            default -> "Fiction";
+        };
+    }
+}
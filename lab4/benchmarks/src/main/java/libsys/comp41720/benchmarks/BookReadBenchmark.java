@@ -0,0 +1,123 @@
+package libsys.comp41720.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.repository.BookRepository;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Catalog reads through Hibernate against PostgreSQL (see PostgresFixture), the way BookManagementService did them
+// before and after moving to projections: entity loads every managed Book in a read-only transaction and copies it
+// with BookDTO.fromEntity; projection runs the JPQL constructor queries BookRepository now has, and looks single
+// books up by natural id through the second-level cache. Run with -prof gc for the allocation per request
+// (gc.alloc.rate.norm) next to the latency.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookReadBenchmark {
+
+    @Param({"entity", "projection"})
+    private String path;
+
+    @Param({"findAll", "findByCategory", "findByIsbn"})
+    private String read;
+
+    @Param({"10000"})
+    private int books;
+
+    private HikariDataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private BookRepository bookRepository;
+    private TransactionTemplate readOnly;
+
+    @Setup
+    public void setUp() {
+        dataSource = PostgresFixture.dataSource(4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        PostgresFixture.createBooksTable(jdbcTemplate);
+        if (jdbcTemplate.queryForObject("SELECT count(*) FROM books", Long.class) != books) {
+            PostgresFixture.seedBooks(jdbcTemplate, books, 3);
+        }
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan(Book.class.getPackageName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Second-level cache settings as in book-service's application.properties
+        factory.setJpaPropertyMap(Map.of(
+                "hibernate.cache.use_second_level_cache", "true",
+                "hibernate.cache.region.factory_class", "jcache",
+                "hibernate.javax.cache.provider", "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+                "hibernate.javax.cache.missing_cache_strategy", "create"));
+        factory.afterPropertiesSet();
+        entityManagerFactory = factory.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        bookRepository = new JpaRepositoryFactory(entityManager).getRepository(BookRepository.class);
+        readOnly = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Object readBooks() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (read) {
+            case "findAll" -> path.equals("entity")
+                    ? readOnly.execute(status -> toDtos(bookRepository.findAll()))
+                    : readOnly.execute(status -> bookRepository.findAllDtos());
+            case "findByCategory" -> path.equals("entity")
+                    ? readOnly.execute(status -> toDtos(bookRepository.findByCategory("Fiction")))
+                    : readOnly.execute(status -> bookRepository.findDtosByCategory("Fiction"));
+            case "findByIsbn" -> findByIsbn(PostgresFixture.isbn(1 + random.nextInt(books)));
+            default -> throw new IllegalArgumentException("Unknown read " + read);
+        };
+    }
+
+    private BookDTO findByIsbn(String isbn) {
+        return readOnly.execute(status -> (path.equals("entity")
+                ? bookRepository.findByIsbn(isbn)
+                : entityManager.unwrap(Session.class).bySimpleNaturalId(Book.class).loadOptional(isbn))
+                .map(BookDTO::fromEntity)
+                .orElseThrow());
+    }
+
+    private static List<BookDTO> toDtos(List<Book> books) {
+        return books.stream().map(BookDTO::fromEntity).collect(Collectors.toList());
+    }
+}
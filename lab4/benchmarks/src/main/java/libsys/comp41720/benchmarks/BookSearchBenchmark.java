@@ -0,0 +1,114 @@
+package libsys.comp41720.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import libsys.comp41720.bookservice.search.BookSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Title and author search against PostgreSQL (see PostgresFixture): like is the LOWER(..) LIKE '%term%' query the
+// service falls back to before the index is built, index is BookSearchIndex followed by loading the winning rows
+// by id, as BookManagementService does. Both return at most limit rows.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookSearchBenchmark {
+
+    private static final String LIKE_SQL = """
+            SELECT id, isbn, title, author, available_copies, status
+            FROM books
+            WHERE LOWER(%s) LIKE LOWER('%%' || :term || '%%')
+            LIMIT :limit
+            """;
+
+    private static final String BY_ID_SQL = """
+            SELECT id, isbn, title, author, available_copies, status
+            FROM books
+            WHERE id IN (:ids)
+            """;
+
+    @Param({"like", "index"})
+    private String path;
+
+    @Param({"title:concurrent compilers", "title:networks 4242", "author:lamport"})
+    private String search;
+
+    @Param({"200000"})
+    private int books;
+
+    @Param({"50"})
+    private int limit;
+
+    private HikariDataSource dataSource;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private BookSearchIndex searchIndex;
+    private String column;
+    private Set<BookSearchIndex.Field> fields;
+    private String term;
+
+    @Setup
+    public void setUp() {
+        dataSource = PostgresFixture.dataSource(2);
+        JdbcTemplate plain = new JdbcTemplate(dataSource);
+        if (count(plain) != books) {
+            PostgresFixture.seedBooks(plain, books, 1);
+        }
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+
+        String[] parts = search.split(":", 2);
+        column = parts[0];
+        fields = EnumSet.of(column.equals("title") ? BookSearchIndex.Field.TITLE : BookSearchIndex.Field.AUTHOR);
+        // The fallback matches the whole phrase, so only single-phrase searches are compared like for like
+        term = parts[1];
+        if (path.equals("index")) {
+            searchIndex = new BookSearchIndex(jdbcTemplate);
+            searchIndex.build();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> search() {
+        if (path.equals("like")) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("term", term)
+                    .addValue("limit", limit);
+            return jdbcTemplate.queryForList(String.format(LIKE_SQL, column), params);
+        }
+        List<Long> ids = searchIndex.search(term, fields, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(BY_ID_SQL, new MapSqlParameterSource("ids", ids));
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate) {
+        PostgresFixture.createBooksTable(jdbcTemplate);
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM books", Long.class);
+    }
+}
@@ -0,0 +1,68 @@
+package libsys.comp41720.benchmarks;
+
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.service.BorrowManagementService;
+import libsys.comp41720.events.BorrowEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// What publishBorrowEvent does before handing the record to the Kafka producer: build the Avro event and run it
+// through the same serializer the producer is configured with. An in-memory registry stands in for the schema
+// registry, so after the first call the schema id comes from the serializer's cache, as it does in production.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BorrowEventSerializationBenchmark {
+
+    private static final String TOPIC = "borrow-events";
+
+    private BorrowRecord record;
+    private BorrowEvent event;
+    private KafkaAvroSerializer serializer;
+
+    @Setup
+    public void setUp() {
+        record = Fixtures.borrowRecord();
+        event = BorrowManagementService.toBorrowEvent(record, "BORROW");
+        serializer = new KafkaAvroSerializer(new MockSchemaRegistryClient(),
+                Map.of("schema.registry.url", "mock://benchmarks", "auto.register.schemas", true));
+        serializer.serialize(TOPIC, event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+    }
+
+    @Benchmark
+    public BorrowEvent buildEvent() {
+        return BorrowManagementService.toBorrowEvent(record, "BORROW");
+    }
+
+    @Benchmark
+    public byte[] serializeEvent() {
+        return serializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeEvent() {
+        return serializer.serialize(TOPIC, BorrowManagementService.toBorrowEvent(record, "BORROW"));
+    }
+}
@@ -0,0 +1,234 @@
+package libsys.comp41720.benchmarks;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.repository.BorrowRecordRepository;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Every BorrowRecordRepository query against a local MongoDB holding a synthetic borrow history, indexed the way
+// BorrowRecord declares. Before measuring, setup explains the find command the repository actually sends and
+// fails the trial if the winning plan scans the collection or reads documents it does not return; run with
+// -foe true so an index regression fails the run; BorrowRecordQueryPlanTest makes the same check on a small
+// history in the borrow-service build. The seeded collection is reused while its size matches.
+// The server is taken from -Dbenchmark.mongodb.uri (default mongodb://localhost:27017).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BorrowQueryBenchmark {
+
+    private static final String DATABASE = "borrow_query_benchmark";
+    private static final int MEMBERS = 50_000;
+    private static final int BOOKS = 20_000;
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"findByMemberId", "findByBookIsbn", "findByStatus", "findActiveBorrowsByMember",
+            "findOverdueBorrows", "findActiveBorrowByMemberAndBook"})
+    private String query;
+
+    @Param({"1000000"})
+    private int records;
+
+    private final FindCapture finds = new FindCapture();
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private BorrowRecordRepository repository;
+
+    @Setup
+    public void setUp() {
+        String uri = System.getProperty("benchmark.mongodb.uri", "mongodb://localhost:27017");
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .addCommandListener(finds)
+                .build());
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        repository = new MongoRepositoryFactory(mongoTemplate).getRepository(BorrowRecordRepository.class);
+
+        if (mongoTemplate.estimatedCount(BorrowRecord.class) != records) {
+            seed();
+        }
+        createDeclaredIndexes();
+
+        // Explain with the arguments of a real active loan so every query has something to find
+        BorrowRecord sample = mongoTemplate.findOne(
+                Query.query(Criteria.where("status").is(BorrowRecord.BorrowStatus.ACTIVE)), BorrowRecord.class);
+        if (sample == null) {
+            throw new IllegalStateException("Seeded history has no active borrows");
+        }
+        run(sample.getMemberId(), sample.getBookIsbn());
+        checkPlan(finds.last);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public List<BorrowRecord> runQuery() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return run(memberId(random.nextInt(MEMBERS)), isbn(random.nextInt(BOOKS)));
+    }
+
+    private List<BorrowRecord> run(String memberId, String isbn) {
+        return switch (query) {
+            case "findByMemberId" -> repository.findByMemberId(memberId);
+            case "findByBookIsbn" -> repository.findByBookIsbn(isbn);
+            case "findByStatus" -> repository.findByStatus(BorrowRecord.BorrowStatus.ACTIVE);
+            case "findActiveBorrowsByMember" -> repository.findActiveBorrowsByMember(memberId);
+            case "findOverdueBorrows" -> repository.findOverdueBorrows(LocalDate.now());
+            case "findActiveBorrowByMemberAndBook" -> repository.findActiveBorrowByMemberAndBook(memberId, isbn);
+            default -> throw new IllegalArgumentException("Unknown query " + query);
+        };
+    }
+
+    private void checkPlan(BsonDocument find) {
+        if (find == null) {
+            throw new IllegalStateException(query + " sent no find command");
+        }
+        // Session and cluster fields belong to the original command, not to the explain
+        BsonDocument explained = new BsonDocument();
+        find.forEach((key, value) -> {
+            if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+                explained.put(key, value);
+            }
+        });
+        Document explain = mongoTemplate.getDb().runCommand(
+                new Document("explain", explained).append("verbosity", "executionStats"));
+
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        Set<String> stages = new LinkedHashSet<>();
+        Set<String> indexes = new LinkedHashSet<>();
+        collectStages(queryPlanner.get("winningPlan"), stages, indexes);
+        Document stats = explain.get("executionStats", Document.class);
+        long returned = ((Number) stats.get("nReturned")).longValue();
+        long docsExamined = ((Number) stats.get("totalDocsExamined")).longValue();
+        long keysExamined = ((Number) stats.get("totalKeysExamined")).longValue();
+        long millis = ((Number) stats.get("executionTimeMillis")).longValue();
+
+        System.out.printf("%n%s: stages %s, indexes %s, %d returned, %d docs / %d keys examined, %d ms%n",
+                query, stages, indexes, returned, docsExamined, keysExamined, millis);
+        if (stages.contains("COLLSCAN")) {
+            throw new IllegalStateException(query + " scans the collection: " + stages);
+        }
+        if (docsExamined > returned) {
+            throw new IllegalStateException(query + " examines " + docsExamined + " documents to return "
+                    + returned + "; its index does not cover the filter");
+        }
+    }
+
+    // Classic and slot-based plans nest stages differently, so every nested document is searched
+    private static void collectStages(Object node, Set<String> stages, Set<String> indexes) {
+        if (node instanceof Map<?, ?> map) {
+            if (map.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            if (map.get("indexName") instanceof String indexName) {
+                indexes.add(indexName);
+            }
+            map.values().forEach(value -> collectStages(value, stages, indexes));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages, indexes));
+        }
+    }
+
+    // Drops stale indexes too, so the plans checked are the ones the current annotations give
+    private void createDeclaredIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(BorrowRecord.class);
+        indexOps.dropAllIndexes();
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        IndexResolver.create(mappingContext).resolveIndexFor(BorrowRecord.class).forEach(indexOps::ensureIndex);
+    }
+
+    // Two years of history: most loans returned, the rest out and about half of those already marked overdue
+    private void seed() {
+        mongoTemplate.dropCollection(BorrowRecord.class);
+        Random random = new Random(41720);
+        LocalDate today = LocalDate.now();
+        List<BorrowRecord> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < records; i++) {
+            boolean active = random.nextInt(100) < 8;
+            LocalDate borrowDate = today.minusDays(active ? random.nextInt(28) : 28 + random.nextInt(700));
+            BorrowRecord record = new BorrowRecord();
+            record.setMemberId(memberId(random.nextInt(MEMBERS)));
+            record.setMemberName("Member " + i);
+            record.setMemberEmail("member" + i + "@example.com");
+            record.setBookIsbn(isbn(random.nextInt(BOOKS)));
+            record.setBookTitle("Book " + record.getBookIsbn());
+            record.setBorrowDate(borrowDate);
+            record.setDueDate(borrowDate.plusDays(14));
+            record.setReturnDate(active ? null : borrowDate.plusDays(random.nextInt(21)));
+            record.setStatus(!active ? BorrowRecord.BorrowStatus.RETURNED
+                    : record.getDueDate().isBefore(today) ? BorrowRecord.BorrowStatus.OVERDUE
+                    : BorrowRecord.BorrowStatus.ACTIVE);
+            record.setCreatedAt(borrowDate.atStartOfDay());
+            record.setUpdatedAt(LocalDateTime.now());
+            batch.add(record);
+            if (batch.size() == INSERT_BATCH) {
+                mongoTemplate.insert(batch, BorrowRecord.class);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, BorrowRecord.class);
+        }
+    }
+
+    private static String memberId(int n) {
+        return "M-" + n;
+    }
+
+    private static String isbn(int n) {
+        return String.format("978-0-%06d", n);
+    }
+
+    // Keeps the last find command sent, as the driver serialized it
+    private static final class FindCapture implements CommandListener {
+        private volatile BsonDocument last;
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            if ("find".equals(event.getCommandName())) {
+                last = event.getCommand().clone();
+            }
+        }
+    }
+}
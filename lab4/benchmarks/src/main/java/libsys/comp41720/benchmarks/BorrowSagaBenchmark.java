@@ -0,0 +1,230 @@
+package libsys.comp41720.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import libsys.comp41720.borrowservice.dto.BorrowRecordDTO;
+import libsys.comp41720.borrowservice.dto.BorrowRequest;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.grpc.BookServiceGrpcClient;
+import libsys.comp41720.borrowservice.grpc.GrpcDeadlineInterceptor;
+import libsys.comp41720.borrowservice.outbox.BorrowEventOutbox;
+import libsys.comp41720.borrowservice.repository.BorrowRecordRepository;
+import libsys.comp41720.borrowservice.repository.OutboxEventRepository;
+import libsys.comp41720.borrowservice.service.BorrowManagementService;
+import libsys.comp41720.events.BorrowEvent;
+import libsys.comp41720.grpc.BookAvailabilityRequest;
+import libsys.comp41720.grpc.BookAvailabilityResponse;
+import libsys.comp41720.grpc.BookReservationRequest;
+import libsys.comp41720.grpc.BookReservationResponse;
+import libsys.comp41720.grpc.BookServiceGrpc;
+import libsys.comp41720.grpc.HoldRequest;
+import libsys.comp41720.grpc.HoldResponse;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// End-to-end borrowBook latency against an in-process book-service and a repository that only adds Mongo-like
+// round-trip time, so what is compared is the shape of the pipeline. sequential is the flow borrowBook had
+// before: availability check, duplicate query, hold, save, confirm, one after another, then a fire-and-forget
+// Kafka send. pipelined writes the event to the outbox instead, one more Mongo round trip. SampleTime reports
+// p50/p90/p99 for both.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BorrowSagaBenchmark {
+
+    private static final String TOPIC = "borrow-events";
+
+    @Param({"1000"})
+    private long rpcLatencyMicros;
+
+    @Param({"1000"})
+    private long mongoLatencyMicros;
+
+    private ExecutorService serverExecutor;
+    private Server server;
+    private ManagedChannel channel;
+    private BookServiceGrpcClient client;
+    private BorrowRecordRepository repository;
+    private KafkaTemplate<String, BorrowEvent> kafkaTemplate;
+    private BorrowManagementService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        String name = "borrow-saga-" + UUID.randomUUID();
+        serverExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "book-service-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = InProcessServerBuilder.forName(name)
+                .executor(serverExecutor)
+                .addService(new BookServiceStandIn(TimeUnit.MICROSECONDS.toNanos(rpcLatencyMicros)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+
+        client = new BookServiceGrpcClient(null, new GrpcDeadlineInterceptor(Duration.ofSeconds(2), ""));
+        client.init(channel);
+        long mongoLatencyNanos = TimeUnit.MICROSECONDS.toNanos(mongoLatencyMicros);
+        repository = mongoStandIn(mongoLatencyNanos);
+        kafkaTemplate = new KafkaTemplate<>(() ->
+                new MockProducer<>(true, new StringSerializer(), (topic, event) -> new byte[0]));
+        // Borrowing only appends through the repository, so the outbox needs no template
+        service = new BorrowManagementService(repository, client,
+                new BorrowEventOutbox(outboxStandIn(mongoLatencyNanos), null));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public BorrowRecordDTO pipelined() {
+        return service.borrowBook(borrowRequest());
+    }
+
+    @Benchmark
+    public BorrowRecordDTO sequential() {
+        BorrowRequest request = borrowRequest();
+        if (!client.checkBookAvailability(request.getBookIsbn())) {
+            throw new IllegalStateException("Book is not available for borrowing");
+        }
+        if (!repository.findActiveBorrowByMemberAndBook(request.getMemberId(), request.getBookIsbn()).isEmpty()) {
+            throw new IllegalStateException("Member already has an active borrow for this book");
+        }
+        long holdId = client.holdBook(request.getBookIsbn(), 1, 60, null)
+                .orElseThrow(() -> new IllegalStateException("Failed to reserve book"));
+
+        BorrowRecord record = Fixtures.borrowRecord();
+        record.setId(UUID.randomUUID().toString());
+        record.setBorrowDate(LocalDate.now());
+        record.setCreatedAt(LocalDateTime.now());
+        BorrowRecord saved = repository.save(record);
+        if (!client.confirmHold(holdId)) {
+            throw new IllegalStateException("Book hold " + holdId + " could not be confirmed");
+        }
+        kafkaTemplate.send(TOPIC, saved.getId(), BorrowManagementService.toBorrowEvent(saved, "BORROW"));
+        return BorrowRecordDTO.fromEntity(saved);
+    }
+
+    private static BorrowRequest borrowRequest() {
+        BorrowRecord record = Fixtures.borrowRecord();
+        BorrowRequest request = new BorrowRequest();
+        request.setMemberId(record.getMemberId());
+        request.setMemberName(record.getMemberName());
+        request.setMemberEmail(record.getMemberEmail());
+        request.setBookIsbn(record.getBookIsbn());
+        request.setBookTitle(record.getBookTitle());
+        return request;
+    }
+
+    // Only the two calls borrowBook makes are supported; each parks for one round trip
+    private static BorrowRecordRepository mongoStandIn(long latencyNanos) {
+        return (BorrowRecordRepository) Proxy.newProxyInstance(BorrowRecordRepository.class.getClassLoader(),
+                new Class<?>[]{BorrowRecordRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findActiveBorrowByMemberAndBook":
+                            LockSupport.parkNanos(latencyNanos);
+                            return List.of();
+                        case "save":
+                            LockSupport.parkNanos(latencyNanos);
+                            return args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    // Only the insert the outbox makes; one round trip
+    private static OutboxEventRepository outboxStandIn(long latencyNanos) {
+        return (OutboxEventRepository) Proxy.newProxyInstance(OutboxEventRepository.class.getClassLoader(),
+                new Class<?>[]{OutboxEventRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("insert")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    LockSupport.parkNanos(latencyNanos);
+                    return args[0];
+                });
+    }
+
+    // Always has a copy; every call takes one round trip of server-side work
+    private static final class BookServiceStandIn extends BookServiceGrpc.BookServiceImplBase {
+        private final long latencyNanos;
+        private final AtomicLong holdIds = new AtomicLong();
+
+        private BookServiceStandIn(long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public void checkBookAvailability(BookAvailabilityRequest request,
+                                          StreamObserver<BookAvailabilityResponse> responseObserver) {
+            LockSupport.parkNanos(latencyNanos);
+            responseObserver.onNext(BookAvailabilityResponse.newBuilder()
+                    .setAvailable(true)
+                    .setAvailableCopies(3)
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void reserveBook(BookReservationRequest request,
+                                StreamObserver<BookReservationResponse> responseObserver) {
+            LockSupport.parkNanos(latencyNanos);
+            responseObserver.onNext(BookReservationResponse.newBuilder()
+                    .setSuccess(true)
+                    .setHoldId(holdIds.incrementAndGet())
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void confirmHold(HoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+            LockSupport.parkNanos(latencyNanos);
+            responseObserver.onNext(HoldResponse.newBuilder().setSuccess(true).build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void releaseHold(HoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+            LockSupport.parkNanos(latencyNanos);
+            responseObserver.onNext(HoldResponse.newBuilder().setSuccess(true).build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package libsys.comp41720.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Many callers reserving and returning copies of one popular title. Each inventory row is a lock held for a
+// fixed amount of work, standing in for the row lock held while an UPDATE runs; branches=1 is the single
+// book row of database mode. Callers follow BranchInventoryStore: their own branch first, then any branch
+// that is not locked (tryLock for SKIP LOCKED), then waiting on the fullest one.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class BranchContentionBenchmark {
+
+    private static final int COPIES_PER_BRANCH = 1_000;
+
+    @Param({"1", "4", "16"})
+    private int branches;
+
+    // Work done while the row is locked, in Blackhole.consumeCPU tokens
+    @Param({"200"})
+    private long statementWork;
+
+    private Row[] rows;
+
+    @Setup
+    public void setUp() {
+        rows = new Row[branches];
+        for (int i = 0; i < branches; i++) {
+            rows[i] = new Row(COPIES_PER_BRANCH);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndReturn(CallerState caller) {
+        Row taken = take(rows[caller.branch % branches]);
+        if (taken == null) {
+            return false;
+        }
+        taken.lock.lock();
+        try {
+            Blackhole.consumeCPU(statementWork);
+            taken.available++;
+        } finally {
+            taken.lock.unlock();
+        }
+        return true;
+    }
+
+    private Row take(Row preferred) {
+        if (reserve(preferred, true)) {
+            return preferred;
+        }
+        for (Row row : rows) {
+            if (row != preferred && reserve(row, false)) {
+                return row;
+            }
+        }
+        Row fullest = rows[0];
+        for (Row row : rows) {
+            if (row.available > fullest.available) {
+                fullest = row;
+            }
+        }
+        return reserve(fullest, true) ? fullest : null;
+    }
+
+    private boolean reserve(Row row, boolean wait) {
+        if (wait) {
+            row.lock.lock();
+        } else if (!row.lock.tryLock()) {
+            return false;
+        }
+        try {
+            Blackhole.consumeCPU(statementWork);
+            if (row.available == 0) {
+                return false;
+            }
+            row.available--;
+            return true;
+        } finally {
+            row.lock.unlock();
+        }
+    }
+
+    // Each caller belongs to a branch, spread evenly across the configured ones
+    @State(Scope.Thread)
+    public static class CallerState {
+        private static final AtomicInteger NEXT_BRANCH = new AtomicInteger();
+
+        private int branch;
+
+        @Setup
+        public void setUp() {
+            branch = NEXT_BRANCH.getAndIncrement();
+        }
+    }
+
+    private static final class Row {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int available;
+
+        private Row(int available) {
+            this.available = available;
+        }
+    }
+}
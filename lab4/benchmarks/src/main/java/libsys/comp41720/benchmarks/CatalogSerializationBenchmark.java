@@ -0,0 +1,133 @@
+package libsys.comp41720.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import libsys.comp41720.bookservice.controller.BookProtobufHttpMessageConverter;
+import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.catalog.CatalogBook;
+import libsys.comp41720.catalog.CatalogBookList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// A /api/books response of 10k books written and read back as JSON, the way Spring's Jackson converter does it
+// (ISO LocalDateTime strings), and as the protobuf representation BookProtobufHttpMessageConverter serves:
+// one CatalogBookList, or length-delimited CatalogBook messages for the streaming endpoints. Writing starts from
+// the BookDTOs the controller returns, so the protobuf side includes mapping them to messages. Setup prints the
+// payload sizes, plain and gzipped; run with -prof gc for the allocation per response.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CatalogSerializationBenchmark {
+
+    private static final TypeReference<List<BookDTO>> BOOK_LIST = new TypeReference<>() {
+    };
+
+    @Param({"10000"})
+    private int books;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<BookDTO> catalog;
+    private byte[] json;
+    private byte[] protobuf;
+    private byte[] protobufDelimited;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] categories = {"Software", "History", "Fiction", "Science", "Travel"};
+        LocalDateTime created = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_456_000);
+        catalog = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            int total = 1 + i % 5;
+            int available = i % (total + 1);
+            catalog.add(new BookDTO((long) i + 1, PostgresFixture.isbn(i + 1), "Book title number " + i,
+                    "Author " + i % 2_000, "Publisher " + i % 200, i % 7 == 0 ? null : 1950 + i % 75,
+                    categories[i % categories.length], total, available, available > 0 ? "AVAILABLE" : "BORROWED",
+                    created.plusMinutes(i), created.plusMinutes(i).plusDays(i % 30)));
+        }
+
+        json = writeJson();
+        protobuf = writeProtobuf();
+        protobufDelimited = writeProtobufDelimited();
+        System.out.printf("%n%d books - json: %d bytes (%d gzipped), protobuf: %d bytes (%d gzipped), "
+                        + "delimited protobuf: %d bytes (%d gzipped)%n", books, json.length, gzipped(json),
+                protobuf.length, gzipped(protobuf), protobufDelimited.length, gzipped(protobufDelimited));
+        if (readJson().size() != books || readProtobuf().getBooksCount() != books
+                || readProtobufDelimited().size() != books) {
+            throw new IllegalStateException("A representation did not read back all " + books + " books");
+        }
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(catalog);
+    }
+
+    @Benchmark
+    public byte[] writeProtobuf() {
+        CatalogBookList.Builder builder = CatalogBookList.newBuilder();
+        for (BookDTO book : catalog) {
+            builder.addBooks(BookProtobufHttpMessageConverter.toMessage(book));
+        }
+        return builder.build().toByteArray();
+    }
+
+    @Benchmark
+    public byte[] writeProtobufDelimited() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        for (BookDTO book : catalog) {
+            BookProtobufHttpMessageConverter.toMessage(book).writeDelimitedTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<BookDTO> readJson() throws IOException {
+        return objectMapper.readValue(json, BOOK_LIST);
+    }
+
+    @Benchmark
+    public CatalogBookList readProtobuf() throws IOException {
+        return CatalogBookList.parseFrom(protobuf);
+    }
+
+    @Benchmark
+    public List<CatalogBook> readProtobufDelimited() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(protobufDelimited);
+        List<CatalogBook> read = new ArrayList<>(books);
+        CatalogBook book;
+        while ((book = CatalogBook.parseDelimitedFrom(in)) != null) {
+            read.add(book);
+        }
+        return read;
+    }
+
+    private static int gzipped(byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,64 @@
+package libsys.comp41720.benchmarks;
+
+import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.borrowservice.dto.BorrowRecordDTO;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Entity to DTO mapping, run for every book and borrow record a list endpoint returns
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DtoMappingBenchmark {
+
+    private Book book;
+    private BorrowRecord borrowRecord;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+
+        book = new Book();
+        book.setId(42L);
+        book.setIsbn("978-0-13-468599-1");
+        book.setTitle("The Pragmatic Programmer");
+        book.setAuthor("David Thomas");
+        book.setPublisher("Addison-Wesley");
+        book.setPublicationYear(2019);
+        book.setCategory("Software");
+        book.setTotalCopies(5);
+        book.setAvailableCopies(3);
+        book.setStatus(Book.BookStatus.AVAILABLE);
+        book.setInventoryVersion(17L);
+        book.setCreatedAt(now);
+        book.setUpdatedAt(now);
+
+        borrowRecord = Fixtures.borrowRecord();
+    }
+
+    @Benchmark
+    public BookDTO bookFromEntity() {
+        return BookDTO.fromEntity(book);
+    }
+
+    @Benchmark
+    public BorrowRecordDTO borrowRecordFromEntity() {
+        return BorrowRecordDTO.fromEntity(borrowRecord);
+    }
+}
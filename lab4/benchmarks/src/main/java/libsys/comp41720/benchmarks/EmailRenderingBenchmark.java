@@ -0,0 +1,46 @@
+package libsys.comp41720.benchmarks;
+
+import libsys.comp41720.borrowservice.service.BorrowManagementService;
+import libsys.comp41720.events.BorrowEvent;
+import libsys.comp41720.notificationservice.service.EmailNotificationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Body text of the confirmation emails the notification service sends for each borrow event
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EmailRenderingBenchmark {
+
+    private BorrowEvent borrowEvent;
+    private BorrowEvent returnEvent;
+
+    @Setup
+    public void setUp() {
+        borrowEvent = BorrowManagementService.toBorrowEvent(Fixtures.borrowRecord(), "BORROW");
+        returnEvent = BorrowManagementService.toBorrowEvent(Fixtures.borrowRecord(), "RETURN");
+    }
+
+    @Benchmark
+    public String borrowConfirmation() {
+        return EmailNotificationService.renderBorrowConfirmation(borrowEvent);
+    }
+
+    @Benchmark
+    public String returnConfirmation() {
+        return EmailNotificationService.renderReturnConfirmation(returnEvent);
+    }
+}
@@ -0,0 +1,196 @@
+package libsys.comp41720.benchmarks;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.bookservice.concurrency.DatabaseConcurrencyInterceptor;
+import libsys.comp41720.bookservice.concurrency.DatabaseConcurrencyLimiter;
+import libsys.comp41720.grpc.BookAvailabilityRequest;
+import libsys.comp41720.grpc.BookAvailabilityResponse;
+import libsys.comp41720.grpc.BookServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Waves of concurrent callers against an in-process book-service whose handler holds one of a fixed number of
+// connections for a fixed query time, as a blocking JPA call does with Hikari. platform runs calls on a pool the
+// size of Tomcat's default, where callers past the pool size queue for a thread; virtual gives every call a
+// virtual thread and admits it through the DatabaseConcurrencyInterceptor, as book-service does with
+// spring.threads.virtual.enabled. Each invocation is one wave of callers; the throughput and p50/p99 per call are
+// printed at the end of every iteration. virtual needs a Java 21 runtime.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"100", "1000", "10000"})
+    private int callers;
+
+    // Hikari's default pool size, which is also book.execution.db-permits' default
+    @Param({"10"})
+    private int connections;
+
+    @Param({"2000"})
+    private long queryMicros;
+
+    @Param({"200"})
+    private int platformThreads;
+
+    private ExecutorService serverExecutor;
+    private Server server;
+    private ManagedChannel channel;
+    private BookServiceGrpc.BookServiceFutureStub stub;
+    private final List<long[]> latencies = new ArrayList<>();
+    private long iterationStarted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String name = "execution-mode-" + UUID.randomUUID();
+        BookServiceStandIn service = new BookServiceStandIn(connections, TimeUnit.MICROSECONDS.toNanos(queryMicros));
+        InProcessServerBuilder builder = InProcessServerBuilder.forName(name);
+        if (mode.equals("virtual")) {
+            serverExecutor = null;
+            DatabaseConcurrencyLimiter limiter = new DatabaseConcurrencyLimiter(connections, Duration.ofSeconds(60),
+                    new SimpleMeterRegistry());
+            builder.executor(new VirtualThreadTaskExecutor("grpc-call-"))
+                    .addService(ServerInterceptors.intercept(service, new DatabaseConcurrencyInterceptor(limiter)));
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            serverExecutor = Executors.newFixedThreadPool(platformThreads, runnable -> {
+                Thread thread = new Thread(runnable, "grpc-call-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            builder.executor(serverExecutor).addService(service);
+        }
+        server = builder.build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        stub = BookServiceGrpc.newFutureStub(channel);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        latencies.clear();
+        iterationStarted = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long elapsed = System.nanoTime() - iterationStarted;
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            return;
+        }
+        System.out.printf("%n%s, %d callers: %.0f calls/s, p50 %.2f ms, p99 %.2f ms over %d calls%n", mode, callers,
+                all.length * 1e9 / elapsed, all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6,
+                all.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        if (serverExecutor != null) {
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public long[] wave() throws InterruptedException {
+        long[] wave = new long[callers];
+        CountDownLatch done = new CountDownLatch(callers);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        BookAvailabilityRequest request = BookAvailabilityRequest.newBuilder().setIsbn("978-0-13-468599-1").build();
+        for (int i = 0; i < callers; i++) {
+            int caller = i;
+            long started = System.nanoTime();
+            Futures.addCallback(stub.checkBookAvailability(request), new FutureCallback<>() {
+                @Override
+                public void onSuccess(BookAvailabilityResponse response) {
+                    wave[caller] = System.nanoTime() - started;
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    failure.compareAndSet(null, t);
+                    done.countDown();
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        if (!done.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Wave of " + callers + " callers did not finish");
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Call failed under load", failure.get());
+        }
+        latencies.add(wave);
+        return wave;
+    }
+
+    // Every call takes a connection for queryMicros; callers beyond the pool wait for one, as with Hikari
+    private static final class BookServiceStandIn extends BookServiceGrpc.BookServiceImplBase {
+        private final Semaphore connections;
+        private final long queryNanos;
+
+        private BookServiceStandIn(int connections, long queryNanos) {
+            this.connections = new Semaphore(connections, true);
+            this.queryNanos = queryNanos;
+        }
+
+        @Override
+        public void checkBookAvailability(BookAvailabilityRequest request,
+                                          StreamObserver<BookAvailabilityResponse> responseObserver) {
+            connections.acquireUninterruptibly();
+            try {
+                LockSupport.parkNanos(queryNanos);
+            } finally {
+                connections.release();
+            }
+            responseObserver.onNext(BookAvailabilityResponse.newBuilder()
+                    .setAvailable(true)
+                    .setAvailableCopies(3)
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package libsys.comp41720.benchmarks;
+
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Representative records shared by the benchmarks
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static BorrowRecord borrowRecord() {
+        LocalDateTime now = LocalDateTime.now();
+        BorrowRecord record = new BorrowRecord();
+        record.setId("665f1c2e8b3a4d0012a1b2c3");
+        record.setMemberId("M-1001");
+        record.setMemberName("Ada Lovelace");
+        record.setMemberEmail("ada.lovelace@example.com");
+        record.setBookIsbn("978-0-13-468599-1");
+        record.setBookTitle("The Pragmatic Programmer");
+        record.setBorrowDate(LocalDate.now());
+        record.setDueDate(LocalDate.now().plusDays(14));
+        record.setStatus(BorrowRecord.BorrowStatus.ACTIVE);
+        record.setCreatedAt(now);
+        record.setUpdatedAt(now);
+        return record;
+    }
+}
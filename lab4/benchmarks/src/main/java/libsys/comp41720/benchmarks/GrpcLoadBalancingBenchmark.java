@@ -0,0 +1,188 @@
+package libsys.comp41720.benchmarks;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.borrowservice.grpc.BookServiceGrpcClient;
+import libsys.comp41720.borrowservice.grpc.GrpcClientMetricsInterceptor;
+import libsys.comp41720.borrowservice.grpc.GrpcDeadlineInterceptor;
+import libsys.comp41720.grpc.BookAvailabilityRequest;
+import libsys.comp41720.grpc.BookAvailabilityResponse;
+import libsys.comp41720.grpc.BookServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// BookServiceGrpcClient, wired from properties as in the service, calling three book-service replicas on
+// loopback ports that a static name resolver hands out the way DNS would for a headless service. The last
+// replica fails every call. With round_robin the healthy replicas share the load and outlier detection ejects
+// the failing one within an interval; pick_first sends everything to one replica. The per-replica call counts
+// are printed at the end of each trial.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class GrpcLoadBalancingBenchmark {
+
+    private static final String SCHEME = "benchmark";
+    private static final int REPLICAS = 3;
+
+    @Param({"pick_first", "round_robin"})
+    private String policy;
+
+    @Param({"1", "4"})
+    private int channels;
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<AtomicLong> callsPerServer = new ArrayList<>();
+    private AnnotationConfigApplicationContext context;
+    private BookServiceGrpcClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 0; i < REPLICAS; i++) {
+            AtomicLong calls = new AtomicLong();
+            Server server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                    .addService(new ReplicaStandIn(calls, i == REPLICAS - 1))
+                    .build()
+                    .start();
+            servers.add(server);
+            callsPerServer.add(calls);
+            addresses.add(new EquivalentAddressGroup(new InetSocketAddress("127.0.0.1", server.getPort())));
+        }
+        NameResolverRegistry.getDefaultRegistry().register(new StaticResolverProvider(addresses));
+
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "book.grpc.target", SCHEME + ":///book-service",
+                "book.grpc.load-balancing-policy", policy,
+                "book.grpc.channels", channels,
+                "book.grpc.outlier-ejection.interval", "1s",
+                "book.grpc.outlier-ejection.request-volume", 10)));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(GrpcClientMetricsInterceptor.class, GrpcDeadlineInterceptor.class,
+                BookServiceGrpcClient.class);
+        context.refresh();
+        client = context.getBean(BookServiceGrpcClient.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        List<Long> counts = callsPerServer.stream().map(AtomicLong::get).toList();
+        System.out.printf("%n%s with %d channel(s): calls per replica %s (last replica always fails)%n",
+                policy, channels, counts);
+        context.close();
+        servers.forEach(Server::shutdownNow);
+    }
+
+    @Benchmark
+    public boolean checkAvailability() {
+        return client.checkBookAvailability("978-0-13-468599-1");
+    }
+
+    private static final class ReplicaStandIn extends BookServiceGrpc.BookServiceImplBase {
+        private final AtomicLong calls;
+        private final boolean failing;
+
+        private ReplicaStandIn(AtomicLong calls, boolean failing) {
+            this.calls = calls;
+            this.failing = failing;
+        }
+
+        @Override
+        public void checkBookAvailability(BookAvailabilityRequest request,
+                                          StreamObserver<BookAvailabilityResponse> responseObserver) {
+            calls.incrementAndGet();
+            if (failing) {
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("replica failing").asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(BookAvailabilityResponse.newBuilder()
+                    .setAvailable(true)
+                    .setAvailableCopies(3)
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+
+    // Resolves every target with this scheme to the fixed replica addresses
+    private static final class StaticResolverProvider extends NameResolverProvider {
+        private final List<EquivalentAddressGroup> addresses;
+
+        private StaticResolverProvider(List<EquivalentAddressGroup> addresses) {
+            this.addresses = addresses;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+            if (!SCHEME.equals(targetUri.getScheme())) {
+                return null;
+            }
+            return new NameResolver() {
+                @Override
+                public String getServiceAuthority() {
+                    return "book-service";
+                }
+
+                @Override
+                public void start(Listener2 listener) {
+                    listener.onResult(ResolutionResult.newBuilder().setAddresses(addresses).build());
+                }
+
+                @Override
+                public void shutdown() {
+                }
+            };
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return SCHEME;
+        }
+
+        @Override
+        protected boolean isAvailable() {
+            return true;
+        }
+
+        // Above the built-in DNS resolver so the scheme lookup finds this one
+        @Override
+        protected int priority() {
+            return 6;
+        }
+    }
+}
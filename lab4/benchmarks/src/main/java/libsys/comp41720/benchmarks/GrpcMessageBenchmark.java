@@ -0,0 +1,112 @@
+package libsys.comp41720.benchmarks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.dto.BatchReservationResult;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.grpc.BookGrpcServiceImpl;
+import libsys.comp41720.grpc.BatchAvailabilityResponse;
+import libsys.comp41720.grpc.BatchMode;
+import libsys.comp41720.grpc.BatchReservationRequest;
+import libsys.comp41720.grpc.BatchReservationResponse;
+import libsys.comp41720.grpc.BookReservationRequest;
+import libsys.comp41720.grpc.BookReservationResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Message building and wire encoding done by BookGrpcServiceImpl around each call; the service lookups
+// themselves are replaced by prepared results so only the protobuf work is measured
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GrpcMessageBenchmark {
+
+    @Param({"1", "50", "500"})
+    private int batchSize;
+
+    private List<String> isbns;
+    private Map<String, BookAvailabilityCache.Availability> availabilities;
+    private BatchReservationResult batchResult;
+    private byte[] batchRequestBytes;
+
+    @Setup
+    public void setUp() {
+        isbns = new ArrayList<>(batchSize);
+        availabilities = new HashMap<>();
+        Map<String, ReservationResult> results = new LinkedHashMap<>();
+        BatchReservationRequest.Builder request = BatchReservationRequest.newBuilder()
+                .setMode(BatchMode.PARTIAL_SUCCESS);
+
+        for (int i = 0; i < batchSize; i++) {
+            String isbn = String.format("978-0-%06d-%02d-0", i, i % 100);
+            isbns.add(isbn);
+            // Every tenth ISBN is unknown, as happens with stale client-side lists
+            if (i % 10 != 9) {
+                availabilities.put(isbn, new BookAvailabilityCache.Availability(isbn, (long) i, i % 4, "AVAILABLE", i));
+                results.put(isbn, ReservationResult.applied((long) i, i % 4, "AVAILABLE", i));
+            } else {
+                results.put(isbn, null);
+            }
+            request.addItems(BookReservationRequest.newBuilder().setIsbn(isbn).setCopiesNeeded(1));
+        }
+
+        batchResult = new BatchReservationResult(false, results.size() + " items", results);
+        batchRequestBytes = request.build().toByteArray();
+    }
+
+    @Benchmark
+    public byte[] reservationResponse() {
+        ReservationResult result = batchResult.getResults().get(isbns.get(0));
+        boolean success = result.isSuccess();
+        return BookReservationResponse.newBuilder()
+                .setSuccess(success)
+                .setMessage(success ? "Book reserved successfully" : "Failed to reserve book - insufficient copies")
+                .setBookId(result.getBookId())
+                .build()
+                .toByteArray();
+    }
+
+    @Benchmark
+    public BatchAvailabilityResponse batchAvailabilityResponse() {
+        return BookGrpcServiceImpl.toBatchAvailabilityResponse(isbns, availabilities);
+    }
+
+    @Benchmark
+    public byte[] batchAvailabilityResponseEncoded() {
+        return BookGrpcServiceImpl.toBatchAvailabilityResponse(isbns, availabilities).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] batchReservationResponseEncoded() {
+        return BatchReservationResponse.newBuilder()
+                .setSuccess(batchResult.isSuccess())
+                .setMessage(batchResult.getMessage())
+                .addAllResults(BookGrpcServiceImpl.toItemResults(batchResult, "Reserved", "Insufficient copies"))
+                .build()
+                .toByteArray();
+    }
+
+    @Benchmark
+    public BatchReservationRequest batchReservationRequestDecoded() throws InvalidProtocolBufferException {
+        return BatchReservationRequest.parseFrom(batchRequestBytes);
+    }
+}
@@ -0,0 +1,203 @@
+package libsys.comp41720.benchmarks;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.bookservice.grpc.GrpcServerMetricsInterceptor;
+import libsys.comp41720.borrowservice.grpc.GrpcClientMetricsInterceptor;
+import libsys.comp41720.grpc.BookAvailabilityRequest;
+import libsys.comp41720.grpc.BookAvailabilityResponse;
+import libsys.comp41720.grpc.BookServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// What the metrics interceptors add to one unary call, with the transport replaced by calls that complete on the
+// spot so nothing but the interceptor is measured. none runs the same call without it; the difference is the
+// per-call cost. Meters are configured as the services' application.properties do (percentile histograms and
+// client-side p50/p90/p99), which is the expensive setting. Run with -prof gc to see the allocation per call.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class GrpcMetricsInterceptorBenchmark {
+
+    private static final MethodDescriptor<BookAvailabilityRequest, BookAvailabilityResponse> METHOD =
+            BookServiceGrpc.getCheckBookAvailabilityMethod();
+    private static final BookAvailabilityRequest REQUEST = BookAvailabilityRequest.newBuilder()
+            .setIsbn("978-0-13-468599-1")
+            .build();
+    private static final BookAvailabilityResponse RESPONSE = BookAvailabilityResponse.newBuilder()
+            .setAvailable(true)
+            .setAvailableCopies(3)
+            .build();
+
+    @Param({"none", "interceptor"})
+    private String metrics;
+
+    private GrpcServerMetricsInterceptor serverInterceptor;
+    private GrpcClientMetricsInterceptor clientInterceptor;
+    private final CompletingServerCall serverCall = new CompletingServerCall();
+    private final ServerCallHandler<BookAvailabilityRequest, BookAvailabilityResponse> handler = (call, headers) ->
+            new ServerCall.Listener<>() {
+                @Override
+                public void onHalfClose() {
+                    call.sendHeaders(new Metadata());
+                    call.sendMessage(RESPONSE);
+                    call.close(Status.OK, new Metadata());
+                }
+            };
+    private final Channel channel = new CompletingChannel();
+    private final CountingListener clientListener = new CountingListener();
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!id.getName().startsWith("grpc.")) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .percentiles(0.5, 0.9, 0.99)
+                        .minimumExpectedValue((double) Duration.ofMicros(50).toNanos())
+                        .maximumExpectedValue((double) Duration.ofSeconds(30).toNanos())
+                        .build()
+                        .merge(config);
+            }
+        });
+        serverInterceptor = new GrpcServerMetricsInterceptor(meterRegistry);
+        clientInterceptor = new GrpcClientMetricsInterceptor(meterRegistry);
+    }
+
+    @Benchmark
+    public int serverCall() {
+        ServerCall.Listener<BookAvailabilityRequest> listener = metrics.equals("none")
+                ? handler.startCall(serverCall, new Metadata())
+                : serverInterceptor.interceptCall(serverCall, new Metadata(), handler);
+        listener.onReady();
+        listener.onMessage(REQUEST);
+        listener.onHalfClose();
+        listener.onComplete();
+        return serverCall.closed;
+    }
+
+    @Benchmark
+    public int clientCall() {
+        ClientCall<BookAvailabilityRequest, BookAvailabilityResponse> call = metrics.equals("none")
+                ? channel.newCall(METHOD, CallOptions.DEFAULT)
+                : clientInterceptor.interceptCall(METHOD, CallOptions.DEFAULT, channel);
+        call.start(clientListener, new Metadata());
+        call.request(1);
+        call.sendMessage(REQUEST);
+        call.halfClose();
+        return clientListener.closed;
+    }
+
+    private static final class CompletingServerCall
+            extends ServerCall<BookAvailabilityRequest, BookAvailabilityResponse> {
+        private int closed;
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(BookAvailabilityResponse message) {
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            closed++;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<BookAvailabilityRequest, BookAvailabilityResponse> getMethodDescriptor() {
+            return METHOD;
+        }
+    }
+
+    // Every call answers as soon as the client half-closes
+    private static final class CompletingChannel extends Channel {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                             CallOptions callOptions) {
+            return new ClientCall<>() {
+                private Listener<RespT> listener;
+
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    listener = responseListener;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                    listener.onHeaders(new Metadata());
+                    listener.onMessage((RespT) RESPONSE);
+                    listener.onClose(Status.OK, new Metadata());
+                }
+
+                @Override
+                public void sendMessage(ReqT message) {
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "benchmark";
+        }
+    }
+
+    private static final class CountingListener extends ClientCall.Listener<BookAvailabilityResponse> {
+        private int closed;
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            closed++;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package libsys.comp41720.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import libsys.comp41720.bookservice.cache.BookEntityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.inventory.InventoryStore;
+import libsys.comp41720.bookservice.inventory.LedgerInventoryStore;
+import libsys.comp41720.bookservice.repository.BookInventoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Callers taking a copy of one popular book out and putting it back, against PostgreSQL (see PostgresFixture).
+// conditional is BookInventoryRepository's guarded UPDATE; readModifyWrite is the flow it replaced, reading the
+// row in a transaction and writing back the count computed in Java; ledger is LedgerInventoryStore, counting in
+// memory behind a group-committed, fsynced journal and writing the row behind. With fewer copies than callers all
+// reject some attempts; the read-modify-write flow also hands out copies that are not there and loses updates.
+// Every iteration checks the conditional and ledger strategies never had more copies out than exist and that the
+// count ends where it started, so a regression fails the run; the read-modify-write anomalies are only reported.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class InventoryContentionBenchmark {
+
+    private static final String ISBN = PostgresFixture.isbn(1);
+    // Work done while holding a copy, long enough for holders that overlap to be seen doing so
+    private static final long HOLD_TOKENS = 2_000;
+
+    @Param({"conditional", "ledger", "readModifyWrite"})
+    private String strategy;
+
+    @Param({"4"})
+    private int copies;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private InventoryStore inventoryStore;
+    private LedgerInventoryStore ledger;
+    private Path journalDir;
+    private TransactionTemplate transactionTemplate;
+    private final AtomicInteger out = new AtomicInteger();
+    private final AtomicInteger mostOut = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataSource = PostgresFixture.dataSource(16);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        BookInventoryRepository inventoryRepository =
+                new BookInventoryRepository(new NamedParameterJdbcTemplate(dataSource));
+        inventoryStore = inventoryRepository;
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        PostgresFixture.seedBooks(jdbcTemplate, 1, copies);
+        if (strategy.equals("ledger")) {
+            journalDir = Files.createTempDirectory("inventory-journal");
+            // No JPA here, so there are no second-level cache entries to evict
+            BookEntityCache entityCache = new BookEntityCache(null) {
+                @Override
+                public void evictAll(Collection<Long> bookIds) {
+                }
+            };
+            ledger = new LedgerInventoryStore(inventoryRepository, new CatalogVersion(), entityCache, 64, journalDir,
+                    true, Duration.ofMillis(500));
+            ledger.start();
+            inventoryStore = ledger;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        jdbcTemplate.update("UPDATE books SET available_copies = total_copies, status = 'AVAILABLE' WHERE isbn = ?",
+                ISBN);
+        out.set(0);
+        mostOut.set(0);
+        rejected.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void check() {
+        int available = strategy.equals("ledger")
+                ? ledger.findSnapshot(ISBN).orElseThrow().getAvailableCopies()
+                : jdbcTemplate.queryForObject("SELECT available_copies FROM books WHERE isbn = ?", Integer.class,
+                        ISBN);
+        System.out.printf("%n%s: at most %d of %d copies out, %d attempts rejected, %d copies on the shelf "
+                + "after all were returned%n", strategy, mostOut.get(), copies, rejected.get(), available);
+        if (!strategy.equals("readModifyWrite") && (mostOut.get() > copies || available != copies)) {
+            throw new IllegalStateException(strategy + " reservation lost track of copies: " + mostOut.get()
+                    + " out at once, " + available + " of " + copies + " back on the shelf");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        if (ledger != null) {
+            ledger.shutdown();
+            FileSystemUtils.deleteRecursively(journalDir);
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public boolean takeAndReturn() {
+        boolean taken = strategy.equals("readModifyWrite")
+                ? readModifyWrite(-1)
+                : inventoryStore.tryReserve(ISBN, 1).isPresent();
+        if (!taken) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        // The copy counts as out from the moment the reserve returned until just before the release starts;
+        // counting it until the release returned would count it twice once the next caller has taken it
+        mostOut.accumulateAndGet(out.incrementAndGet(), Math::max);
+        Blackhole.consumeCPU(HOLD_TOKENS);
+        out.decrementAndGet();
+        if (strategy.equals("readModifyWrite")) {
+            readModifyWrite(1);
+        } else {
+            inventoryStore.tryRelease(ISBN, 1);
+        }
+        return true;
+    }
+
+    // findByIsbn, check, save: the read takes no lock, so two callers can both see the last copy
+    private boolean readModifyWrite(int change) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            int available = jdbcTemplate.queryForObject("SELECT available_copies FROM books WHERE isbn = ?",
+                    Integer.class, ISBN);
+            if (available + change < 0) {
+                return false;
+            }
+            jdbcTemplate.update("UPDATE books SET available_copies = ?, status = ?, updated_at = LOCALTIMESTAMP "
+                    + "WHERE isbn = ?", available + change, available + change == 0 ? "BORROWED" : "AVAILABLE", ISBN);
+            return true;
+        }));
+    }
+}
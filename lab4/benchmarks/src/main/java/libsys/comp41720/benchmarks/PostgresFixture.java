@@ -0,0 +1,77 @@
+package libsys.comp41720.benchmarks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// The PostgreSQL the database-backed benchmarks run against: -Dbenchmark.postgres.url (default
+// jdbc:postgresql://localhost:5432/bookdb_benchmark), -Dbenchmark.postgres.user and -Dbenchmark.postgres.password.
+// Tables are created with the columns the entities map, so the services' SQL runs unchanged. Use a database of
+// its own; the benchmarks empty the tables they seed.
+final class PostgresFixture {
+
+    private static final String BOOKS_DDL = """
+            CREATE TABLE IF NOT EXISTS books (
+                id BIGSERIAL PRIMARY KEY,
+                isbn VARCHAR(255) NOT NULL UNIQUE,
+                title VARCHAR(255) NOT NULL,
+                author VARCHAR(255) NOT NULL,
+                publisher VARCHAR(255) NOT NULL,
+                publication_year INTEGER,
+                category VARCHAR(255) NOT NULL,
+                total_copies INTEGER NOT NULL,
+                available_copies INTEGER NOT NULL,
+                status VARCHAR(255) NOT NULL,
+                inventory_version BIGINT NOT NULL DEFAULT 0,
+                created_at TIMESTAMP NOT NULL,
+                updated_at TIMESTAMP
+            )
+            """;
+
+    // Titles and authors are drawn from small word lists so searches have realistic hit rates
+    private static final String SEED_BOOKS_SQL = """
+            INSERT INTO books (isbn, title, author, publisher, publication_year, category, total_copies,
+                               available_copies, status, inventory_version, created_at, updated_at)
+            SELECT '978-' || lpad(g::text, 9, '0'),
+                   (ARRAY['Distributed', 'Practical', 'Modern', 'Concurrent', 'Functional', 'Reactive'])[1 + g % 6]
+                       || ' ' || (ARRAY['Systems', 'Databases', 'Networks', 'Algorithms', 'Compilers'])[1 + g % 5]
+                       || ' ' || g,
+                   (ARRAY['Ada Lovelace', 'Alan Turing', 'Grace Hopper', 'Edsger Dijkstra', 'Barbara Liskov',
+                          'Leslie Lamport', 'Donald Knuth'])[1 + g % 7],
+                   'Benchmark Press',
+                   1950 + g % 75,
+                   (ARRAY['Computer Science', 'Mathematics', 'Engineering', 'Fiction'])[1 + g % 4],
+                   ?, ?, 'AVAILABLE', 0, LOCALTIMESTAMP, LOCALTIMESTAMP
+            FROM generate_series(1, ?) AS g
+            """;
+
+    private PostgresFixture() {
+    }
+
+    static HikariDataSource dataSource(int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getProperty("benchmark.postgres.url",
+                "jdbc:postgresql://localhost:5432/bookdb_benchmark"));
+        config.setUsername(System.getProperty("benchmark.postgres.user", "postgres"));
+        config.setPassword(System.getProperty("benchmark.postgres.password", "password"));
+        config.setMaximumPoolSize(poolSize);
+        config.setPoolName("benchmark");
+        return new HikariDataSource(config);
+    }
+
+    static void createBooksTable(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute(BOOKS_DDL);
+    }
+
+    // Replaces the table's contents with books 1..count, each with the given number of copies
+    static void seedBooks(JdbcTemplate jdbcTemplate, int count, int copies) {
+        createBooksTable(jdbcTemplate);
+        jdbcTemplate.execute("TRUNCATE books RESTART IDENTITY");
+        jdbcTemplate.update(SEED_BOOKS_SQL, copies, copies, count);
+        jdbcTemplate.execute("ANALYZE books");
+    }
+
+    static String isbn(int n) {
+        return "978-" + String.format("%09d", n);
+    }
+}
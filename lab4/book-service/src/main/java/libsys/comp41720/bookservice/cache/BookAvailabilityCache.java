@@ -0,0 +1,72 @@
+package libsys.comp41720.bookservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+@Component
+@Slf4j
+public class BookAvailabilityCache {
+
+    private final Cache<String, Availability> cache;
+
+    public BookAvailabilityCache(@Value("${book.availability-cache.max-size:100000}") long maxSize,
+                                 @Value("${book.availability-cache.ttl:30s}") Duration ttl,
+                                 MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "book.availability");
+        log.info("Availability cache initialised - max size: {}, TTL: {}", maxSize, ttl);
+    }
+
+    // Loads through on a miss; a null from the loader (unknown ISBN) is not cached
+    public Optional<Availability> get(String isbn, Function<String, Availability> loader) {
+        return Optional.ofNullable(cache.get(isbn, loader));
+    }
+
+    // Missing keys are loaded together, so a batch costs at most one query
+    public Map<String, Availability> getAll(Collection<String> isbns,
+                                            Function<Set<? extends String>, Map<String, Availability>> loader) {
+        return cache.getAll(isbns, loader);
+    }
+
+    // Writers race between their UPDATE and this call, so only keep the newest inventory version
+    public void update(Availability availability) {
+        cache.asMap().merge(availability.getIsbn(), availability,
+                (current, candidate) -> candidate.getVersion() >= current.getVersion() ? candidate : current);
+    }
+
+    public void invalidate(String isbn) {
+        cache.invalidate(isbn);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Availability {
+        private String isbn;
+        private Long bookId;
+        private int availableCopies;
+        private String status;
+        private long version;
+
+        public boolean isAvailable() {
+            return availableCopies > 0;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package libsys.comp41720.bookservice.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.event.BookAvailabilityChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+
+// Inventory columns are written with plain SQL, which Hibernate never sees, so the second-level
+// entry of a changed book is dropped once the change is committed. The isbn -> id natural-id
+// entries never go stale because the ISBN is immutable.
+@Component
+@RequiredArgsConstructor
+public class BookEntityCache {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        evict(event.getAvailability().getBookId());
+    }
+
+    public void evict(Long bookId) {
+        if (bookId != null) {
+            entityManagerFactory.getCache().evict(Book.class, bookId);
+        }
+    }
+
+    public void evictAll(Collection<Long> bookIds) {
+        bookIds.forEach(this::evict);
+    }
+}
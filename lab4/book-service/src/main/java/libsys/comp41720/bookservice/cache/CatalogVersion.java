@@ -0,0 +1,37 @@
+package libsys.comp41720.bookservice.cache;
+
+import libsys.comp41720.bookservice.event.BookAvailabilityChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Validator for responses served from the in-memory catalog indexes (suggestions, facets), bumped once a change
+// to any book is visible in the books table.
+// The epoch keeps tags handed out by an earlier process from matching after a restart.
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        bump();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+        lastModified = System.currentTimeMillis();
+    }
+
+    // Representations negotiated on the same URL must not share a tag
+    public String getETag(String representation) {
+        return "\"" + epoch + "-" + version.get() + "-" + representation + "\"";
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,49 @@
+package libsys.comp41720.bookservice.concurrency;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// With a thread per request there is no pool left to cap concurrency, so requests queue here
+// (fairly, with a deadline) instead of piling up inside the Hikari pool
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class DatabaseConcurrencyLimiter {
+
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    public DatabaseConcurrencyLimiter(@Value("${book.execution.db-permits:10}") int permits,
+                                      @Value("${book.execution.db-permit-timeout:2s}") Duration acquireTimeout,
+                                      MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeout = acquireTimeout;
+        Gauge.builder("book.execution.db.permits.available", this.permits, Semaphore::availablePermits)
+                .register(meterRegistry);
+        Gauge.builder("book.execution.db.permits.waiting", this.permits, Semaphore::getQueueLength)
+                .register(meterRegistry);
+        log.info("Virtual thread execution enabled - database permits: {}, acquire timeout: {}", permits, acquireTimeout);
+    }
+
+    public boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+}
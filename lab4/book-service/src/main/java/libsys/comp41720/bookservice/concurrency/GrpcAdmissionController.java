@@ -0,0 +1,188 @@
+package libsys.comp41720.bookservice.concurrency;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs unary gRPC handlers on a fixed set of workers, sized to the connection pool, in priority order.
+// Work is shed instead of run when the queue is full, when it has waited longer than the caller is likely
+// to, or when the caller has gone (deadline passed or call cancelled), so no connection is spent on it.
+// In virtual-thread mode DatabaseConcurrencyLimiter bounds the calls instead.
+@Component
+@ConditionalOnThreading(Threading.PLATFORM)
+@ConditionalOnProperty(name = "book.grpc.admission.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class GrpcAdmissionController {
+
+    public enum Priority {
+        // Calls that give copies back or settle holds; delaying them keeps inventory locked up
+        HIGH,
+        NORMAL,
+        // Reads a caller can retry or serve from its own cache
+        LOW
+    }
+
+    public enum Outcome {
+        RUN,
+        QUEUE_FULL,
+        QUEUE_WAIT_EXCEEDED,
+        DEADLINE_EXCEEDED,
+        CANCELLED
+    }
+
+    private static final Set<String> HIGH_PRIORITY_METHODS =
+            Set.of("ReleaseBook", "BatchReleaseBooks", "ConfirmHold", "ReleaseHold");
+    private static final Set<String> LOW_PRIORITY_METHODS =
+            Set.of("CheckBookAvailability", "BatchCheckAvailability");
+
+    private final ThreadPoolExecutor executor;
+    private final int maxQueueSize;
+    private final long maxQueueWaitNanos;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Timer queueWait;
+    // Indexed by outcome, then priority; the RUN row is left empty
+    private final Counter[][] shedCounters = new Counter[Outcome.values().length][Priority.values().length];
+
+    public GrpcAdmissionController(@Value("${book.grpc.admission.workers:10}") int workers,
+                                   @Value("${book.grpc.admission.max-queue-size:200}") int maxQueueSize,
+                                   @Value("${book.grpc.admission.max-queue-wait:500ms}") Duration maxQueueWait,
+                                   MeterRegistry meterRegistry) {
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // PriorityBlockingQueue is unbounded; admit() enforces the limit so it can be bypassed by priority
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "grpc-admission-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.prestartAllCoreThreads();
+
+        Gauge.builder("book.grpc.admission.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("gRPC calls waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("book.grpc.admission.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("gRPC calls being handled")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("book.grpc.admission.queue.wait")
+                .description("Time admitted gRPC calls waited for a worker")
+                .register(meterRegistry);
+        for (Outcome outcome : Outcome.values()) {
+            if (outcome == Outcome.RUN) {
+                continue;
+            }
+            for (Priority priority : Priority.values()) {
+                shedCounters[outcome.ordinal()][priority.ordinal()] = Counter.builder("book.grpc.admission.shed")
+                        .description("gRPC calls rejected or dropped before reaching a handler")
+                        .tag("reason", outcome.name().toLowerCase(Locale.ROOT))
+                        .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry);
+            }
+        }
+        log.info("gRPC admission control enabled - workers: {}, max queue size: {}, max queue wait: {}",
+                workers, maxQueueSize, maxQueueWait);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Priority priorityOf(String bareMethodName) {
+        if (HIGH_PRIORITY_METHODS.contains(bareMethodName)) {
+            return Priority.HIGH;
+        }
+        return LOW_PRIORITY_METHODS.contains(bareMethodName) ? Priority.LOW : Priority.NORMAL;
+    }
+
+    // Returns false when the call is refused outright. High-priority calls are admitted past a full queue,
+    // since turning away a release would keep the copies it returns out of circulation.
+    public boolean admit(Priority priority, Context context, AdmittedTask task) {
+        if (priority != Priority.HIGH && executor.getQueue().size() >= maxQueueSize) {
+            shed(Outcome.QUEUE_FULL, priority);
+            return false;
+        }
+        executor.execute(new QueuedCall(priority, sequence.getAndIncrement(), System.nanoTime(), context, task));
+        return true;
+    }
+
+    private Outcome decide(QueuedCall call) {
+        long waited = System.nanoTime() - call.enqueuedAt;
+        queueWait.record(waited, TimeUnit.NANOSECONDS);
+        Deadline deadline = call.context.getDeadline();
+        if (deadline != null && deadline.isExpired()) {
+            return Outcome.DEADLINE_EXCEEDED;
+        }
+        if (call.context.isCancelled()) {
+            return Outcome.CANCELLED;
+        }
+        // A release is still worth running late as long as its caller is waiting for it
+        if (waited > maxQueueWaitNanos && call.priority != Priority.HIGH) {
+            return Outcome.QUEUE_WAIT_EXCEEDED;
+        }
+        return Outcome.RUN;
+    }
+
+    private void shed(Outcome outcome, Priority priority) {
+        shedCounters[outcome.ordinal()][priority.ordinal()].increment();
+    }
+
+    @FunctionalInterface
+    public interface AdmittedTask {
+        // Called on a worker with RUN, or with the reason the call was dropped
+        void run(Outcome outcome);
+    }
+
+    private final class QueuedCall implements Runnable, Comparable<QueuedCall> {
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueuedAt;
+        private final Context context;
+        private final AdmittedTask task;
+
+        private QueuedCall(Priority priority, long sequence, long enqueuedAt, Context context, AdmittedTask task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+            this.context = context;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Outcome outcome = decide(this);
+            if (outcome != Outcome.RUN) {
+                shed(outcome, priority);
+            }
+            context.run(() -> task.run(outcome));
+        }
+
+        // Higher priority first, arrival order within a priority
+        @Override
+        public int compareTo(QueuedCall other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package libsys.comp41720.bookservice.concurrency;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Context;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+
+// A unary handler runs when the request has been fully received (half-close); that step is handed to the
+// admission controller instead of running on the transport executor. Streaming calls such as
+// WatchAvailability are long-lived and do not use the database per message, so they are passed through.
+@Component
+@GlobalServerInterceptor
+@ConditionalOnThreading(Threading.PLATFORM)
+@ConditionalOnProperty(name = "book.grpc.admission.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class GrpcAdmissionInterceptor implements ServerInterceptor {
+
+    private final GrpcAdmissionController admissionController;
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.startCall(call, headers);
+        }
+        GrpcAdmissionController.Priority priority = admissionController.priorityOf(method.getBareMethodName());
+
+        // Listener callbacks must never overlap, but the handler runs on an admission worker while the transport
+        // keeps delivering onCancel/onComplete on its own executor. Every callback therefore goes through one
+        // queue per call: it runs on the calling thread when nothing else is running, and otherwise after the
+        // callback in progress, on that callback's thread.
+        Executor serializer = MoreExecutors.newSequentialExecutor(MoreExecutors.directExecutor());
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                serializer.execute(() -> super.onMessage(message));
+            }
+
+            @Override
+            public void onHalfClose() {
+                Context context = Context.current();
+                serializer.execute(() -> admit(context));
+            }
+
+            @Override
+            public void onCancel() {
+                serializer.execute(super::onCancel);
+            }
+
+            @Override
+            public void onComplete() {
+                serializer.execute(super::onComplete);
+            }
+
+            @Override
+            public void onReady() {
+                serializer.execute(super::onReady);
+            }
+
+            private void admit(Context context) {
+                boolean admitted = admissionController.admit(priority, context, outcome ->
+                        serializer.execute(() -> {
+                            switch (outcome) {
+                                case RUN -> runHandler(call);
+                                case QUEUE_WAIT_EXCEEDED -> reject(call,
+                                        "Service is overloaded, request waited too long");
+                                case DEADLINE_EXCEEDED -> close(call, Status.DEADLINE_EXCEEDED
+                                        .withDescription("Deadline expired before the request was handled"));
+                                default -> log.debug("gRPC: Dropping cancelled call {}", method.getFullMethodName());
+                            }
+                        }));
+                if (!admitted) {
+                    reject(call, "Service is at capacity");
+                }
+            }
+
+            private void runHandler(ServerCall<ReqT, RespT> serverCall) {
+                try {
+                    delegate().onHalfClose();
+                } catch (RuntimeException e) {
+                    // Off the transport executor, so gRPC will not close the call for us
+                    log.error("gRPC: Unhandled error in {}", method.getFullMethodName(), e);
+                    close(serverCall, Status.fromThrowable(e));
+                }
+            }
+        };
+    }
+
+    private static void reject(ServerCall<?, ?> call, String description) {
+        log.warn("gRPC: Shedding {} - {}", call.getMethodDescriptor().getFullMethodName(), description);
+        close(call, Status.RESOURCE_EXHAUSTED.withDescription(description));
+    }
+
+    // The transport may have closed the call in the meantime
+    private static void close(ServerCall<?, ?> call, Status status) {
+        try {
+            call.close(status, new Metadata());
+        } catch (IllegalStateException e) {
+            log.debug("gRPC: Call {} already closed", call.getMethodDescriptor().getFullMethodName());
+        }
+    }
+}
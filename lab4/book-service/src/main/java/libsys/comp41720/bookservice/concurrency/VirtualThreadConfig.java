@@ -0,0 +1,22 @@
+package libsys.comp41720.bookservice.concurrency;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.grpc.server.ServerBuilderCustomizer;
+
+// Active with spring.threads.virtual.enabled=true on a Java 21+ runtime. Spring Boot already moves
+// Tomcat request handling onto virtual threads; this does the same for gRPC calls.
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public ServerBuilderCustomizer<NettyServerBuilder> grpcVirtualThreadExecutor() {
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("grpc-call-");
+        return builder -> builder.executor(executor);
+    }
+}
@@ -0,0 +1,73 @@
+package libsys.comp41720.bookservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import libsys.comp41720.bookservice.datasource.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Only active when replica URLs are configured; the auto-configured single pool is used otherwise.
+// The primary pool keeps its spring.datasource.* settings.
+@Configuration
+@ConditionalOnExpression("!'${book.datasource.replica.urls:}'.isBlank()")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${book.datasource.replica.urls}") List<String> urls,
+            @Value("${book.datasource.replica.username:}") String username,
+            @Value("${book.datasource.replica.password:}") String password,
+            @Value("${book.datasource.replica.pool-size:10}") int poolSize,
+            @Value("${book.datasource.replica.connection-timeout:1s}") Duration connectionTimeout,
+            @Value("${book.datasource.replica.health-check-interval:2s}") Duration healthCheckInterval,
+            @Value("${book.datasource.replica.max-lag:5s}") Duration maxLag,
+            @Value("${book.datasource.replica.fresh-read-max-lag:0s}") Duration freshReadMaxLag) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("book-replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username.isBlank() ? properties.determineUsername() : username);
+            replica.setPassword(password.isBlank() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            // A replica that is down at start-up must not keep the service from starting
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag, freshReadMaxLag,
+                healthCheckInterval, meterRegistry);
+    }
+
+    // JPA opens its connection when the transaction begins, before it is flagged read-only; the proxy
+    // defers the real connection (and so the routing decision) to the first statement
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
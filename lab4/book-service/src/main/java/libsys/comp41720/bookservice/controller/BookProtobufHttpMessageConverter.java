@@ -0,0 +1,120 @@
+package libsys.comp41720.bookservice.controller;
+
+import com.google.protobuf.Message;
+import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.bookservice.dto.BookPage;
+import libsys.comp41720.catalog.CatalogBook;
+import libsys.comp41720.catalog.CatalogBookList;
+import libsys.comp41720.catalog.CatalogBookPage;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// Writes the catalog DTOs as the messages in book-catalog.proto when a client asks for application/x-protobuf.
+// Only responses are converted; request bodies stay JSON.
+@Component
+public class BookProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType PROTOBUF = MediaType.parseMediaType(PROTOBUF_VALUE);
+    public static final String PROTOBUF_DELIMITED_VALUE = "application/x-protobuf-delimited";
+    public static final MediaType PROTOBUF_DELIMITED = MediaType.parseMediaType(PROTOBUF_DELIMITED_VALUE);
+
+    public BookProtobufHttpMessageConverter() {
+        super(PROTOBUF);
+    }
+
+    public static CatalogBook toMessage(BookDTO book) {
+        CatalogBook.Builder builder = CatalogBook.newBuilder()
+                .setId(book.getId())
+                .setIsbn(book.getIsbn())
+                .setTitle(book.getTitle())
+                .setAuthor(book.getAuthor())
+                .setPublisher(book.getPublisher())
+                .setCategory(book.getCategory())
+                .setTotalCopies(book.getTotalCopies())
+                .setAvailableCopies(book.getAvailableCopies())
+                .setStatus(CatalogBook.Status.valueOf(book.getStatus()))
+                .setCreatedAt(toEpochMillis(book.getCreatedAt()))
+                .setUpdatedAt(toEpochMillis(book.getUpdatedAt()));
+        if (book.getPublicationYear() != null) {
+            builder.setPublicationYear(book.getPublicationYear());
+        }
+        return builder.build();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BookDTO.class.isAssignableFrom(clazz) || BookPage.class.isAssignableFrom(clazz);
+    }
+
+    // Lists are only written when their element type is known to be BookDTO
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        if (type != null && List.class.isAssignableFrom(clazz)) {
+            Class<?> element = ResolvableType.forType(type).asCollection().resolveGeneric(0);
+            return element != null && BookDTO.class.isAssignableFrom(element);
+        }
+        return supports(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Message message;
+        if (value instanceof BookDTO book) {
+            message = toMessage(book);
+        } else if (value instanceof BookPage page) {
+            CatalogBookPage.Builder builder = CatalogBookPage.newBuilder().setLimit(page.getLimit());
+            page.getItems().forEach(book -> builder.addItems(toMessage(book)));
+            if (page.getNextCursor() != null) {
+                builder.setNextCursor(page.getNextCursor());
+            }
+            message = builder.build();
+        } else {
+            CatalogBookList.Builder builder = CatalogBookList.newBuilder();
+            for (Object book : (List<?>) value) {
+                builder.addBooks(toMessage((BookDTO) book));
+            }
+            message = builder.build();
+        }
+        outputMessage.getHeaders().setContentLength(message.getSerializedSize());
+        message.writeTo(outputMessage.getBody());
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    private static long toEpochMillis(LocalDateTime value) {
+        return value == null ? 0L : value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
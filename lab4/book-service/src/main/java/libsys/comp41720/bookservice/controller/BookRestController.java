@@ -1,16 +1,43 @@
 package libsys.comp41720.bookservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
 import libsys.comp41720.bookservice.dto.BookCreationRequest;
 import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.bookservice.dto.BookFacets;
+import libsys.comp41720.bookservice.dto.BookImportReport;
+import libsys.comp41720.bookservice.dto.BookPage;
+import libsys.comp41720.bookservice.dto.BookSuggestion;
+import libsys.comp41720.bookservice.dto.BranchAvailability;
+import libsys.comp41720.bookservice.dto.HoldDTO;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.service.BookHoldService;
+import libsys.comp41720.bookservice.service.BookImportService;
 import libsys.comp41720.bookservice.service.BookManagementService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/books")
@@ -19,6 +46,19 @@ import java.util.List;
 public class BookRestController {
     
     private final BookManagementService bookManagementService;
+    private final BookImportService bookImportService;
+    private final BookHoldService bookHoldService;
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${book.http.cache-control.book:no-cache}")
+    private String bookCacheControl;
+    
+    @Value("${book.http.cache-control.list:no-cache}")
+    private String listCacheControl;
+    
+    @Value("${book.http.cache-control.search:no-cache}")
+    private String searchCacheControl;
     
     @PostMapping
     public ResponseEntity<BookDTO> createBook(@Valid @RequestBody BookCreationRequest request) {
@@ -32,18 +72,67 @@ public class BookRestController {
         }
     }
     
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BookImportReport> importBooks(HttpServletRequest request) throws IOException {
+        log.info("REST: Received bulk import request, content type: {}", request.getContentType());
+        BookImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(
+                MediaType.parseMediaType(request.getContentType()))
+                ? BookImportService.Format.NDJSON
+                : BookImportService.Format.CSV;
+        try {
+            BookImportReport report = bookImportService.importBooks(request.getInputStream(), format);
+            return new ResponseEntity<>(report, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            log.error("REST: Rejected bulk import: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     @GetMapping
-    public ResponseEntity<List<BookDTO>> getAllBooks() {
+    public ResponseEntity<List<BookDTO>> getAllBooks(ServletWebRequest webRequest) {
         log.info("REST: Fetching all books");
         List<BookDTO> books = bookManagementService.getAllBooks();
+        if (isContentNotModified(webRequest, books, listCacheControl)) {
+            return null;
+        }
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
+    @GetMapping(params = "limit")
+    public ResponseEntity<BookPage> getBooksPage(@RequestParam(defaultValue = "0") long after,
+                                                 @RequestParam int limit,
+                                                 ServletWebRequest webRequest) {
+        log.info("REST: Fetching books page after id: {}", after);
+        BookPage page = bookManagementService.getBooksPage(after, limit);
+        if (isContentNotModified(webRequest, page, listCacheControl)) {
+            return null;
+        }
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE,
+            BookProtobufHttpMessageConverter.PROTOBUF_DELIMITED_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamAllBooks(ServletWebRequest webRequest) {
+        log.info("REST: Streaming all books");
+        return streamBooks(webRequest, listCacheControl, bookManagementService::streamAllBooks);
+    }
+    
     @GetMapping("/{isbn}")
-    public ResponseEntity<BookDTO> getBookByIsbn(@PathVariable String isbn) {
+    public ResponseEntity<BookDTO> getBookByIsbn(@PathVariable String isbn, ServletWebRequest webRequest) {
         log.info("REST: Fetching book with ISBN: {}", isbn);
+        // The cached availability carries the inventory version, so a revalidation never touches the entity
+        Optional<BookAvailabilityCache.Availability> availability = bookManagementService.checkAvailability(isbn);
+        if (availability.isEmpty()) {
+            log.error("REST: Book not found: {}", isbn);
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        String eTag = "\"" + availability.get().getBookId() + "-" + availability.get().getVersion() + "-"
+                + negotiate(webRequest, "json") + "\"";
+        if (isNotModified(webRequest, eTag, -1, bookCacheControl)) {
+            return null;
+        }
         try {
-            BookDTO book = bookManagementService.getBookByIsbn(isbn);
+            BookDTO book = bookManagementService.getBookByIsbn(isbn, availability.get());
             return new ResponseEntity<>(book, HttpStatus.OK);
         } catch (IllegalArgumentException e) {
             log.error("REST: Book not found: {}", e.getMessage());
@@ -51,32 +140,321 @@ public class BookRestController {
         }
     }
     
+    // Copies per branch; empty unless branch inventory is enabled
+    @GetMapping("/{isbn}/branches")
+    public ResponseEntity<List<BranchAvailability>> getBranchAvailability(@PathVariable String isbn) {
+        log.info("REST: Fetching branch availability of book: {}", isbn);
+        try {
+            return new ResponseEntity<>(bookManagementService.getBranchAvailability(isbn), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            log.error("REST: Book not found: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestion>> suggest(@RequestParam String prefix,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        ServletWebRequest webRequest) {
+        log.debug("REST: Suggesting completions for prefix: {}", prefix);
+        if (isCatalogNotModified(webRequest, "json", searchCacheControl)) {
+            return null;
+        }
+        return new ResponseEntity<>(bookManagementService.suggest(prefix, limit), HttpStatus.OK);
+    }
+    
+    @GetMapping("/facets")
+    public ResponseEntity<BookFacets> getFacets(ServletWebRequest webRequest) {
+        log.debug("REST: Fetching catalog facets");
+        if (isCatalogNotModified(webRequest, "json", listCacheControl)) {
+            return null;
+        }
+        return new ResponseEntity<>(bookManagementService.getFacets(), HttpStatus.OK);
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<List<BookDTO>> search(@RequestParam("q") String query,
+                                                @RequestParam(required = false) Integer limit,
+                                                ServletWebRequest webRequest) {
+        log.info("REST: Searching books by keywords: {}", query);
+        List<BookDTO> books = bookManagementService.searchBooks(query, limit);
+        if (isContentNotModified(webRequest, books, searchCacheControl)) {
+            return null;
+        }
+        return new ResponseEntity<>(books, HttpStatus.OK);
+    }
+    
     @GetMapping("/search/title")
-    public ResponseEntity<List<BookDTO>> searchByTitle(@RequestParam String title) {
+    public ResponseEntity<List<BookDTO>> searchByTitle(@RequestParam String title,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       ServletWebRequest webRequest) {
         log.info("REST: Searching books by title: {}", title);
-        List<BookDTO> books = bookManagementService.searchBooksByTitle(title);
+        List<BookDTO> books = bookManagementService.searchBooksByTitle(title, limit);
+        if (isContentNotModified(webRequest, books, searchCacheControl)) {
+            return null;
+        }
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
     @GetMapping("/search/author")
-    public ResponseEntity<List<BookDTO>> searchByAuthor(@RequestParam String author) {
+    public ResponseEntity<List<BookDTO>> searchByAuthor(@RequestParam String author,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        ServletWebRequest webRequest) {
         log.info("REST: Searching books by author: {}", author);
-        List<BookDTO> books = bookManagementService.searchBooksByAuthor(author);
+        List<BookDTO> books = bookManagementService.searchBooksByAuthor(author, limit);
+        if (isContentNotModified(webRequest, books, searchCacheControl)) {
+            return null;
+        }
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<BookDTO>> getBooksByCategory(@PathVariable String category) {
+    public ResponseEntity<List<BookDTO>> getBooksByCategory(@PathVariable String category,
+                                                            ServletWebRequest webRequest) {
         log.info("REST: Fetching books in category: {}", category);
         List<BookDTO> books = bookManagementService.getBooksByCategory(category);
+        if (isContentNotModified(webRequest, books, listCacheControl)) {
+            return null;
+        }
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
     @GetMapping("/available")
-    public ResponseEntity<List<BookDTO>> getAvailableBooks() {
+    public ResponseEntity<List<BookDTO>> getAvailableBooks(ServletWebRequest webRequest) {
         log.info("REST: Fetching available books");
         List<BookDTO> books = bookManagementService.getAvailableBooks();
+        if (isContentNotModified(webRequest, books, listCacheControl)) {
+            return null;
+        }
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
+    
+    @GetMapping(value = "/category/{category}", params = "limit")
+    public ResponseEntity<BookPage> getBooksByCategoryPage(@PathVariable String category,
+                                                           @RequestParam(defaultValue = "0") long after,
+                                                           @RequestParam int limit,
+                                                           ServletWebRequest webRequest) {
+        log.info("REST: Fetching books page in category: {} after id: {}", category, after);
+        BookPage page = bookManagementService.getBooksByCategoryPage(category, after, limit);
+        if (isContentNotModified(webRequest, page, listCacheControl)) {
+            return null;
+        }
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/category/{category}", produces = {MediaType.APPLICATION_NDJSON_VALUE,
+            BookProtobufHttpMessageConverter.PROTOBUF_DELIMITED_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamBooksByCategory(@PathVariable String category,
+                                                                       ServletWebRequest webRequest) {
+        log.info("REST: Streaming books in category: {}", category);
+        return streamBooks(webRequest, listCacheControl,
+                consumer -> bookManagementService.streamBooksByCategory(category, consumer));
+    }
+    
+    @GetMapping(value = "/available", params = "limit")
+    public ResponseEntity<BookPage> getAvailableBooksPage(@RequestParam(defaultValue = "0") long after,
+                                                          @RequestParam int limit,
+                                                          ServletWebRequest webRequest) {
+        log.info("REST: Fetching available books page after id: {}", after);
+        BookPage page = bookManagementService.getAvailableBooksPage(after, limit);
+        if (isContentNotModified(webRequest, page, listCacheControl)) {
+            return null;
+        }
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/available", produces = {MediaType.APPLICATION_NDJSON_VALUE,
+            BookProtobufHttpMessageConverter.PROTOBUF_DELIMITED_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamAvailableBooks(ServletWebRequest webRequest) {
+        log.info("REST: Streaming available books");
+        return streamBooks(webRequest, listCacheControl, bookManagementService::streamAvailableBooks);
+    }
+    
+    // With holdSeconds the copies are only held: they come back unless the hold is confirmed in time.
+    // branch is a preference; with branch inventory the copies come from another branch when it has none.
+    @PostMapping("/{isbn}/reserve")
+    public ResponseEntity<ReservationResult> reserveBook(@PathVariable String isbn,
+                                                         @RequestParam(defaultValue = "1") int copies,
+                                                         @RequestParam(required = false) Integer holdSeconds,
+                                                         @RequestParam(required = false) String branch) {
+        log.info("REST: Reserving {} copies of book: {} (hold: {}s, branch: {})", copies, isbn, holdSeconds, branch);
+        if (copies <= 0 || (holdSeconds != null && holdSeconds <= 0)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            ReservationResult result = holdSeconds == null
+                    ? bookManagementService.reserveBook(isbn, copies, branch)
+                    : bookHoldService.holdBook(isbn, copies, Duration.ofSeconds(holdSeconds), branch);
+            return new ResponseEntity<>(result, result.isSuccess() ? HttpStatus.OK : HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            log.error("REST: Book not found: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    @PostMapping("/{isbn}/release")
+    public ResponseEntity<ReservationResult> releaseBook(@PathVariable String isbn,
+                                                         @RequestParam(defaultValue = "1") int copies) {
+        log.info("REST: Releasing {} copies of book: {}", copies, isbn);
+        if (copies <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            ReservationResult result = bookManagementService.releaseBook(isbn, copies);
+            return new ResponseEntity<>(result, result.isSuccess() ? HttpStatus.OK : HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            log.error("REST: Book not found: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    @PostMapping("/holds/{holdId}/confirm")
+    public ResponseEntity<HoldDTO> confirmHold(@PathVariable long holdId) {
+        log.info("REST: Confirming hold {}", holdId);
+        try {
+            return new ResponseEntity<>(bookHoldService.confirmHold(holdId), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            log.error("REST: Hold not found: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (IllegalStateException e) {
+            log.warn("REST: Cannot confirm hold: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+    
+    @PostMapping("/holds/{holdId}/release")
+    public ResponseEntity<HoldDTO> releaseHold(@PathVariable long holdId) {
+        log.info("REST: Releasing hold {}", holdId);
+        try {
+            return new ResponseEntity<>(bookHoldService.releaseHold(holdId), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            log.error("REST: Hold not found: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (IllegalStateException e) {
+            log.warn("REST: Cannot release hold: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+    
+    // For responses served from the in-memory indexes, which CatalogVersion follows: a revalidation then needs
+    // no read at all. Last-Modified is read before the tag, so a change racing this request can only make the
+    // validators look older than the data that is served, never newer.
+    private boolean isCatalogNotModified(ServletWebRequest webRequest, String representation, String cacheControl) {
+        long lastModified = catalogVersion.getLastModified();
+        return isNotModified(webRequest, catalogVersion.getETag(negotiate(webRequest, representation)), lastModified,
+                cacheControl);
+    }
+    
+    // For responses read from the database, which may come from a replica behind the primary: the weak tag is
+    // derived from the books that were read, so it always describes the body it is sent with. A revalidation
+    // still runs the read, but wherever the routing sends it, and a 304 saves sending the body.
+    private boolean isContentNotModified(ServletWebRequest webRequest, List<BookDTO> books, String cacheControl) {
+        return isContentNotModified(webRequest, books, 0, cacheControl);
+    }
+    
+    private boolean isContentNotModified(ServletWebRequest webRequest, BookPage page, String cacheControl) {
+        return isContentNotModified(webRequest, page.getItems(), Objects.hashCode(page.getNextCursor()),
+                cacheControl);
+    }
+    
+    // 64 bits mixed from the value-based hash codes of the DTOs, in order
+    private boolean isContentNotModified(ServletWebRequest webRequest, List<BookDTO> books, long seed,
+                                         String cacheControl) {
+        long hash = seed;
+        for (BookDTO book : books) {
+            hash = (hash ^ book.hashCode()) * 0x100000001b3L;
+            hash ^= hash >>> 29;
+        }
+        hash ^= books.size();
+        String eTag = "W/\"" + Long.toHexString(hash) + "-" + negotiate(webRequest, "json") + "\"";
+        return isNotModified(webRequest, eTag, -1, cacheControl);
+    }
+    
+    // The representation a handler will produce: its JSON form unless the client prefers the protobuf equivalent
+    private static String negotiate(ServletWebRequest webRequest, String representation) {
+        boolean streaming = representation.equals("ndjson");
+        MediaType alternative = streaming
+                ? BookProtobufHttpMessageConverter.PROTOBUF_DELIMITED
+                : BookProtobufHttpMessageConverter.PROTOBUF;
+        if (!prefers(webRequest, alternative)) {
+            return representation;
+        }
+        return streaming ? "protobuf-delimited" : "protobuf";
+    }
+    
+    // True when the Accept header names the media type explicitly with a quality no lower than anything else it lists
+    private static boolean prefers(ServletWebRequest webRequest, MediaType mediaType) {
+        String accept = webRequest.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        double preferred = -1;
+        double best = 0;
+        try {
+            for (MediaType accepted : MediaType.parseMediaTypes(accept)) {
+                if (accepted.equalsTypeAndSubtype(mediaType)) {
+                    preferred = Math.max(preferred, accepted.getQualityValue());
+                } else {
+                    best = Math.max(best, accepted.getQualityValue());
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return preferred > 0 && preferred >= best;
+    }
+    
+    // Sets the validators and Cache-Control before the body is written, so a 304 carries them as well;
+    // when this returns true the response is complete and the handler returns null
+    private boolean isNotModified(ServletWebRequest webRequest, String eTag, long lastModified, String cacheControl) {
+        setCacheHeaders(webRequest, cacheControl);
+        return webRequest.checkNotModified(eTag, lastModified);
+    }
+    
+    private static void setCacheHeaders(ServletWebRequest webRequest, String cacheControl) {
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            if (!cacheControl.isBlank()) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            }
+        }
+    }
+    
+    // Rows are serialised one at a time as the JDBC cursor yields them, so nothing is buffered per response:
+    // one JSON document per line, or length-delimited CatalogBook messages when the client prefers those.
+    // The headers go out before the first row is read, so a stream has no validator; it reads from a replica
+    // like any other catalog read, and clients that revalidate page through the keyset endpoints instead.
+    private ResponseEntity<StreamingResponseBody> streamBooks(ServletWebRequest webRequest, String cacheControl,
+                                                              Consumer<Consumer<BookDTO>> source) {
+        setCacheHeaders(webRequest, cacheControl);
+        boolean protobuf = negotiate(webRequest, "ndjson").equals("protobuf-delimited");
+        ObjectWriter writer = objectMapper.writerFor(BookDTO.class);
+        StreamingResponseBody body = outputStream -> {
+            Consumer<BookDTO> write = book -> {
+                try {
+                    if (protobuf) {
+                        BookProtobufHttpMessageConverter.toMessage(book).writeDelimitedTo(outputStream);
+                    } else {
+                        outputStream.write(writer.writeValueAsBytes(book));
+                        outputStream.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            try {
+                source.accept(write);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            outputStream.flush();
+        };
+        MediaType contentType = protobuf
+                ? BookProtobufHttpMessageConverter.PROTOBUF_DELIMITED
+                : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .body(body);
+    }
 }
-
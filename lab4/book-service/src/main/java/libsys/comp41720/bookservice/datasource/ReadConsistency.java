@@ -0,0 +1,31 @@
+package libsys.comp41720.bookservice.datasource;
+
+import java.util.function.Supplier;
+
+// Marks reads that must reflect recent writes. They are held to the tighter fresh-read lag limit, which
+// by default keeps them on the primary. Takes effect for statements run inside the supplier.
+public final class ReadConsistency {
+
+    private static final ThreadLocal<Integer> FRESH_DEPTH = ThreadLocal.withInitial(() -> 0);
+
+    private ReadConsistency() {
+    }
+
+    public static <T> T fresh(Supplier<T> read) {
+        FRESH_DEPTH.set(FRESH_DEPTH.get() + 1);
+        try {
+            return read.get();
+        } finally {
+            int depth = FRESH_DEPTH.get() - 1;
+            if (depth == 0) {
+                FRESH_DEPTH.remove();
+            } else {
+                FRESH_DEPTH.set(depth);
+            }
+        }
+    }
+
+    static boolean isFreshRequired() {
+        return FRESH_DEPTH.get() > 0;
+    }
+}
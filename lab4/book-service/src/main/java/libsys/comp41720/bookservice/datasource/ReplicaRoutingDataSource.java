@@ -0,0 +1,176 @@
+package libsys.comp41720.bookservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands read-only transactions a connection from the next healthy replica whose replication lag is within
+// the limit for the read, round robin; everything else, and any read no replica can serve, gets the primary.
+// Must sit behind a LazyConnectionDataSourceProxy so the choice is made once the transaction is marked read-only.
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    // Seconds the replica is behind: zero on a server that is not a standby at all, and on a standby that has
+    // replayed everything its running WAL receiver got. A standby without a WAL receiver has lost the primary and
+    // is as stale as it will ever be, so it reports null. pg_stat_wal_receiver only has a row while the receiver
+    // runs, and needs no extra privileges for that.
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver) THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END
+            """;
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final long freshReadMaxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary,
+                                    List<HikariDataSource> replicaDataSources,
+                                    Duration maxLag,
+                                    Duration freshReadMaxLag,
+                                    Duration healthCheckInterval,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicaDataSources.stream().map(Replica::new).toList();
+        this.maxLagMillis = maxLag.toMillis();
+        this.freshReadMaxLagMillis = freshReadMaxLag.toMillis();
+
+        for (Replica replica : replicas) {
+            Tags tags = Tags.of("replica", replica.dataSource.getPoolName());
+            Gauge.builder("book.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("book.datasource.replica.lag", replica, r -> r.lagMillis / 1000.0)
+                    .tags(tags)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        // Replicas are only used after their first successful probe
+        checkReplicas();
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = healthCheckInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Read replica routing enabled - {} replicas, max lag: {}, fresh-read max lag: {}",
+                replicas.size(), maxLag, freshReadMaxLag);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            // Fail over at once instead of waiting for the next probe
+            replica.markDown(e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Per-call credentials are not supported by the replica router");
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    // A limit of zero keeps that kind of read on the primary
+    private Replica chooseReplica() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        long limitMillis = ReadConsistency.isFreshRequired() ? freshReadMaxLagMillis : maxLagMillis;
+        if (limitMillis <= 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy && replica.lagMillis <= limitMillis) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(1);
+                try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    double lagSeconds = rs.getDouble(1);
+                    if (rs.wasNull()) {
+                        replica.markDown(new IllegalStateException("no WAL receiver, replication from the primary "
+                                + "has stopped"));
+                    } else {
+                        replica.markUp(Math.round(lagSeconds * 1000));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy;
+        private volatile long lagMillis;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private void markUp(long lagMillis) {
+            this.lagMillis = lagMillis;
+            if (!healthy) {
+                log.info("Read replica {} is available (lag {} ms)", dataSource.getPoolName(), lagMillis);
+            }
+            healthy = true;
+        }
+
+        private void markDown(Exception cause) {
+            if (healthy) {
+                log.warn("Read replica {} is unavailable, reads fall back to the primary: {}",
+                        dataSource.getPoolName(), cause.getMessage());
+            }
+            healthy = false;
+        }
+    }
+}
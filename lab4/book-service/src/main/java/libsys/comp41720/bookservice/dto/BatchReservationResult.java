@@ -0,0 +1,18 @@
+package libsys.comp41720.bookservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReservationResult {
+    
+    private boolean success;
+    private String message;
+    // Keyed by ISBN in request order; a null value means the ISBN does not exist
+    private Map<String, ReservationResult> results;
+}
@@ -7,6 +7,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -32,5 +34,9 @@ public class BookCreationRequest {
     @NotNull(message = "Total copies is required")
     @Min(value = 1, message = "Total copies must be at least 1")
     private Integer totalCopies;
+    
+    // Copies per branch, summing to totalCopies; all copies go to the default branch when omitted.
+    // Only used with branch inventory.
+    private Map<String, Integer> branchCopies;
 }
 
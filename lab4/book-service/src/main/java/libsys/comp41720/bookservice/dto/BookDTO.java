@@ -25,6 +25,14 @@ public class BookDTO {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
+    // Target of the JPQL constructor projections in BookRepository
+    public BookDTO(Long id, String isbn, String title, String author, String publisher, Integer publicationYear,
+                   String category, Integer totalCopies, Integer availableCopies, Book.BookStatus status,
+                   LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this(id, isbn, title, author, publisher, publicationYear, category, totalCopies, availableCopies,
+                status.name(), createdAt, updatedAt);
+    }
+    
     public static BookDTO fromEntity(Book book) {
         return new BookDTO(
             book.getId(),
@@ -0,0 +1,35 @@
+package libsys.comp41720.bookservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookFacets {
+    
+    private long totalBooks;
+    private long totalCopies;
+    private long availableCopies;
+    private List<FacetCount> categories;
+    private List<FacetCount> statuses;
+    // Values are the first year of the decade, e.g. "1990", or "unknown" when the year is not recorded
+    private List<FacetCount> decades;
+    // Last time the counters were checked against the books table; null until the first pass completes
+    private LocalDateTime reconciledAt;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetCount {
+        
+        private String value;
+        private long books;
+        private long totalCopies;
+        private long availableCopies;
+    }
+}
@@ -0,0 +1,17 @@
+package libsys.comp41720.bookservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPage {
+    
+    private List<BookDTO> items;
+    private Long nextCursor;
+    private int limit;
+}
@@ -0,0 +1,17 @@
+package libsys.comp41720.bookservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestion {
+    
+    private String text;
+    // TITLE or AUTHOR
+    private String type;
+    // Set for titles only
+    private Long bookId;
+}
@@ -0,0 +1,15 @@
+package libsys.comp41720.bookservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BranchAvailability {
+    
+    private String branch;
+    private int totalCopies;
+    private int availableCopies;
+}
@@ -0,0 +1,30 @@
+package libsys.comp41720.bookservice.dto;
+
+import libsys.comp41720.bookservice.entity.BookHold;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldDTO {
+    
+    private Long id;
+    private String isbn;
+    private Integer copies;
+    private String status;
+    private LocalDateTime expiresAt;
+    
+    public static HoldDTO fromEntity(BookHold hold) {
+        return new HoldDTO(
+            hold.getId(),
+            hold.getIsbn(),
+            hold.getCopies(),
+            hold.getStatus().name(),
+            hold.getExpiresAt()
+        );
+    }
+}
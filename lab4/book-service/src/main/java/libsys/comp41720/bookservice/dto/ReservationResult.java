@@ -0,0 +1,42 @@
+package libsys.comp41720.bookservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationResult {
+
+    private boolean success;
+    private Long bookId;
+    private int availableCopies;
+    private String status;
+
+    @JsonIgnore
+    private long inventoryVersion;
+
+    // Set only when the copies were taken as a hold
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long holdId;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime holdExpiresAt;
+
+    // Branch the copies were taken from or returned to; set only with branch inventory
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String branch;
+
+    public static ReservationResult applied(Long bookId, int availableCopies, String status, long inventoryVersion) {
+        return new ReservationResult(true, bookId, availableCopies, status, inventoryVersion, null, null, null);
+    }
+
+    public static ReservationResult rejected(Long bookId, int availableCopies, String status, long inventoryVersion) {
+        return new ReservationResult(false, bookId, availableCopies, status, inventoryVersion, null, null, null);
+    }
+}
@@ -0,0 +1,45 @@
+package libsys.comp41720.bookservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One branch's share of a book's copies, used when book.inventory.mode=branch. The counters on the book row
+// are then the sum over its branches; version is summed the same way to give the book's inventory version.
+@Entity
+@Table(name = "book_branch_inventory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_book_branch_inventory_isbn_branch",
+                columnNames = {"isbn", "branch"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBranchInventory {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+    
+    @Column(nullable = false)
+    private String isbn;
+    
+    @Column(nullable = false)
+    private String branch;
+    
+    @Column(name = "total_copies", nullable = false)
+    private Integer totalCopies;
+    
+    @Column(name = "available_copies", nullable = false)
+    private Integer availableCopies;
+    
+    @Column(nullable = false)
+    private Long version = 0L;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
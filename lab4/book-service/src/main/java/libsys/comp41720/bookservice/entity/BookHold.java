@@ -0,0 +1,61 @@
+package libsys.comp41720.bookservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Copies taken out of a book's availability until the hold is confirmed, released or expires
+@Entity
+@Table(name = "book_holds", indexes = @Index(name = "idx_book_holds_status", columnList = "status"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookHold {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String isbn;
+    
+    @Column(nullable = false)
+    private Integer copies;
+    
+    // Branch the copies were taken from, which gets them back; set only with branch inventory
+    private String branch;
+    
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private HoldStatus status;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    public enum HoldStatus {
+        HELD,
+        CONFIRMED,
+        RELEASED,
+        EXPIRED
+    }
+}
@@ -0,0 +1,12 @@
+package libsys.comp41720.bookservice.event;
+
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BookAvailabilityChangedEvent {
+    
+    private BookAvailabilityCache.Availability availability;
+}
@@ -0,0 +1,217 @@
+package libsys.comp41720.bookservice.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.event.BookAvailabilityChangedEvent;
+import libsys.comp41720.grpc.AvailabilityUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Fans availability changes out to WatchAvailability streams without ever blocking the publisher
+@Component
+@Slf4j
+public class AvailabilityWatchHub {
+
+    private final int maxPendingPerSubscriber;
+    private final Map<String, Set<Subscriber>> subscribersByIsbn = new ConcurrentHashMap<>();
+    private final Set<Subscriber> wildcardSubscribers = new CopyOnWriteArraySet<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService drainExecutor;
+
+    public AvailabilityWatchHub(@Value("${book.watch.max-pending-per-subscriber:1024}") int maxPendingPerSubscriber,
+                                @Value("${book.watch.drain-threads:2}") int drainThreads) {
+        this.maxPendingPerSubscriber = maxPendingPerSubscriber;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.drainExecutor = Executors.newFixedThreadPool(drainThreads, runnable -> {
+            Thread thread = new Thread(runnable, "availability-watch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+    }
+
+    // The snapshot is read only once the subscriber is registered, so a change committed in between reaches it
+    // either through the snapshot or as an update; whichever arrives second is dropped by version
+    public void subscribe(ServerCallStreamObserver<AvailabilityUpdate> observer,
+                          Set<String> isbns,
+                          Supplier<Collection<BookAvailabilityCache.Availability>> snapshot) {
+        Subscriber subscriber = new Subscriber(observer, isbns);
+        observer.setOnCancelHandler(() -> unsubscribe(subscriber));
+        observer.setOnReadyHandler(subscriber::scheduleDrain);
+
+        if (isbns.isEmpty()) {
+            wildcardSubscribers.add(subscriber);
+        } else {
+            for (String isbn : isbns) {
+                subscribersByIsbn.computeIfAbsent(isbn, key -> new CopyOnWriteArraySet<>()).add(subscriber);
+            }
+        }
+        log.info("Availability watcher subscribed - ISBNs: {}, active watchers: {}",
+                isbns.isEmpty() ? "ALL" : isbns, subscriberCount.incrementAndGet());
+
+        snapshot.get().forEach(availability -> subscriber.offer(toUpdate(availability)));
+    }
+
+    // After commit, so watchers never see a change that is rolled back
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        AvailabilityUpdate update = null;
+        Set<Subscriber> subscribers = subscribersByIsbn.get(event.getAvailability().getIsbn());
+        if (subscribers != null) {
+            update = toUpdate(event.getAvailability());
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(update);
+            }
+        }
+        if (!wildcardSubscribers.isEmpty()) {
+            if (update == null) {
+                update = toUpdate(event.getAvailability());
+            }
+            for (Subscriber subscriber : wildcardSubscribers) {
+                subscriber.offer(update);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.close()) {
+            return;
+        }
+        if (subscriber.isbns.isEmpty()) {
+            wildcardSubscribers.remove(subscriber);
+        } else {
+            for (String isbn : subscriber.isbns) {
+                subscribersByIsbn.computeIfPresent(isbn, (key, set) -> {
+                    set.remove(subscriber);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+        log.info("Availability watcher removed - active watchers: {}", subscriberCount.decrementAndGet());
+    }
+
+    private static AvailabilityUpdate toUpdate(BookAvailabilityCache.Availability availability) {
+        return AvailabilityUpdate.newBuilder()
+                .setIsbn(availability.getIsbn())
+                .setAvailable(availability.isAvailable())
+                .setAvailableCopies(availability.getAvailableCopies())
+                .setStatus(availability.getStatus())
+                .setVersion(availability.getVersion())
+                .build();
+    }
+
+    private final class Subscriber {
+
+        private final ServerCallStreamObserver<AvailabilityUpdate> observer;
+        private final Set<String> isbns;
+        // One slot per ISBN: a newer change replaces a pending one instead of queueing behind it
+        private final LinkedHashMap<String, AvailabilityUpdate> pending = new LinkedHashMap<>();
+        // Newest version offered per watched ISBN; a wildcard watcher gets no snapshot, so it keeps none
+        private final Map<String, Long> offeredVersions = new HashMap<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private boolean overflowed;
+
+        private Subscriber(ServerCallStreamObserver<AvailabilityUpdate> observer, Set<String> isbns) {
+            this.observer = observer;
+            this.isbns = isbns;
+        }
+
+        void offer(AvailabilityUpdate update) {
+            synchronized (pending) {
+                if (closed.get() || overflowed) {
+                    return;
+                }
+                if (!isbns.isEmpty()) {
+                    Long offered = offeredVersions.get(update.getIsbn());
+                    if (offered != null && update.getVersion() <= offered) {
+                        return;
+                    }
+                    offeredVersions.put(update.getIsbn(), update.getVersion());
+                }
+                AvailabilityUpdate existing = pending.get(update.getIsbn());
+                if (existing != null) {
+                    if (update.getVersion() >= existing.getVersion()) {
+                        pending.put(update.getIsbn(), update);
+                    }
+                } else if (pending.size() >= maxPendingPerSubscriber) {
+                    overflowed = true;
+                    pending.clear();
+                } else {
+                    pending.put(update.getIsbn(), update);
+                }
+            }
+            scheduleDrain();
+        }
+
+        void scheduleDrain() {
+            if (!closed.get() && drainScheduled.compareAndSet(false, true)) {
+                drainExecutor.execute(this::drain);
+            }
+        }
+
+        boolean close() {
+            return closed.compareAndSet(false, true);
+        }
+
+        // Only ever runs on the drain executor and is serialised per subscriber, as StreamObserver requires
+        private synchronized void drain() {
+            drainScheduled.set(false);
+            try {
+                while (!closed.get() && observer.isReady()) {
+                    AvailabilityUpdate next = null;
+                    boolean overflow;
+                    synchronized (pending) {
+                        overflow = overflowed;
+                        Iterator<AvailabilityUpdate> iterator = pending.values().iterator();
+                        if (!overflow && iterator.hasNext()) {
+                            next = iterator.next();
+                            iterator.remove();
+                        }
+                    }
+                    if (overflow) {
+                        log.warn("Availability watcher fell {} changes behind, closing stream", maxPendingPerSubscriber);
+                        observer.onError(Status.RESOURCE_EXHAUSTED
+                                .withDescription("Subscriber is too slow to keep up with availability changes")
+                                .asRuntimeException());
+                        unsubscribe(this);
+                        return;
+                    }
+                    if (next == null) {
+                        return;
+                    }
+                    observer.onNext(next);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Availability watcher stream failed, removing it", e);
+                unsubscribe(this);
+            }
+        }
+    }
+}
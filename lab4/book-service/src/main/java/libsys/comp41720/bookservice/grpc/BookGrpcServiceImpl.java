@@ -1,22 +1,37 @@
 package libsys.comp41720.bookservice.grpc;
 
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.dto.BatchReservationResult;
+import libsys.comp41720.bookservice.dto.HoldDTO;
+import libsys.comp41720.bookservice.dto.ReservationResult;
 import libsys.comp41720.bookservice.entity.Book;
-import libsys.comp41720.bookservice.repository.BookRepository;
+import libsys.comp41720.bookservice.service.BookHoldService;
 import libsys.comp41720.bookservice.service.BookManagementService;
 import libsys.comp41720.grpc.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.grpc.server.service.GrpcService;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
 @GrpcService
 @RequiredArgsConstructor
 @Slf4j
 public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
     
     private final BookManagementService bookManagementService;
-    private final BookRepository bookRepository;
+    private final BookHoldService bookHoldService;
+    private final AvailabilityWatchHub availabilityWatchHub;
     
     @Override
     public void checkBookAvailability(BookAvailabilityRequest request,
@@ -33,21 +48,22 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
                 return;
             }
             
-            Book book = bookRepository.findByIsbn(request.getIsbn())
+            BookAvailabilityCache.Availability availability = bookManagementService
+                    .checkAvailability(request.getIsbn())
                     .orElse(null);
             
             BookAvailabilityResponse response;
-            if (book == null) {
+            if (availability == null) {
                 response = BookAvailabilityResponse.newBuilder()
                         .setAvailable(false)
                         .setAvailableCopies(0)
                         .setMessage("Book not found")
                         .build();
             } else {
-                boolean available = book.getAvailableCopies() > 0;
+                boolean available = availability.isAvailable();
                 response = BookAvailabilityResponse.newBuilder()
                         .setAvailable(available)
-                        .setAvailableCopies(book.getAvailableCopies())
+                        .setAvailableCopies(availability.getAvailableCopies())
                         .setMessage(available ? "Book is available" : "Book is not available")
                         .build();
             }
@@ -71,10 +87,10 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
     public void reserveBook(BookReservationRequest request,
                            StreamObserver<BookReservationResponse> responseObserver) {
         try {
-            log.info("gRPC: Reserving book - ISBN: {}, Copies: {}", 
-                    request.getIsbn(), request.getCopiesNeeded());
+            log.info("gRPC: Reserving book - ISBN: {}, Copies: {}, Hold: {}s", 
+                    request.getIsbn(), request.getCopiesNeeded(), request.getHoldSeconds());
             
-            if (request.getIsbn().isBlank() || request.getCopiesNeeded() <= 0) {
+            if (request.getIsbn().isBlank() || request.getCopiesNeeded() <= 0 || request.getHoldSeconds() < 0) {
                 String errorMsg = "Invalid request: ISBN cannot be empty and copies must be positive";
                 log.warn("gRPC: {}", errorMsg);
                 responseObserver.onError(Status.INVALID_ARGUMENT
@@ -83,18 +99,30 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
                 return;
             }
             
-            boolean success = bookManagementService.reserveBook(
-                    request.getIsbn(), 
-                    request.getCopiesNeeded()
-            );
+            String preferredBranch = request.getPreferredBranch().isBlank() ? null : request.getPreferredBranch();
+            ReservationResult result = request.getHoldSeconds() > 0
+                    ? bookHoldService.holdBook(
+                            request.getIsbn(),
+                            request.getCopiesNeeded(),
+                            Duration.ofSeconds(request.getHoldSeconds()),
+                            preferredBranch)
+                    : bookManagementService.reserveBook(
+                            request.getIsbn(), 
+                            request.getCopiesNeeded(),
+                            preferredBranch);
+            boolean success = result.isSuccess();
             
-            Book book = bookRepository.findByIsbn(request.getIsbn()).orElse(null);
-            
-            BookReservationResponse response = BookReservationResponse.newBuilder()
+            BookReservationResponse.Builder builder = BookReservationResponse.newBuilder()
                     .setSuccess(success)
                     .setMessage(success ? "Book reserved successfully" : "Failed to reserve book - insufficient copies")
-                    .setBookId(book != null ? book.getId() : 0L)
-                    .build();
+                    .setBookId(result.getBookId());
+            if (result.getHoldId() != null) {
+                builder.setHoldId(result.getHoldId());
+            }
+            if (result.getBranch() != null) {
+                builder.setBranch(result.getBranch());
+            }
+            BookReservationResponse response = builder.build();
             
             log.info("gRPC: Book reservation completed - ISBN: {}, Success: {}", 
                     request.getIsbn(), success);
@@ -129,7 +157,7 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
             boolean success = bookManagementService.releaseBook(
                     request.getIsbn(), 
                     request.getCopiesReturned()
-            );
+            ).isSuccess();
             
             BookReleaseResponse response = BookReleaseResponse.newBuilder()
                     .setSuccess(success)
@@ -150,6 +178,58 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
         }
     }
     
+    @Override
+    public void confirmHold(HoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+        completeHold(request, "confirm", bookHoldService::confirmHold, responseObserver);
+    }
+    
+    @Override
+    public void releaseHold(HoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+        completeHold(request, "release", bookHoldService::releaseHold, responseObserver);
+    }
+    
+    // A hold that was already confirmed, released or expired is reported as unsuccessful rather than as an error,
+    // with the status it has, so a caller unsure whether its confirm went through can tell
+    private void completeHold(HoldRequest request, String action, LongFunction<HoldDTO> operation,
+                              StreamObserver<HoldResponse> responseObserver) {
+        try {
+            log.info("gRPC: Hold {} - ID: {}", action, request.getHoldId());
+            
+            HoldResponse response;
+            try {
+                HoldDTO hold = operation.apply(request.getHoldId());
+                response = HoldResponse.newBuilder()
+                        .setSuccess(true)
+                        .setMessage("Hold " + action + " completed")
+                        .setStatus(hold.getStatus())
+                        .build();
+            } catch (IllegalStateException e) {
+                response = HoldResponse.newBuilder()
+                        .setSuccess(false)
+                        .setMessage(e.getMessage())
+                        .setStatus(bookHoldService.getHold(request.getHoldId()).getStatus())
+                        .build();
+            }
+            
+            log.info("gRPC: Hold {} completed - ID: {}, Success: {}", 
+                    action, request.getHoldId(), response.getSuccess());
+            
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("gRPC: {}", e.getMessage());
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription(e.getMessage())
+                    .asRuntimeException());
+        } catch (Exception e) {
+            log.error("gRPC: Error during hold {} - ID: {}", action, request.getHoldId(), e);
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Internal error: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+    
     @Override
     public void updateBookStatus(BookStatusUpdateRequest request,
                                 StreamObserver<BookStatusUpdateResponse> responseObserver) {
@@ -157,10 +237,12 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
             log.info("gRPC: Updating book status - ISBN: {}, Status: {}", 
                     request.getIsbn(), request.getStatus());
             
-            Book book = bookRepository.findByIsbn(request.getIsbn())
-                    .orElse(null);
+            boolean updated = bookManagementService.updateBookStatus(
+                    request.getIsbn(),
+                    Book.BookStatus.valueOf(request.getStatus())
+            );
             
-            if (book == null) {
+            if (!updated) {
                 BookStatusUpdateResponse response = BookStatusUpdateResponse.newBuilder()
                         .setSuccess(false)
                         .setMessage("Book not found")
@@ -170,9 +252,6 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
                 return;
             }
             
-            book.setStatus(Book.BookStatus.valueOf(request.getStatus()));
-            bookRepository.save(book);
-            
             BookStatusUpdateResponse response = BookStatusUpdateResponse.newBuilder()
                     .setSuccess(true)
                     .setMessage("Book status updated successfully")
@@ -190,5 +269,198 @@ public class BookGrpcServiceImpl extends BookServiceGrpc.BookServiceImplBase {
                     .asRuntimeException());
         }
     }
+    
+    @Override
+    public void batchCheckAvailability(BatchAvailabilityRequest request,
+                                       StreamObserver<BatchAvailabilityResponse> responseObserver) {
+        try {
+            log.info("gRPC: Batch availability check for {} books", request.getIsbnsCount());
+            
+            if (request.getIsbnsCount() == 0 || request.getIsbnsList().stream().anyMatch(String::isBlank)) {
+                String errorMsg = "Invalid request: at least one ISBN is required and ISBNs cannot be empty";
+                log.warn("gRPC: {}", errorMsg);
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                        .withDescription(errorMsg)
+                        .asRuntimeException());
+                return;
+            }
+            
+            Map<String, BookAvailabilityCache.Availability> availabilities =
+                    bookManagementService.checkAvailability(new LinkedHashSet<>(request.getIsbnsList()));
+            
+            BatchAvailabilityResponse response = toBatchAvailabilityResponse(request.getIsbnsList(), availabilities);
+            
+            log.info("gRPC: Batch availability check completed - {} books", request.getIsbnsCount());
+            
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+            
+        } catch (Exception e) {
+            log.error("gRPC: Error in batch availability check", e);
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Internal error: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+    
+    @Override
+    public void batchReserveBooks(BatchReservationRequest request,
+                                  StreamObserver<BatchReservationResponse> responseObserver) {
+        try {
+            log.info("gRPC: Batch reserving {} items, mode: {}", request.getItemsCount(), request.getMode());
+            
+            Map<String, Integer> copiesByIsbn = new LinkedHashMap<>();
+            for (BookReservationRequest item : request.getItemsList()) {
+                if (item.getIsbn().isBlank() || item.getCopiesNeeded() <= 0) {
+                    copiesByIsbn.clear();
+                    break;
+                }
+                copiesByIsbn.merge(item.getIsbn(), item.getCopiesNeeded(), Integer::sum);
+            }
+            
+            if (copiesByIsbn.isEmpty()) {
+                String errorMsg = "Invalid request: ISBNs cannot be empty and copies must be positive";
+                log.warn("gRPC: {}", errorMsg);
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                        .withDescription(errorMsg)
+                        .asRuntimeException());
+                return;
+            }
+            
+            BatchReservationResult result = bookManagementService.reserveBooks(
+                    copiesByIsbn,
+                    request.getMode() == BatchMode.ALL_OR_NOTHING
+            );
+            
+            BatchReservationResponse response = BatchReservationResponse.newBuilder()
+                    .setSuccess(result.isSuccess())
+                    .setMessage(result.getMessage())
+                    .addAllResults(toItemResults(result, "Reserved", "Insufficient copies"))
+                    .build();
+            
+            log.info("gRPC: Batch reservation completed - Success: {}", result.isSuccess());
+            
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+            
+        } catch (Exception e) {
+            log.error("gRPC: Error in batch reservation", e);
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Internal error: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+    
+    @Override
+    public void batchReleaseBooks(BatchReleaseRequest request,
+                                  StreamObserver<BatchReleaseResponse> responseObserver) {
+        try {
+            log.info("gRPC: Batch releasing {} items, mode: {}", request.getItemsCount(), request.getMode());
+            
+            Map<String, Integer> copiesByIsbn = new LinkedHashMap<>();
+            for (BookReleaseRequest item : request.getItemsList()) {
+                if (item.getIsbn().isBlank() || item.getCopiesReturned() <= 0) {
+                    copiesByIsbn.clear();
+                    break;
+                }
+                copiesByIsbn.merge(item.getIsbn(), item.getCopiesReturned(), Integer::sum);
+            }
+            
+            if (copiesByIsbn.isEmpty()) {
+                String errorMsg = "Invalid request: ISBNs cannot be empty and copies must be positive";
+                log.warn("gRPC: {}", errorMsg);
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                        .withDescription(errorMsg)
+                        .asRuntimeException());
+                return;
+            }
+            
+            BatchReservationResult result = bookManagementService.releaseBooks(
+                    copiesByIsbn,
+                    request.getMode() == BatchMode.ALL_OR_NOTHING
+            );
+            
+            BatchReleaseResponse response = BatchReleaseResponse.newBuilder()
+                    .setSuccess(result.isSuccess())
+                    .setMessage(result.getMessage())
+                    .addAllResults(toItemResults(result, "Released", "Release would exceed total copies"))
+                    .build();
+            
+            log.info("gRPC: Batch release completed - Success: {}", result.isSuccess());
+            
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+            
+        } catch (Exception e) {
+            log.error("gRPC: Error in batch release", e);
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Internal error: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+    
+    @Override
+    public void watchAvailability(WatchAvailabilityRequest request,
+                                  StreamObserver<AvailabilityUpdate> responseObserver) {
+        try {
+            log.info("gRPC: Watching availability for {} books", 
+                    request.getIsbnsCount() == 0 ? "all" : request.getIsbnsCount());
+            
+            Set<String> isbns = new LinkedHashSet<>(request.getIsbnsList());
+            availabilityWatchHub.subscribe(
+                    (ServerCallStreamObserver<AvailabilityUpdate>) responseObserver,
+                    isbns,
+                    () -> isbns.isEmpty() ? List.of() : bookManagementService.checkAvailability(isbns).values()
+            );
+            
+        } catch (Exception e) {
+            log.error("gRPC: Error subscribing to availability updates", e);
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Internal error: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+    
+    // Results follow the request order, duplicates included
+    public static BatchAvailabilityResponse toBatchAvailabilityResponse(
+            List<String> isbns, Map<String, BookAvailabilityCache.Availability> availabilities) {
+        BatchAvailabilityResponse.Builder response = BatchAvailabilityResponse.newBuilder();
+        for (String isbn : isbns) {
+            BookAvailabilityCache.Availability availability = availabilities.get(isbn);
+            BookAvailabilityResult.Builder result = BookAvailabilityResult.newBuilder()
+                    .setIsbn(isbn)
+                    .setFound(availability != null);
+            if (availability != null) {
+                result.setAvailable(availability.isAvailable())
+                        .setAvailableCopies(availability.getAvailableCopies());
+            }
+            response.addResults(result);
+        }
+        return response.build();
+    }
+    
+    public static List<BookBatchItemResult> toItemResults(BatchReservationResult batch,
+                                                          String appliedMessage,
+                                                          String rejectedMessage) {
+        List<BookBatchItemResult> items = new ArrayList<>(batch.getResults().size());
+        batch.getResults().forEach((isbn, result) -> {
+            BookBatchItemResult.Builder item = BookBatchItemResult.newBuilder().setIsbn(isbn);
+            if (result == null) {
+                item.setSuccess(false).setMessage("Book not found");
+            } else if (result.isSuccess()) {
+                item.setSuccess(true)
+                        .setBookId(result.getBookId())
+                        .setAvailableCopies(result.getAvailableCopies())
+                        .setMessage(appliedMessage);
+            } else {
+                // Items undone by an all-or-nothing rollback carry no status
+                item.setSuccess(false)
+                        .setBookId(result.getBookId())
+                        .setAvailableCopies(result.getAvailableCopies())
+                        .setMessage(result.getStatus() == null ? "Not applied - batch rolled back" : rejectedMessage);
+            }
+            items.add(item.build());
+        });
+        return items;
+    }
 }
-
@@ -0,0 +1,162 @@
+package libsys.comp41720.bookservice.grpc;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Meters are resolved once per method, so a call only allocates its two forwarding wrappers.
+// Runs first so calls rejected by other interceptors are measured too.
+@Component
+@GlobalServerInterceptor
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class GrpcServerMetricsInterceptor implements ServerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<MethodDescriptor<?, ?>, MethodMeters> metersByMethod = new ConcurrentHashMap<>();
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodMeters meters = metersByMethod.computeIfAbsent(call.getMethodDescriptor(),
+                method -> new MethodMeters(meterRegistry, method.getFullMethodName()));
+        MeasuredCall<ReqT, RespT> measured = new MeasuredCall<>(call, meters);
+        ServerCall.Listener<ReqT> delegate;
+        try {
+            delegate = next.startCall(measured, headers);
+        } catch (RuntimeException e) {
+            measured.complete(Status.fromThrowable(e));
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(delegate) {
+            @Override
+            public void onMessage(ReqT message) {
+                meters.requestSize.record(serializedSize(message));
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                measured.complete(Status.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    // Protobuf memoizes the size, so marshalling the message afterwards does not compute it again
+    private static int serializedSize(Object message) {
+        return message instanceof MessageLite lite ? lite.getSerializedSize() : 0;
+    }
+
+    private static final class MeasuredCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private static final AtomicIntegerFieldUpdater<MeasuredCall> COMPLETED =
+                AtomicIntegerFieldUpdater.newUpdater(MeasuredCall.class, "completed");
+
+        private final MethodMeters meters;
+        private final long startNanos;
+        private volatile int completed;
+
+        private MeasuredCall(ServerCall<ReqT, RespT> call, MethodMeters meters) {
+            super(call);
+            this.meters = meters;
+            this.startNanos = System.nanoTime();
+            meters.inFlight.incrementAndGet();
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            meters.responseSize.record(serializedSize(message));
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            complete(status);
+            super.close(status, trailers);
+        }
+
+        // A call can be closed and then cancelled; only the first outcome counts
+        void complete(Status status) {
+            if (COMPLETED.compareAndSet(this, 0, 1)) {
+                meters.inFlight.decrementAndGet();
+                meters.latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                meters.statusCounter(status.getCode()).increment();
+            }
+        }
+    }
+
+    private static final class MethodMeters {
+        private final MeterRegistry registry;
+        private final String method;
+        private final Timer latency;
+        private final DistributionSummary requestSize;
+        private final DistributionSummary responseSize;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicReferenceArray<Counter> statusCounters =
+                new AtomicReferenceArray<>(Status.Code.values().length);
+
+        private MethodMeters(MeterRegistry registry, String method) {
+            this.registry = registry;
+            this.method = method;
+            this.latency = Timer.builder("grpc.server.calls")
+                    .description("Server-side latency of gRPC calls")
+                    .tag("method", method)
+                    .register(registry);
+            this.requestSize = messageSize(registry, method, "request");
+            this.responseSize = messageSize(registry, method, "response");
+            Gauge.builder("grpc.server.calls.in.flight", inFlight, AtomicInteger::get)
+                    .description("gRPC calls started but not yet closed")
+                    .tag("method", method)
+                    .register(registry);
+        }
+
+        // Only status codes that actually occur get a time series
+        Counter statusCounter(Status.Code code) {
+            Counter counter = statusCounters.get(code.ordinal());
+            if (counter == null) {
+                counter = Counter.builder("grpc.server.calls.completed")
+                        .description("Completed gRPC calls by status code")
+                        .tag("method", method)
+                        .tag("status", code.name())
+                        .register(registry);
+                statusCounters.set(code.ordinal(), counter);
+            }
+            return counter;
+        }
+
+        private static DistributionSummary messageSize(MeterRegistry registry, String method, String direction) {
+            return DistributionSummary.builder("grpc.server.message.size")
+                    .description("Serialized size of gRPC messages")
+                    .baseUnit("bytes")
+                    .tag("method", method)
+                    .tag("direction", direction)
+                    .register(registry);
+        }
+    }
+}
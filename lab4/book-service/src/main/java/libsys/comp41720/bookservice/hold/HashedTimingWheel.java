@@ -0,0 +1,179 @@
+package libsys.comp41720.bookservice.hold;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Hashed timing wheel: scheduling and cancelling cost O(1) however many timers are outstanding, and a tick
+// only walks the one bucket it lands on. Timers further out than one rotation stay in their bucket for the
+// remaining number of rotations. Everything that falls due on a tick is handed to the callback as one list.
+@Slf4j
+class HashedTimingWheel<K> implements Closeable {
+
+    // Caps the work a burst of schedules (e.g. recovery) can add to a single tick
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Timer<K>[] buckets;
+    private final int mask;
+    private final Queue<Timer<K>> pending = new ConcurrentLinkedQueue<>();
+    private final Map<K, Timer<K>> timers = new ConcurrentHashMap<>();
+    private final Consumer<List<K>> onExpired;
+    private final Thread worker;
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running;
+
+    // Only touched by the worker thread, as are the buckets
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    HashedTimingWheel(String name, Duration tickDuration, int wheelSize, Consumer<List<K>> onExpired) {
+        if (tickDuration.isNegative() || tickDuration.isZero() || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+        this.tickNanos = tickDuration.toNanos();
+        this.buckets = (Timer<K>[]) new Timer[size];
+        this.mask = size - 1;
+        this.onExpired = onExpired;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        worker.start();
+    }
+
+    // Replaces any timer already scheduled for the key
+    void schedule(K key, Duration delay) {
+        long deadline = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        Timer<K> timer = new Timer<>(key, deadline);
+        Timer<K> previous = timers.put(key, timer);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        pending.add(timer);
+    }
+
+    // Cancelled timers are unlinked lazily, when the worker next passes their bucket
+    boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        timer.cancelled = true;
+        return true;
+    }
+
+    int size() {
+        return timers.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long tickDeadline = tickNanos * (tick + 1);
+            long sleepNanos = tickDeadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            transferPending();
+            List<K> expired = expire((int) (tick & mask));
+            tick++;
+            if (!expired.isEmpty()) {
+                try {
+                    onExpired.accept(expired);
+                } catch (RuntimeException e) {
+                    log.error("Timing wheel callback failed for {} expired timers", expired.size(), e);
+                }
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timer<K> timer = pending.poll();
+            if (timer == null) {
+                return;
+            }
+            if (timer.cancelled) {
+                continue;
+            }
+            // A deadline that has already passed goes into the current bucket
+            long dueTick = Math.max(timer.deadline / tickNanos, tick);
+            timer.remainingRounds = (dueTick - tick) / buckets.length;
+            int index = (int) (dueTick & mask);
+            timer.next = buckets[index];
+            buckets[index] = timer;
+        }
+    }
+
+    private List<K> expire(int index) {
+        List<K> expired = new ArrayList<>();
+        Timer<K> previous = null;
+        Timer<K> timer = buckets[index];
+        while (timer != null) {
+            Timer<K> next = timer.next;
+            boolean unlink = true;
+            if (!timer.cancelled) {
+                if (timer.remainingRounds > 0) {
+                    timer.remainingRounds--;
+                    unlink = false;
+                } else if (timers.remove(timer.key, timer)) {
+                    // Losing this race to cancel() means the timer was cancelled after all
+                    expired.add(timer.key);
+                }
+            }
+            if (unlink) {
+                if (previous == null) {
+                    buckets[index] = next;
+                } else {
+                    previous.next = next;
+                }
+                timer.next = null;
+            } else {
+                previous = timer;
+            }
+            timer = next;
+        }
+        return expired;
+    }
+
+    private static final class Timer<K> {
+        private final K key;
+        private final long deadline;
+        private volatile boolean cancelled;
+        private long remainingRounds;
+        private Timer<K> next;
+
+        private Timer(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
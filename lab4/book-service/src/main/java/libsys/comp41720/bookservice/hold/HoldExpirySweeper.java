@@ -0,0 +1,142 @@
+package libsys.comp41720.bookservice.hold;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.bookservice.dto.BatchReservationResult;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.entity.BookHold;
+import libsys.comp41720.bookservice.repository.BookHoldRepository;
+import libsys.comp41720.bookservice.service.BookManagementService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Expires holds from an in-memory timing wheel instead of polling the holds table. Holds due on the same
+// tick are expired together and their copies returned with one batch release per chunk.
+@Component
+@Slf4j
+public class HoldExpirySweeper {
+
+    private final BookHoldRepository bookHoldRepository;
+    private final BookManagementService bookManagementService;
+    private final TransactionTemplate transactionTemplate;
+    private final HashedTimingWheel<Long> wheel;
+    private final ExecutorService expiryExecutor;
+    private final int batchSize;
+    private final Duration retryDelay;
+
+    public HoldExpirySweeper(BookHoldRepository bookHoldRepository,
+                             BookManagementService bookManagementService,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${book.hold.wheel.tick:100ms}") Duration tick,
+                             @Value("${book.hold.wheel.size:4096}") int wheelSize,
+                             @Value("${book.hold.expiry.batch-size:500}") int batchSize,
+                             @Value("${book.hold.expiry.retry-delay:5s}") Duration retryDelay) {
+        this.bookHoldRepository = bookHoldRepository;
+        this.bookManagementService = bookManagementService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.wheel = new HashedTimingWheel<>("hold-timing-wheel", tick, wheelSize, this::onExpired);
+        Gauge.builder("book.holds.outstanding", wheel, HashedTimingWheel::size)
+                .description("Holds waiting on the timing wheel to be confirmed, released or expired")
+                .register(meterRegistry);
+        // The wheel thread only hands work over, so its ticks are never held up by the database
+        this.expiryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Holds outstanding when the service stopped are put back on the wheel; overdue ones expire on the first tick
+    @PostConstruct
+    public void start() {
+        List<BookHoldRepository.HoldDeadline> outstanding = bookHoldRepository.findByStatus(BookHold.HoldStatus.HELD);
+        outstanding.forEach(hold -> schedule(hold.getId(), hold.getExpiresAt()));
+        wheel.start();
+        log.info("Hold expiry sweeper started with {} outstanding holds", outstanding.size());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        wheel.close();
+        expiryExecutor.shutdown();
+        expiryExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public void schedule(long holdId, LocalDateTime expiresAt) {
+        wheel.schedule(holdId, Duration.between(LocalDateTime.now(), expiresAt));
+    }
+
+    public void cancel(long holdId) {
+        wheel.cancel(holdId);
+    }
+
+    private void onExpired(List<Long> holdIds) {
+        expiryExecutor.execute(() -> expire(holdIds));
+    }
+
+    private void expire(List<Long> holdIds) {
+        for (int from = 0; from < holdIds.size(); from += batchSize) {
+            List<Long> chunk = holdIds.subList(from, Math.min(from + batchSize, holdIds.size()));
+            try {
+                Integer expired = transactionTemplate.execute(status -> expireChunk(chunk));
+                log.debug("Expired {} of {} due holds", expired, chunk.size());
+            } catch (RuntimeException e) {
+                log.error("Failed to expire {} holds, retrying in {}", chunk.size(), retryDelay, e);
+                chunk.forEach(holdId -> wheel.schedule(holdId, retryDelay));
+            }
+        }
+    }
+
+    // Holds confirmed or released in the meantime are no longer HELD and are skipped
+    private int expireChunk(List<Long> holdIds) {
+        List<BookHold> due = bookHoldRepository.findForUpdate(holdIds, BookHold.HoldStatus.HELD);
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Integer> copiesByIsbn = new LinkedHashMap<>();
+        List<BookHold> fromBranches = new ArrayList<>();
+        for (BookHold hold : due) {
+            hold.setStatus(BookHold.HoldStatus.EXPIRED);
+            if (hold.getBranch() == null) {
+                copiesByIsbn.merge(hold.getIsbn(), hold.getCopies(), Integer::sum);
+            } else {
+                fromBranches.add(hold);
+            }
+        }
+
+        if (!copiesByIsbn.isEmpty()) {
+            BatchReservationResult released = bookManagementService.releaseBooks(copiesByIsbn, false);
+            if (!released.isSuccess()) {
+                log.warn("Expired holds could not return all copies: {}", released.getMessage());
+            }
+        }
+        // Branch inventory releases one book at a time anyway, so these lose nothing by not being batched
+        for (BookHold hold : fromBranches) {
+            ReservationResult released = bookManagementService.releaseBook(hold.getIsbn(), hold.getCopies(),
+                    hold.getBranch());
+            if (!released.isSuccess()) {
+                log.warn("Expired hold {} could not return its copies to branch {}", hold.getId(), hold.getBranch());
+            }
+        }
+        log.info("Expired {} holds across {} books", due.size(), copiesByIsbn.size());
+        return due.size();
+    }
+}
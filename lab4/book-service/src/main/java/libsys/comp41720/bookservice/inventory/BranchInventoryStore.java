@@ -0,0 +1,298 @@
+package libsys.comp41720.bookservice.inventory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.bookservice.cache.BookEntityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.dto.BranchAvailability;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.repository.BranchInventoryRepository;
+import libsys.comp41720.bookservice.repository.BranchInventoryRepository.Pick;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Splits each book's copies across per-branch rows, so concurrent reservations of a popular title lock
+// different rows instead of queueing on the book row. A reservation tries the caller's branch, then any branch
+// nobody holds a lock on, and only then waits. Totals are summed from the branch rows when read; the book row
+// catches up in the background, and any instance can serve either. A request for several copies is served by a
+// single branch: when none has that many it is rejected, even if the branches have enough between them, so that
+// holds and returns always put copies back into the one branch they came from. The rejection then reports the
+// most copies one branch has rather than the total, which no request could take.
+@Component
+@Primary
+@ConditionalOnProperty(name = "book.inventory.mode", havingValue = "branch")
+@Slf4j
+public class BranchInventoryStore implements InventoryStore {
+
+    private static final String BORROWED = Book.BookStatus.BORROWED.name();
+    private static final String RESERVED = Book.BookStatus.RESERVED.name();
+
+    private final BranchInventoryRepository branchInventoryRepository;
+    private final CatalogVersion catalogVersion;
+    private final BookEntityCache bookEntityCache;
+    private final String defaultBranch;
+    private final Duration flushInterval;
+    // Committed changes not yet written to the book row, with the status the latest one computed
+    private final Map<String, PendingChange> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public BranchInventoryStore(BranchInventoryRepository branchInventoryRepository,
+                                CatalogVersion catalogVersion,
+                                BookEntityCache bookEntityCache,
+                                @Value("${book.inventory.branch.default:MAIN}") String defaultBranch,
+                                @Value("${book.inventory.flush-interval:500ms}") Duration flushInterval) {
+        this.branchInventoryRepository = branchInventoryRepository;
+        this.catalogVersion = catalogVersion;
+        this.bookEntityCache = bookEntityCache;
+        this.defaultBranch = defaultBranch;
+        this.flushInterval = flushInterval;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "branch-inventory-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Books that predate branch inventory start out with all their copies in the default branch
+    @PostConstruct
+    public void start() {
+        int backfilled = branchInventoryRepository.backfill(defaultBranch);
+        if (backfilled > 0) {
+            log.info("Moved the inventory of {} books into branch {}", backfilled, defaultBranch);
+        }
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Branch inventory started - default branch: {}, flush interval: {}", defaultBranch, flushInterval);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    @Override
+    public Optional<ReservationResult> tryReserve(String isbn, int copies) {
+        return take(isbn, copies, null, BORROWED);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryReserve(String isbn, int copies, String preferredBranch) {
+        return take(isbn, copies, preferredBranch, BORROWED);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryHold(String isbn, int copies) {
+        return take(isbn, copies, null, RESERVED);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryHold(String isbn, int copies, String preferredBranch) {
+        return take(isbn, copies, preferredBranch, RESERVED);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryRelease(String isbn, int copies) {
+        return tryRelease(isbn, copies, null);
+    }
+
+    // The copies go back where they came from; another branch only takes them if that one has no room left
+    // (its split was changed in the meantime)
+    @Override
+    public Optional<ReservationResult> tryRelease(String isbn, int copies, String branch) {
+        Optional<ReservationResult> result = Optional.empty();
+        if (branch != null && !branch.isBlank()) {
+            result = branchInventoryRepository.give(isbn, copies, branch, Pick.PREFERRED);
+        }
+        result = result
+                .or(() -> branchInventoryRepository.give(isbn, copies, null, Pick.ANY_UNLOCKED))
+                .or(() -> branchInventoryRepository.give(isbn, copies, null, Pick.ANY));
+        result.ifPresent(changed -> markPending(isbn, changed));
+        return result;
+    }
+
+    @Override
+    public Optional<ReservationResult> confirmHeld(String isbn) {
+        return branchInventoryRepository.confirmHeld(isbn);
+    }
+
+    @Override
+    public Optional<ReservationResult> updateStatus(String isbn, String status) {
+        return branchInventoryRepository.updateStatus(isbn, status);
+    }
+
+    @Override
+    public Optional<ReservationResult> findSnapshot(String isbn) {
+        return Optional.ofNullable(findSnapshots(List.of(isbn)).get(isbn));
+    }
+
+    @Override
+    public Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns) {
+        return withPendingStatus(branchInventoryRepository.findSnapshots(isbns));
+    }
+
+    // Availability still reports the totals, which every single-copy borrow can take
+    @Override
+    public Map<String, ReservationResult> findReservable(Collection<? extends String> isbns) {
+        return withPendingStatus(branchInventoryRepository.findReservable(isbns));
+    }
+
+    // ISBNs are taken in sorted order, so overlapping batches lock branch rows in the same order.
+    // A failed all-or-nothing batch is undone by rolling back the caller's transaction.
+    @Override
+    public Map<String, ReservationResult> tryReserveAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        Map<String, ReservationResult> results = new LinkedHashMap<>();
+        new TreeMap<>(copiesByIsbn).forEach((isbn, copies) ->
+                tryReserve(isbn, copies).ifPresent(result -> results.put(isbn, result)));
+        return results;
+    }
+
+    @Override
+    public Map<String, ReservationResult> tryReleaseAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        Map<String, ReservationResult> results = new LinkedHashMap<>();
+        new TreeMap<>(copiesByIsbn).forEach((isbn, copies) ->
+                tryRelease(isbn, copies).ifPresent(result -> results.put(isbn, result)));
+        return results;
+    }
+
+    @Override
+    public boolean isBranchAware() {
+        return true;
+    }
+
+    @Override
+    public void registerBook(String isbn, Map<String, Integer> copiesByBranch) {
+        if (copiesByBranch.isEmpty()) {
+            branchInventoryRepository.backfill(defaultBranch, List.of(isbn));
+        } else {
+            branchInventoryRepository.insertSplit(isbn, copiesByBranch);
+        }
+    }
+
+    @Override
+    public void registerBooks(Collection<String> isbns) {
+        if (!isbns.isEmpty()) {
+            branchInventoryRepository.backfill(defaultBranch, isbns);
+        }
+    }
+
+    @Override
+    public List<BranchAvailability> findBranches(String isbn) {
+        return branchInventoryRepository.findBranches(isbn);
+    }
+
+    // The preferred branch is waited on, since the caller asked for it; the fallback first skips branches
+    // other transactions are changing and only blocks when every branch with enough copies is locked
+    private Optional<ReservationResult> take(String isbn, int copies, String preferredBranch,
+                                             String exhaustedStatus) {
+        Optional<ReservationResult> result = Optional.empty();
+        if (preferredBranch != null && !preferredBranch.isBlank()) {
+            result = branchInventoryRepository.take(isbn, copies, preferredBranch, Pick.PREFERRED, exhaustedStatus);
+        }
+        result = result
+                .or(() -> branchInventoryRepository.take(isbn, copies, null, Pick.ANY_UNLOCKED, exhaustedStatus))
+                .or(() -> branchInventoryRepository.take(isbn, copies, null, Pick.ANY, exhaustedStatus));
+        result.ifPresent(changed -> markPending(isbn, changed));
+        if (result.isEmpty() && copies > 1) {
+            log.info("No single branch has {} copies of book {}; requests are not split across branches", copies,
+                    isbn);
+        }
+        return result;
+    }
+
+    // A book with nothing left still showing AVAILABLE takes the status of the change that emptied it
+    private Map<String, ReservationResult> withPendingStatus(Map<String, ReservationResult> snapshots) {
+        snapshots.forEach((isbn, snapshot) -> {
+            PendingChange change = pending.get(isbn);
+            if (change != null && snapshot.getAvailableCopies() == 0 && RESERVED.equals(change.status)) {
+                snapshot.setStatus(RESERVED);
+            }
+        });
+        return snapshots;
+    }
+
+    // Only committed changes are written behind; a rolled-back one leaves the branch rows as they were
+    private void markPending(String isbn, ReservationResult result) {
+        PendingChange change = new PendingChange(result.getStatus(), result.getInventoryVersion());
+        Runnable mark = () -> pending.merge(isbn, change, (current, next) -> next.version > current.version
+                ? next : current);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mark.run();
+                }
+            });
+        } else {
+            mark.run();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Branch inventory write-behind failed, will retry", e);
+        }
+    }
+
+    private synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, PendingChange> drained = new HashMap<>();
+        for (String isbn : List.copyOf(pending.keySet())) {
+            PendingChange change = pending.remove(isbn);
+            if (change != null) {
+                drained.put(isbn, change);
+            }
+        }
+
+        Map<String, String> statusHints = new LinkedHashMap<>();
+        drained.forEach((isbn, change) -> statusHints.put(isbn, change.status));
+        List<Long> updatedBookIds;
+        try {
+            updatedBookIds = branchInventoryRepository.refresh(statusHints);
+        } catch (RuntimeException e) {
+            drained.forEach((isbn, change) -> pending.merge(isbn, change, (current, previous) -> current));
+            throw e;
+        }
+        if (updatedBookIds.isEmpty()) {
+            return;
+        }
+        // Catalog reads come from the book row: their validators and cached entities change once it has caught up
+        bookEntityCache.evictAll(updatedBookIds);
+        catalogVersion.bump();
+        log.debug("Branch inventory write-behind refreshed {} books", updatedBookIds.size());
+    }
+
+    private static final class PendingChange {
+        private final String status;
+        private final long version;
+
+        private PendingChange(String status, long version) {
+            this.status = status;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package libsys.comp41720.bookservice.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log of inventory states in numbered segment files. Appends are group committed:
+// one writer thread writes whatever has queued up and syncs once for the whole group.
+@Slf4j
+class InventoryJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "inventory-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int MAX_GROUP_SIZE = 4096;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final Object segmentLock = new Object();
+    private final Thread writer;
+    private FileChannel segment;
+    private long segmentId;
+    private volatile boolean running;
+
+    InventoryJournal(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        this.writer = new Thread(this::writeLoop, "inventory-journal");
+        this.writer.setDaemon(true);
+    }
+
+    // Latest state per ISBN across all existing segments; a torn record ends its segment
+    Map<String, InventoryState> replay() throws IOException {
+        Map<String, InventoryState> latest = new HashMap<>();
+        for (long id : segmentIds()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(id)));
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length <= 0 || buffer.remaining() < length + Integer.BYTES) {
+                    log.warn("Ignoring truncated record at the end of inventory journal segment {}", id);
+                    break;
+                }
+                byte[] body = new byte[length];
+                buffer.get(body);
+                if (buffer.getInt() != checksum(body)) {
+                    log.warn("Ignoring corrupt record at the end of inventory journal segment {}", id);
+                    break;
+                }
+                InventoryState state = decode(body);
+                latest.merge(state.getIsbn(), state,
+                        (current, candidate) -> candidate.getVersion() >= current.getVersion() ? candidate : current);
+            }
+        }
+        return latest;
+    }
+
+    // Opens a fresh segment after any existing ones; returns the id of the last existing segment (0 if none)
+    long start() throws IOException {
+        List<Long> existing = segmentIds();
+        long lastExisting = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+        synchronized (segmentLock) {
+            openSegment(lastExisting + 1);
+        }
+        running = true;
+        writer.start();
+        return lastExisting;
+    }
+
+    CompletableFuture<Void> append(InventoryState state) {
+        PendingAppend pending = new PendingAppend(state);
+        if (!running) {
+            pending.future.completeExceptionally(new IllegalStateException("Inventory journal is not running"));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    // Seals the current segment; every append acknowledged before this call is in a segment <= the returned id
+    long roll() throws IOException {
+        synchronized (segmentLock) {
+            long sealed = segmentId;
+            segment.force(true);
+            segment.close();
+            openSegment(sealed + 1);
+            return sealed;
+        }
+    }
+
+    void deleteSegmentsUpTo(long id) throws IOException {
+        for (long existing : segmentIds()) {
+            if (existing <= id) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (segmentLock) {
+            if (segment != null) {
+                segment.force(true);
+                segment.close();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                write(group);
+                group.forEach(pending -> pending.future.complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Inventory journal write failed for {} records", group.size(), e);
+                group.forEach(pending -> pending.future.completeExceptionally(e));
+                rollAfterFailure();
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingAppend> group) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(group.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (PendingAppend pending : group) {
+            byte[] body = encode(pending.state);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeInt(checksum(body));
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        synchronized (segmentLock) {
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+        }
+    }
+
+    // A partial write would end replay of its segment early, so later records go to a fresh one
+    private void rollAfterFailure() {
+        try {
+            roll();
+        } catch (IOException e) {
+            log.error("Could not roll inventory journal after a failed write", e);
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        segmentId = id;
+        segment = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(InventoryState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(state.getIsbn());
+        out.writeLong(state.getBookId());
+        out.writeInt(state.getTotalCopies());
+        out.writeInt(state.getAvailableCopies());
+        out.writeUTF(state.getStatus());
+        out.writeLong(state.getVersion());
+        return bytes.toByteArray();
+    }
+
+    private static InventoryState decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        return new InventoryState(in.readUTF(), in.readLong(), in.readInt(), in.readInt(), in.readUTF(),
+                in.readLong());
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static final class PendingAppend {
+        private final InventoryState state;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingAppend(InventoryState state) {
+            this.state = state;
+        }
+    }
+}
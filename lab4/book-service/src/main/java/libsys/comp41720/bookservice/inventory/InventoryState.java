@@ -0,0 +1,20 @@
+package libsys.comp41720.bookservice.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class InventoryState {
+
+    private String isbn;
+    private Long bookId;
+    private int totalCopies;
+    private int availableCopies;
+    private String status;
+    private long version;
+
+    public InventoryState copy() {
+        return new InventoryState(isbn, bookId, totalCopies, availableCopies, status, version);
+    }
+}
@@ -0,0 +1,76 @@
+package libsys.comp41720.bookservice.inventory;
+
+import libsys.comp41720.bookservice.dto.BranchAvailability;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Owner of the per-ISBN copy counters; selected with book.inventory.mode
+public interface InventoryStore {
+
+    Optional<ReservationResult> tryReserve(String isbn, int copies);
+
+    Optional<ReservationResult> tryRelease(String isbn, int copies);
+
+    // As tryReserve, but taking the last copies marks the book RESERVED rather than BORROWED
+    Optional<ReservationResult> tryHold(String isbn, int copies);
+
+    // Held copies were borrowed: a RESERVED book with nothing left turns BORROWED. Empty when nothing changed.
+    Optional<ReservationResult> confirmHeld(String isbn);
+
+    Optional<ReservationResult> updateStatus(String isbn, String status);
+
+    Optional<ReservationResult> findSnapshot(String isbn);
+
+    Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns);
+
+    // What a rejected reservation reports: the snapshot, with as available copies the most one request could
+    // have taken. Without branches that is every available copy.
+    default Map<String, ReservationResult> findReservable(Collection<? extends String> isbns) {
+        return findSnapshots(isbns);
+    }
+
+    default Optional<ReservationResult> findReservable(String isbn) {
+        return Optional.ofNullable(findReservable(List.of(isbn)).get(isbn));
+    }
+
+    // Returns the items that were (or, for a failed all-or-nothing batch, would have been) applied.
+    // A failed all-or-nothing batch is either never applied or undone by the caller's transaction.
+    Map<String, ReservationResult> tryReserveAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing);
+
+    Map<String, ReservationResult> tryReleaseAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing);
+
+    // Branch-aware stores take the copies from preferredBranch when it has them, otherwise from another branch.
+    // Stores without branches ignore the preference.
+    default Optional<ReservationResult> tryReserve(String isbn, int copies, String preferredBranch) {
+        return tryReserve(isbn, copies);
+    }
+
+    default Optional<ReservationResult> tryHold(String isbn, int copies, String preferredBranch) {
+        return tryHold(isbn, copies);
+    }
+
+    // Branch-aware stores give the copies back to branch, normally the one they were taken from
+    default Optional<ReservationResult> tryRelease(String isbn, int copies, String branch) {
+        return tryRelease(isbn, copies);
+    }
+
+    default boolean isBranchAware() {
+        return false;
+    }
+
+    // Sets up the counters of books just inserted into the books table; an empty split puts every copy in the
+    // default branch. Only branch-aware stores keep counters outside the book row.
+    default void registerBook(String isbn, Map<String, Integer> copiesByBranch) {
+    }
+
+    default void registerBooks(Collection<String> isbns) {
+    }
+
+    default List<BranchAvailability> findBranches(String isbn) {
+        return List.of();
+    }
+}
@@ -0,0 +1,508 @@
+package libsys.comp41720.bookservice.inventory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.bookservice.cache.BookEntityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.repository.BookInventoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps the counters of every ISBN it has touched in memory so hot titles no longer queue on one row lock.
+// A change is acknowledged once it is in the journal; the books table is brought up to date in batches. Changes
+// made inside a transaction follow it: taken copies come back if it rolls back, returned ones wait for the commit.
+// Assumes this instance is the only writer of the inventory columns.
+@Component
+@Primary
+@ConditionalOnProperty(name = "book.inventory.mode", havingValue = "ledger")
+@Slf4j
+public class LedgerInventoryStore implements InventoryStore {
+
+    private static final String AVAILABLE = Book.BookStatus.AVAILABLE.name();
+    private static final String BORROWED = Book.BookStatus.BORROWED.name();
+    private static final String RESERVED = Book.BookStatus.RESERVED.name();
+
+    private final BookInventoryRepository bookInventoryRepository;
+    private final CatalogVersion catalogVersion;
+    private final BookEntityCache bookEntityCache;
+    private final InventoryJournal journal;
+    private final Duration flushInterval;
+    private final ReentrantLock[] stripes;
+    private final Map<String, InventoryState> entries = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+
+    public LedgerInventoryStore(BookInventoryRepository bookInventoryRepository,
+                                CatalogVersion catalogVersion,
+                                BookEntityCache bookEntityCache,
+                                @Value("${book.inventory.ledger.stripes:64}") int stripeCount,
+                                @Value("${book.inventory.journal.dir:./data/inventory-journal}") Path journalDir,
+                                @Value("${book.inventory.journal.fsync:true}") boolean fsync,
+                                @Value("${book.inventory.flush-interval:500ms}") Duration flushInterval) throws IOException {
+        this.bookInventoryRepository = bookInventoryRepository;
+        this.catalogVersion = catalogVersion;
+        this.bookEntityCache = bookEntityCache;
+        this.journal = new InventoryJournal(journalDir, fsync);
+        this.flushInterval = flushInterval;
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Anything journaled but not yet written behind before the last shutdown or crash is applied first
+    @PostConstruct
+    public void start() throws IOException {
+        Map<String, InventoryState> recovered = journal.replay();
+        if (!recovered.isEmpty()) {
+            int updated = bookInventoryRepository.applyStates(recovered.values());
+            log.info("Recovered {} inventory states from the journal ({} rows were behind)", recovered.size(), updated);
+        }
+        journal.deleteSegmentsUpTo(journal.start());
+
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Inventory ledger started - stripes: {}, flush interval: {}", stripes.length, flushInterval);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        try {
+            flush();
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Override
+    public Optional<ReservationResult> tryReserve(String isbn, int copies) {
+        return applyOne(isbn, copies, true, BORROWED);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryRelease(String isbn, int copies) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return Optional.ofNullable(releaseAfterCommit(Map.of(isbn, copies), false).get(isbn));
+        }
+        return applyOne(isbn, copies, false, BORROWED);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryHold(String isbn, int copies) {
+        return applyOne(isbn, copies, true, RESERVED);
+    }
+
+    @Override
+    public Optional<ReservationResult> confirmHeld(String isbn) {
+        Change change;
+        ReentrantLock lock = stripeFor(isbn);
+        lock.lock();
+        try {
+            InventoryState state = load(isbn);
+            if (state == null || !RESERVED.equals(state.getStatus()) || state.getAvailableCopies() != 0) {
+                return Optional.empty();
+            }
+            change = install(state, 0, BORROWED);
+        } finally {
+            lock.unlock();
+        }
+        settle(List.of(change));
+        return Optional.of(toResult(change.after, true));
+    }
+
+    @Override
+    public Optional<ReservationResult> updateStatus(String isbn, String status) {
+        Change change;
+        ReentrantLock lock = stripeFor(isbn);
+        lock.lock();
+        try {
+            InventoryState state = load(isbn);
+            if (state == null) {
+                return Optional.empty();
+            }
+            change = install(state, state.getAvailableCopies(), status);
+        } finally {
+            lock.unlock();
+        }
+        settle(List.of(change));
+        return Optional.of(toResult(change.after, true));
+    }
+
+    @Override
+    public Optional<ReservationResult> findSnapshot(String isbn) {
+        ReentrantLock lock = stripeFor(isbn);
+        lock.lock();
+        try {
+            return Optional.ofNullable(load(isbn)).map(state -> toResult(state, false));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns) {
+        preload(isbns);
+        Map<String, ReservationResult> snapshots = new HashMap<>();
+        for (String isbn : isbns) {
+            findSnapshot(isbn).ifPresent(snapshot -> snapshots.put(isbn, snapshot));
+        }
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, ReservationResult> tryReserveAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        return applyAll(copiesByIsbn, allOrNothing, true);
+    }
+
+    @Override
+    public Map<String, ReservationResult> tryReleaseAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return releaseAfterCommit(copiesByIsbn, allOrNothing);
+        }
+        return applyAll(copiesByIsbn, allOrNothing, false);
+    }
+
+    private Optional<ReservationResult> applyOne(String isbn, int copies, boolean reserve, String exhaustedStatus) {
+        Change change;
+        ReentrantLock lock = stripeFor(isbn);
+        lock.lock();
+        try {
+            InventoryState state = load(isbn);
+            if (state == null || !canApply(state, copies, reserve)) {
+                return Optional.empty();
+            }
+            change = apply(state, copies, reserve, exhaustedStatus);
+        } finally {
+            lock.unlock();
+        }
+        settle(List.of(change));
+        return Optional.of(toResult(change.after, true));
+    }
+
+    private Map<String, ReservationResult> applyAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing,
+                                                    boolean reserve) {
+        preload(copiesByIsbn.keySet());
+        Map<String, ReservationResult> results = new LinkedHashMap<>();
+        List<Change> changes = new ArrayList<>();
+        withStripes(copiesByIsbn.keySet(), () -> {
+            Map<String, InventoryState> accepted = acceptedStates(copiesByIsbn, reserve);
+            if (allOrNothing && accepted.size() < copiesByIsbn.size()) {
+                // Nothing is changed; report what each accepted item would have become
+                results.putAll(predicted(accepted, copiesByIsbn, reserve));
+                return;
+            }
+            accepted.forEach((isbn, state) -> changes.add(apply(state, copiesByIsbn.get(isbn), reserve, BORROWED)));
+        });
+        settle(changes);
+        changes.forEach(change -> results.put(change.after.getIsbn(), toResult(change.after, true)));
+        return results;
+    }
+
+    // Inside a transaction returned copies only reach the shelf once it commits, so a rolled-back return never
+    // hands out copies that are still out. The result is what each book will become if nothing else changes it.
+    private Map<String, ReservationResult> releaseAfterCommit(Map<String, Integer> copiesByIsbn,
+                                                              boolean allOrNothing) {
+        preload(copiesByIsbn.keySet());
+        Map<String, InventoryState> accepted = new LinkedHashMap<>();
+        withStripes(copiesByIsbn.keySet(),
+                () -> acceptedStates(copiesByIsbn, false).forEach((isbn, state) -> accepted.put(isbn, state.copy())));
+        Map<String, ReservationResult> results = predicted(accepted, copiesByIsbn, false);
+        if (allOrNothing && accepted.size() < copiesByIsbn.size()) {
+            return results;
+        }
+
+        Map<String, Integer> releases = new LinkedHashMap<>();
+        accepted.keySet().forEach(isbn -> releases.put(isbn, copiesByIsbn.get(isbn)));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                releaseCommitted(releases);
+            }
+        });
+        return results;
+    }
+
+    // The caller's transaction has committed, so the copies are back whatever happens to the journal append
+    private void releaseCommitted(Map<String, Integer> releases) {
+        List<Change> changes = new ArrayList<>();
+        withStripes(releases.keySet(), () -> releases.forEach((isbn, copies) -> {
+            InventoryState state = entries.get(isbn);
+            if (state != null && canApply(state, copies, false)) {
+                changes.add(apply(state, copies, false, BORROWED));
+            } else {
+                log.error("Committed return of {} copies of {} would exceed its total copies, ignoring it", copies,
+                        isbn);
+            }
+        }));
+        try {
+            awaitDurable(changes);
+        } catch (IllegalStateException e) {
+            log.error("Returned copies of {} books are not journaled; they are kept and written behind", changes.size(),
+                    e);
+        }
+    }
+
+    // A change is only acknowledged once journaled: if the append fails it is undone before the caller sees the
+    // error. Inside a transaction it is undone again if the transaction rolls back.
+    private void settle(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            awaitDurable(changes);
+        } catch (IllegalStateException e) {
+            undo(changes);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        undo(changes);
+                    }
+                }
+            });
+        }
+    }
+
+    // Gives back the copies a change took and restores the status it replaced unless something else set one
+    // since. Copies a failed return put back may already be out again; only those still on the shelf come off.
+    private void undo(List<Change> changes) {
+        List<Change> undone = new ArrayList<>();
+        Set<String> isbns = new LinkedHashSet<>();
+        changes.forEach(change -> isbns.add(change.after.getIsbn()));
+        withStripes(isbns, () -> changes.forEach(change -> {
+            InventoryState state = entries.get(change.after.getIsbn());
+            int available = state.getAvailableCopies() + change.before.getAvailableCopies()
+                    - change.after.getAvailableCopies();
+            if (available < 0) {
+                log.error("Cannot take back {} returned copies of {}, they are already out again", -available,
+                        state.getIsbn());
+                available = 0;
+            }
+            String status = state.getStatus().equals(change.after.getStatus())
+                    ? change.before.getStatus()
+                    : state.getStatus();
+            if (available > 0 && (BORROWED.equals(status) || RESERVED.equals(status))) {
+                status = AVAILABLE;
+            }
+            undone.add(install(state, available, status));
+        }));
+        try {
+            awaitDurable(undone);
+        } catch (IllegalStateException e) {
+            log.error("Undo of {} inventory changes is not journaled; it is kept and written behind", undone.size(), e);
+        }
+    }
+
+    // Caller holds the stripe locks; entries are the live states
+    private Map<String, InventoryState> acceptedStates(Map<String, Integer> copiesByIsbn, boolean reserve) {
+        Map<String, InventoryState> accepted = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : copiesByIsbn.entrySet()) {
+            InventoryState state = load(entry.getKey());
+            if (state != null && canApply(state, entry.getValue(), reserve)) {
+                accepted.put(entry.getKey(), state);
+            }
+        }
+        return accepted;
+    }
+
+    private static Map<String, ReservationResult> predicted(Map<String, InventoryState> accepted,
+                                                            Map<String, Integer> copiesByIsbn,
+                                                            boolean reserve) {
+        Map<String, ReservationResult> results = new LinkedHashMap<>();
+        accepted.forEach((isbn, state) -> {
+            int copies = copiesByIsbn.get(isbn);
+            results.put(isbn, ReservationResult.applied(state.getBookId(),
+                    reserve ? state.getAvailableCopies() - copies : state.getAvailableCopies() + copies,
+                    reserve || !(BORROWED.equals(state.getStatus()) || RESERVED.equals(state.getStatus()))
+                            ? state.getStatus()
+                            : AVAILABLE,
+                    state.getVersion() + 1));
+        });
+        return results;
+    }
+
+    // Stripes are taken in index order, so overlapping batches cannot deadlock
+    private void withStripes(Collection<String> isbns, Runnable action) {
+        Set<Integer> stripeIndexes = new TreeSet<>();
+        isbns.forEach(isbn -> stripeIndexes.add(stripeIndex(isbn)));
+        stripeIndexes.forEach(index -> stripes[index].lock());
+        try {
+            action.run();
+        } finally {
+            stripeIndexes.forEach(index -> stripes[index].unlock());
+        }
+    }
+
+    // Same rules as the conditional UPDATEs in BookInventoryRepository
+    private static boolean canApply(InventoryState state, int copies, boolean reserve) {
+        return reserve
+                ? state.getAvailableCopies() >= copies
+                : state.getAvailableCopies() + copies <= state.getTotalCopies();
+    }
+
+    // exhaustedStatus is what a reservation that takes the last copy sets
+    private Change apply(InventoryState state, int copies, boolean reserve, String exhaustedStatus) {
+        int availableCopies = reserve ? state.getAvailableCopies() - copies : state.getAvailableCopies() + copies;
+        String status = state.getStatus();
+        if (reserve && availableCopies == 0) {
+            status = exhaustedStatus;
+        } else if (!reserve && (BORROWED.equals(status) || RESERVED.equals(status))) {
+            status = AVAILABLE;
+        }
+        return install(state, availableCopies, status);
+    }
+
+    // Caller holds the stripe lock; the entry is marked dirty before its journal append is queued
+    private Change install(InventoryState state, int availableCopies, String status) {
+        InventoryState before = state.copy();
+        state.setAvailableCopies(availableCopies);
+        state.setStatus(status);
+        state.setVersion(state.getVersion() + 1);
+        dirty.add(state.getIsbn());
+        return new Change(before, state.copy());
+    }
+
+    // Caller holds the stripe lock for the ISBN
+    private InventoryState load(String isbn) {
+        InventoryState state = entries.get(isbn);
+        if (state != null) {
+            return state;
+        }
+        InventoryState loaded = bookInventoryRepository.findInventoryStates(List.of(isbn)).get(isbn);
+        if (loaded == null) {
+            return null;
+        }
+        entries.putIfAbsent(isbn, loaded);
+        return entries.get(isbn);
+    }
+
+    // Loads unseen ISBNs in one query; an entry already present always wins over the table
+    private void preload(Collection<? extends String> isbns) {
+        List<String> missing = new ArrayList<>();
+        for (String isbn : isbns) {
+            if (!entries.containsKey(isbn)) {
+                missing.add(isbn);
+            }
+        }
+        if (!missing.isEmpty()) {
+            bookInventoryRepository.findInventoryStates(missing).forEach(entries::putIfAbsent);
+        }
+    }
+
+    private void awaitDurable(List<Change> changes) {
+        List<CompletableFuture<Void>> appends = new ArrayList<>(changes.size());
+        changes.forEach(change -> appends.add(journal.append(change.after)));
+        try {
+            CompletableFuture.allOf(appends.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Inventory change could not be journaled", e.getCause());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            log.error("Inventory write-behind failed, will retry", e);
+        }
+    }
+
+    // Sealing the segment first means every record in it belongs to an entry that is already dirty,
+    // so once the drained entries are written the sealed segments are no longer needed for recovery
+    private synchronized void flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        long sealedSegment = journal.roll();
+
+        List<InventoryState> states = new ArrayList<>();
+        for (Iterator<String> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            String isbn = iterator.next();
+            iterator.remove();
+            ReentrantLock lock = stripeFor(isbn);
+            lock.lock();
+            try {
+                states.add(entries.get(isbn).copy());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        try {
+            bookInventoryRepository.applyStates(states);
+        } catch (RuntimeException e) {
+            states.forEach(state -> dirty.add(state.getIsbn()));
+            throw e;
+        }
+        journal.deleteSegmentsUpTo(sealedSegment);
+        // Catalog reads come from the table: their validators and cached entities change once it has caught up
+        bookEntityCache.evictAll(states.stream().map(InventoryState::getBookId).toList());
+        catalogVersion.bump();
+        log.debug("Inventory write-behind flushed {} books", states.size());
+    }
+
+    private ReentrantLock stripeFor(String isbn) {
+        return stripes[stripeIndex(isbn)];
+    }
+
+    private int stripeIndex(String isbn) {
+        return Math.floorMod(isbn.hashCode(), stripes.length);
+    }
+
+    private static ReservationResult toResult(InventoryState state, boolean applied) {
+        return applied
+                ? ReservationResult.applied(state.getBookId(), state.getAvailableCopies(), state.getStatus(),
+                        state.getVersion())
+                : ReservationResult.rejected(state.getBookId(), state.getAvailableCopies(), state.getStatus(),
+                        state.getVersion());
+    }
+
+    private static final class Change {
+        private final InventoryState before;
+        private final InventoryState after;
+
+        private Change(InventoryState before, InventoryState after) {
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package libsys.comp41720.bookservice.repository;
+
+import jakarta.persistence.LockModeType;
+import libsys.comp41720.bookservice.entity.BookHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BookHoldRepository extends JpaRepository<BookHold, Long> {
+    
+    // Row locks serialise confirm, release and expiry of the same hold; whichever runs second sees it no longer HELD
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM BookHold h WHERE h.id IN :ids AND h.status = :status ORDER BY h.id")
+    List<BookHold> findForUpdate(@Param("ids") Collection<Long> ids, @Param("status") BookHold.HoldStatus status);
+    
+    List<HoldDeadline> findByStatus(BookHold.HoldStatus status);
+    
+    interface HoldDeadline {
+        Long getId();
+        
+        LocalDateTime getExpiresAt();
+    }
+}
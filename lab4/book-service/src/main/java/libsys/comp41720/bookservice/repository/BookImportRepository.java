@@ -0,0 +1,82 @@
+package libsys.comp41720.bookservice.repository;
+
+import libsys.comp41720.bookservice.dto.BookCreationRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class BookImportRepository {
+    
+    // One statement per chunk: rows travel as column arrays and ISBNs that already exist are skipped
+    private static final String INSERT_SQL = """
+            INSERT INTO books (isbn, title, author, publisher, publication_year, category,
+                               total_copies, available_copies, status, inventory_version,
+                               created_at, updated_at)
+            SELECT r.isbn, r.title, r.author, r.publisher, r.publication_year, r.category,
+                   r.total_copies, r.total_copies, 'AVAILABLE', 0, LOCALTIMESTAMP, LOCALTIMESTAMP
+            FROM unnest(:isbns, :titles, :authors, :publishers, :years, :categories, :copies)
+                 AS r(isbn, title, author, publisher, publication_year, category, total_copies)
+            ON CONFLICT (isbn) DO NOTHING
+            RETURNING id, isbn
+            """;
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    
+    // Returns the generated id for every inserted ISBN; ISBNs missing from the result already existed
+    public Map<String, Long> insertIgnoringExisting(List<BookCreationRequest> books) {
+        int size = books.size();
+        String[] isbns = new String[size];
+        String[] titles = new String[size];
+        String[] authors = new String[size];
+        String[] publishers = new String[size];
+        Integer[] years = new Integer[size];
+        String[] categories = new String[size];
+        Integer[] copies = new Integer[size];
+        
+        for (int i = 0; i < size; i++) {
+            BookCreationRequest book = books.get(i);
+            isbns[i] = book.getIsbn();
+            titles[i] = book.getTitle();
+            authors[i] = book.getAuthor();
+            publishers[i] = book.getPublisher();
+            years[i] = book.getPublicationYear();
+            categories[i] = book.getCategory();
+            copies[i] = book.getTotalCopies();
+        }
+        
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", isbns))
+                .addValue("titles", sqlArray("text", titles))
+                .addValue("authors", sqlArray("text", authors))
+                .addValue("publishers", sqlArray("text", publishers))
+                .addValue("years", sqlArray("int4", years))
+                .addValue("categories", sqlArray("text", categories))
+                .addValue("copies", sqlArray("int4", copies));
+        
+        Map<String, Long> inserted = new HashMap<>();
+        jdbcTemplate.query(INSERT_SQL, params, (RowCallbackHandler) rs ->
+                inserted.put(rs.getString("isbn"), rs.getLong("id")));
+        return inserted;
+    }
+    
+    private static SqlTypeValue sqlArray(String elementType, Object[] elements) {
+        return new AbstractSqlTypeValue() {
+            @Override
+            protected Object createTypeValue(Connection connection, int sqlType, String typeName) throws SQLException {
+                return connection.createArrayOf(elementType, elements);
+            }
+        };
+    }
+}
@@ -0,0 +1,273 @@
+package libsys.comp41720.bookservice.repository;
+
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.inventory.InventoryState;
+import libsys.comp41720.bookservice.inventory.InventoryStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Single-statement conditional updates: the WHERE guard keeps the counters within [0, total_copies]
+@Repository
+@RequiredArgsConstructor
+public class BookInventoryRepository implements InventoryStore {
+
+    private static final String RESERVE_SQL = """
+            UPDATE books
+            SET available_copies = available_copies - :copies,
+                status = CASE WHEN available_copies - :copies = 0 THEN 'BORROWED' ELSE status END,
+                inventory_version = inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            WHERE isbn = :isbn AND available_copies >= :copies
+            RETURNING id, available_copies, status, inventory_version
+            """;
+
+    private static final String HOLD_SQL = """
+            UPDATE books
+            SET available_copies = available_copies - :copies,
+                status = CASE WHEN available_copies - :copies = 0 THEN 'RESERVED' ELSE status END,
+                inventory_version = inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            WHERE isbn = :isbn AND available_copies >= :copies
+            RETURNING id, available_copies, status, inventory_version
+            """;
+
+    private static final String CONFIRM_HELD_SQL = """
+            UPDATE books
+            SET status = 'BORROWED',
+                inventory_version = inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            WHERE isbn = :isbn AND status = 'RESERVED' AND available_copies = 0
+            RETURNING id, available_copies, status, inventory_version
+            """;
+
+    private static final String RELEASE_SQL = """
+            UPDATE books
+            SET available_copies = available_copies + :copies,
+                status = CASE WHEN status IN ('BORROWED', 'RESERVED') THEN 'AVAILABLE' ELSE status END,
+                inventory_version = inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            WHERE isbn = :isbn AND available_copies + :copies <= total_copies
+            RETURNING id, available_copies, status, inventory_version
+            """;
+
+    private static final String STATUS_SQL = """
+            UPDATE books
+            SET status = :status,
+                inventory_version = inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            WHERE isbn = :isbn
+            RETURNING id, available_copies, status, inventory_version
+            """;
+
+    private static final String SNAPSHOT_SQL = """
+            SELECT id, available_copies, status, inventory_version
+            FROM books
+            WHERE isbn = :isbn
+            """;
+
+    // Requested copies are summed per ISBN and the target rows are locked in id order to avoid
+    // deadlocks between overlapping batches
+    private static final String BATCH_RESERVE_SQL = """
+            WITH requested AS (
+                SELECT r.isbn, SUM(r.copies) AS copies
+                FROM unnest(:isbns, :copies) AS r(isbn, copies)
+                GROUP BY r.isbn
+            ), locked AS (
+                SELECT b.id
+                FROM books b
+                JOIN requested r ON r.isbn = b.isbn
+                ORDER BY b.id
+                FOR UPDATE OF b
+            )
+            UPDATE books b
+            SET available_copies = b.available_copies - r.copies,
+                status = CASE WHEN b.available_copies - r.copies = 0 THEN 'BORROWED' ELSE b.status END,
+                inventory_version = b.inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            FROM requested r
+            WHERE b.isbn = r.isbn
+              AND b.id IN (SELECT id FROM locked)
+              AND b.available_copies >= r.copies
+            RETURNING b.id, b.isbn, b.available_copies, b.status, b.inventory_version
+            """;
+
+    private static final String BATCH_RELEASE_SQL = """
+            WITH requested AS (
+                SELECT r.isbn, SUM(r.copies) AS copies
+                FROM unnest(:isbns, :copies) AS r(isbn, copies)
+                GROUP BY r.isbn
+            ), locked AS (
+                SELECT b.id
+                FROM books b
+                JOIN requested r ON r.isbn = b.isbn
+                ORDER BY b.id
+                FOR UPDATE OF b
+            )
+            UPDATE books b
+            SET available_copies = b.available_copies + r.copies,
+                status = CASE WHEN b.status IN ('BORROWED', 'RESERVED') THEN 'AVAILABLE' ELSE b.status END,
+                inventory_version = b.inventory_version + 1,
+                updated_at = LOCALTIMESTAMP
+            FROM requested r
+            WHERE b.isbn = r.isbn
+              AND b.id IN (SELECT id FROM locked)
+              AND b.available_copies + r.copies <= b.total_copies
+            RETURNING b.id, b.isbn, b.available_copies, b.status, b.inventory_version
+            """;
+
+    private static final String BATCH_SNAPSHOT_SQL = """
+            SELECT id, isbn, available_copies, status, inventory_version
+            FROM books
+            WHERE isbn = ANY(:isbns)
+            """;
+
+    private static final String INVENTORY_STATE_SQL = """
+            SELECT id, isbn, total_copies, available_copies, status, inventory_version
+            FROM books
+            WHERE isbn = ANY(:isbns)
+            """;
+
+    // Written behind from the in-memory ledger; the version guard makes replaying a state idempotent
+    private static final String APPLY_STATES_SQL = """
+            UPDATE books b
+            SET available_copies = s.available_copies,
+                status = s.status,
+                inventory_version = s.inventory_version,
+                updated_at = LOCALTIMESTAMP
+            FROM unnest(:isbns, :availableCopies, :statuses, :versions)
+                AS s(isbn, available_copies, status, inventory_version)
+            WHERE b.isbn = s.isbn AND b.inventory_version < s.inventory_version
+            """;
+
+    private static final RowMapper<ReservationResult> APPLIED_MAPPER = (rs, rowNum) ->
+            ReservationResult.applied(rs.getLong("id"), rs.getInt("available_copies"), rs.getString("status"),
+                    rs.getLong("inventory_version"));
+
+    private static final RowMapper<ReservationResult> REJECTED_MAPPER = (rs, rowNum) ->
+            ReservationResult.rejected(rs.getLong("id"), rs.getInt("available_copies"), rs.getString("status"),
+                    rs.getLong("inventory_version"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<ReservationResult> tryReserve(String isbn, int copies) {
+        return queryForOptional(RESERVE_SQL, isbn, copies, APPLIED_MAPPER);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryRelease(String isbn, int copies) {
+        return queryForOptional(RELEASE_SQL, isbn, copies, APPLIED_MAPPER);
+    }
+
+    @Override
+    public Optional<ReservationResult> tryHold(String isbn, int copies) {
+        return queryForOptional(HOLD_SQL, isbn, copies, APPLIED_MAPPER);
+    }
+
+    @Override
+    public Optional<ReservationResult> confirmHeld(String isbn) {
+        return queryForOptional(CONFIRM_HELD_SQL, isbn, 0, APPLIED_MAPPER);
+    }
+
+    @Override
+    public Optional<ReservationResult> updateStatus(String isbn, String status) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbn", isbn)
+                .addValue("status", status);
+        return jdbcTemplate.query(STATUS_SQL, params, APPLIED_MAPPER).stream().findFirst();
+    }
+
+    // Current counters without modifying the row; reported as not applied
+    @Override
+    public Optional<ReservationResult> findSnapshot(String isbn) {
+        return queryForOptional(SNAPSHOT_SQL, isbn, 0, REJECTED_MAPPER);
+    }
+
+    // A failed all-or-nothing batch is undone by rolling back the caller's transaction
+    @Override
+    public Map<String, ReservationResult> tryReserveAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        return queryByIsbn(BATCH_RESERVE_SQL, batchParams(copiesByIsbn), APPLIED_MAPPER);
+    }
+
+    @Override
+    public Map<String, ReservationResult> tryReleaseAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        return queryByIsbn(BATCH_RELEASE_SQL, batchParams(copiesByIsbn), APPLIED_MAPPER);
+    }
+
+    @Override
+    public Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", isbns.toArray()));
+        return queryByIsbn(BATCH_SNAPSHOT_SQL, params, REJECTED_MAPPER);
+    }
+
+    public Map<String, InventoryState> findInventoryStates(Collection<String> isbns) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", isbns.toArray()));
+        Map<String, InventoryState> states = new HashMap<>();
+        jdbcTemplate.query(INVENTORY_STATE_SQL, params, (RowCallbackHandler) rs ->
+                states.put(rs.getString("isbn"), new InventoryState(rs.getString("isbn"), rs.getLong("id"),
+                        rs.getInt("total_copies"), rs.getInt("available_copies"), rs.getString("status"),
+                        rs.getLong("inventory_version"))));
+        return states;
+    }
+
+    public int applyStates(Collection<InventoryState> states) {
+        if (states.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", states.stream().map(InventoryState::getIsbn).toArray()))
+                .addValue("availableCopies", sqlArray("int4",
+                        states.stream().map(InventoryState::getAvailableCopies).toArray()))
+                .addValue("statuses", sqlArray("text", states.stream().map(InventoryState::getStatus).toArray()))
+                .addValue("versions", sqlArray("int8", states.stream().map(InventoryState::getVersion).toArray()));
+        return jdbcTemplate.update(APPLY_STATES_SQL, params);
+    }
+
+    private Map<String, ReservationResult> queryByIsbn(String sql, MapSqlParameterSource params,
+                                                       RowMapper<ReservationResult> mapper) {
+        Map<String, ReservationResult> results = new HashMap<>();
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                results.put(rs.getString("isbn"), mapper.mapRow(rs, rs.getRow())));
+        return results;
+    }
+
+    private static MapSqlParameterSource batchParams(Map<String, Integer> copiesByIsbn) {
+        return new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", copiesByIsbn.keySet().toArray()))
+                .addValue("copies", sqlArray("int4", copiesByIsbn.values().toArray()));
+    }
+
+    private static SqlTypeValue sqlArray(String elementType, Object[] elements) {
+        return new AbstractSqlTypeValue() {
+            @Override
+            protected Object createTypeValue(Connection connection, int sqlType, String typeName) throws SQLException {
+                return connection.createArrayOf(elementType, elements);
+            }
+        };
+    }
+
+    private Optional<ReservationResult> queryForOptional(String sql, String isbn, int copies,
+                                                         RowMapper<ReservationResult> mapper) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbn", isbn)
+                .addValue("copies", copies);
+        List<ReservationResult> rows = jdbcTemplate.query(sql, params, mapper);
+        return rows.stream().findFirst();
+    }
+}
@@ -0,0 +1,11 @@
+package libsys.comp41720.bookservice.repository;
+
+import libsys.comp41720.bookservice.entity.Book;
+
+import java.util.Optional;
+
+public interface BookNaturalIdRepository {
+    
+    // Resolved through the natural-id and entity second-level caches before falling back to a query
+    Optional<Book> findByNaturalIsbn(String isbn);
+}
@@ -0,0 +1,21 @@
+package libsys.comp41720.bookservice.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import libsys.comp41720.bookservice.entity.Book;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+public class BookNaturalIdRepositoryImpl implements BookNaturalIdRepository {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Optional<Book> findByNaturalIsbn(String isbn) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Book.class)
+                .loadOptional(isbn);
+    }
+}
@@ -1,15 +1,24 @@
 package libsys.comp41720.bookservice.repository;
 
+import libsys.comp41720.bookservice.dto.BookDTO;
 import libsys.comp41720.bookservice.entity.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookNaturalIdRepository {
+    
+    // Read paths project straight into BookDTO, so no managed entities are created for them
+    String DTO_SELECT = "SELECT new libsys.comp41720.bookservice.dto.BookDTO(b.id, b.isbn, b.title, b.author, "
+            + "b.publisher, b.publicationYear, b.category, b.totalCopies, b.availableCopies, b.status, "
+            + "b.createdAt, b.updatedAt) FROM Book b ";
     
     Optional<Book> findByIsbn(String isbn);
     
@@ -23,5 +32,43 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     List<Book> findAllAvailableBooks();
     
     boolean existsByIsbn(String isbn);
+    
+    @Query(DTO_SELECT)
+    List<BookDTO> findAllDtos();
+    
+    @Query(DTO_SELECT + "WHERE b.category = :category")
+    List<BookDTO> findDtosByCategory(@Param("category") String category);
+    
+    @Query(DTO_SELECT + "WHERE b.availableCopies > 0")
+    List<BookDTO> findAvailableDtos();
+    
+    @Query(DTO_SELECT + "WHERE b.id IN :ids")
+    List<BookDTO> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query(DTO_SELECT + "WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))")
+    List<BookDTO> findDtosByTitleContaining(@Param("title") String title, Pageable pageable);
+    
+    @Query(DTO_SELECT + "WHERE LOWER(b.title) LIKE LOWER(CONCAT(:prefix, '%')) ORDER BY b.title")
+    List<BookDTO> findDtosByTitleStartingWith(@Param("prefix") String prefix, Pageable pageable);
+    
+    @Query(DTO_SELECT + "WHERE LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))")
+    List<BookDTO> findDtosByAuthorContaining(@Param("author") String author, Pageable pageable);
+    
+    // Every field the search index covers, so results do not change when the index becomes ready
+    @Query(DTO_SELECT + "WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) "
+            + "OR LOWER(b.author) LIKE LOWER(CONCAT('%', :keyword, '%')) "
+            + "OR LOWER(b.publisher) LIKE LOWER(CONCAT('%', :keyword, '%')) "
+            + "OR LOWER(b.category) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    List<BookDTO> findDtosByKeyword(@Param("keyword") String keyword, Pageable pageable);
+    
+    @Query(DTO_SELECT + "WHERE b.id > :afterId ORDER BY b.id")
+    List<BookDTO> findPageAfter(@Param("afterId") long afterId, Pageable pageable);
+    
+    @Query(DTO_SELECT + "WHERE b.availableCopies > 0 AND b.id > :afterId ORDER BY b.id")
+    List<BookDTO> findAvailablePageAfter(@Param("afterId") long afterId, Pageable pageable);
+    
+    @Query(DTO_SELECT + "WHERE b.category = :category AND b.id > :afterId ORDER BY b.id")
+    List<BookDTO> findCategoryPageAfter(@Param("category") String category,
+                                        @Param("afterId") long afterId,
+                                        Pageable pageable);
 }
-
@@ -0,0 +1,75 @@
+package libsys.comp41720.bookservice.repository;
+
+import libsys.comp41720.bookservice.dto.BookDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+// Cursor-backed reads that hand each row to the caller as it arrives; callers must hold a transaction
+@Repository
+public class BookStreamingRepository {
+    
+    private static final String SELECT_COLUMNS = """
+            SELECT id, isbn, title, author, publisher, publication_year, category,
+                   total_copies, available_copies, status, created_at, updated_at
+            FROM books
+            """;
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    
+    public BookStreamingRepository(DataSource dataSource,
+                                   @Value("${book.streaming.fetch-size:500}") int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+    }
+    
+    public void streamAll(Consumer<BookDTO> consumer) {
+        jdbcTemplate.query(SELECT_COLUMNS + "ORDER BY id", new MapSqlParameterSource(), handler(consumer));
+    }
+    
+    public void streamAvailable(Consumer<BookDTO> consumer) {
+        jdbcTemplate.query(SELECT_COLUMNS + "WHERE available_copies > 0 ORDER BY id",
+                new MapSqlParameterSource(), handler(consumer));
+    }
+    
+    public void streamByCategory(String category, Consumer<BookDTO> consumer) {
+        jdbcTemplate.query(SELECT_COLUMNS + "WHERE category = :category ORDER BY id",
+                new MapSqlParameterSource("category", category), handler(consumer));
+    }
+    
+    private static RowCallbackHandler handler(Consumer<BookDTO> consumer) {
+        return rs -> consumer.accept(toDto(rs));
+    }
+    
+    private static BookDTO toDto(ResultSet rs) throws SQLException {
+        return new BookDTO(
+            rs.getLong("id"),
+            rs.getString("isbn"),
+            rs.getString("title"),
+            rs.getString("author"),
+            rs.getString("publisher"),
+            rs.getObject("publication_year", Integer.class),
+            rs.getString("category"),
+            rs.getInt("total_copies"),
+            rs.getInt("available_copies"),
+            rs.getString("status"),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            toLocalDateTime(rs.getTimestamp("updated_at"))
+        );
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,364 @@
+package libsys.comp41720.bookservice.repository;
+
+import libsys.comp41720.bookservice.dto.BranchAvailability;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Copy counters partitioned by branch. A change locks and updates one branch row only; the totals it reports
+// are summed over the book's branches in the same statement, and the book row itself is brought up to date
+// later by refresh().
+@Repository
+@RequiredArgsConstructor
+public class BranchInventoryRepository {
+
+    public enum Pick {
+        // Only the requested branch, waiting for its row lock
+        PREFERRED,
+        // Any branch, skipping rows another transaction has locked
+        ANY_UNLOCKED,
+        // Any branch, waiting for row locks; tried again while some branch still qualifies
+        ANY
+    }
+
+    // Status and totals as a book-level change would leave them; other branches contribute their committed
+    // counters and the changed branch its new ones. While other branches change concurrently that can be a state
+    // that never exists, so it is only reported to the caller; availability is published from SNAPSHOT_SQL.
+    private static final String CHANGE_RESULT_SELECT = """
+            SELECT b.id,
+                   c.branch,
+                   o.available_copies + c.available_copies AS available_copies,
+                   o.version + c.version AS inventory_version,
+                   CASE WHEN o.available_copies + c.available_copies = 0 THEN :exhaustedStatus
+                        WHEN b.status IN ('BORROWED', 'RESERVED') THEN 'AVAILABLE'
+                        ELSE b.status END AS status
+            FROM changed c
+            JOIN books b ON b.isbn = c.isbn
+            CROSS JOIN LATERAL (
+                SELECT COALESCE(SUM(x.available_copies), 0) AS available_copies,
+                       COALESCE(SUM(x.version), 0) AS version
+                FROM book_branch_inventory x
+                WHERE x.isbn = c.isbn AND x.id <> c.id
+            ) o
+            """;
+
+    // One branch row supplies all the copies; a request no single branch can fill is rejected, not split
+    private static final String TAKE_SQL = """
+            WITH target AS (
+                SELECT id
+                FROM book_branch_inventory
+                WHERE isbn = :isbn AND available_copies >= :copies %s
+            ), changed AS (
+                UPDATE book_branch_inventory i
+                SET available_copies = i.available_copies - :copies,
+                    version = i.version + 1,
+                    updated_at = LOCALTIMESTAMP
+                FROM target t
+                WHERE i.id = t.id AND i.available_copies >= :copies
+                RETURNING i.id, i.isbn, i.branch, i.available_copies, i.version
+            )
+            """ + CHANGE_RESULT_SELECT;
+
+    private static final String GIVE_SQL = """
+            WITH target AS (
+                SELECT id
+                FROM book_branch_inventory
+                WHERE isbn = :isbn AND available_copies + :copies <= total_copies %s
+            ), changed AS (
+                UPDATE book_branch_inventory i
+                SET available_copies = i.available_copies + :copies,
+                    version = i.version + 1,
+                    updated_at = LOCALTIMESTAMP
+                FROM target t
+                WHERE i.id = t.id AND i.available_copies + :copies <= i.total_copies
+                RETURNING i.id, i.isbn, i.branch, i.available_copies, i.version
+            )
+            """ + CHANGE_RESULT_SELECT;
+
+    // Candidates are those qualifying in the statement's snapshot, and locking one waits for whoever holds it. When
+    // that transaction emptied the row and put copies into a branch that did not qualify before, the statement
+    // skips the row and finds nothing else, although a branch qualifies by the time it returns.
+    private static final String CAN_TAKE_SQL = """
+            SELECT EXISTS (
+                SELECT 1
+                FROM book_branch_inventory
+                WHERE isbn = :isbn AND available_copies >= :copies
+            )
+            """;
+
+    private static final String CAN_GIVE_SQL = """
+            SELECT EXISTS (
+                SELECT 1
+                FROM book_branch_inventory
+                WHERE isbn = :isbn AND available_copies + :copies <= total_copies
+            )
+            """;
+
+    private static final Map<Pick, String> TAKE_SQL_BY_PICK = Map.of(
+            Pick.PREFERRED, TAKE_SQL.formatted("AND branch = :branch FOR UPDATE"),
+            Pick.ANY_UNLOCKED, TAKE_SQL.formatted("ORDER BY available_copies DESC LIMIT 1 FOR UPDATE SKIP LOCKED"),
+            Pick.ANY, TAKE_SQL.formatted("ORDER BY available_copies DESC LIMIT 1 FOR UPDATE"));
+
+    // Without a branch, returned copies go to the one with the most copies out that has room for all of them
+    private static final Map<Pick, String> GIVE_SQL_BY_PICK = Map.of(
+            Pick.PREFERRED, GIVE_SQL.formatted("AND branch = :branch FOR UPDATE"),
+            Pick.ANY_UNLOCKED, GIVE_SQL.formatted(
+                    "ORDER BY total_copies - available_copies DESC LIMIT 1 FOR UPDATE SKIP LOCKED"),
+            Pick.ANY, GIVE_SQL.formatted("ORDER BY total_copies - available_copies DESC LIMIT 1 FOR UPDATE"));
+
+    // Status changes are rare, so they write the book row directly. Bumping one branch row keeps the book's
+    // version equal to the sum over its branches, so a later refresh is not mistaken for an older state.
+    private static final String SET_STATUS_SQL = """
+            WITH totals AS (
+                SELECT isbn, SUM(available_copies) AS available_copies, SUM(version) AS version,
+                       MIN(branch) AS first_branch
+                FROM book_branch_inventory
+                WHERE isbn = :isbn
+                GROUP BY isbn
+            ), target AS (
+                SELECT b.id
+                FROM books b
+                JOIN totals t ON t.isbn = b.isbn
+                WHERE %s
+                FOR UPDATE OF b
+            ), bumped AS (
+                UPDATE book_branch_inventory i
+                SET version = i.version + 1,
+                    updated_at = LOCALTIMESTAMP
+                FROM totals t
+                WHERE i.isbn = t.isbn AND i.branch = t.first_branch AND EXISTS (SELECT 1 FROM target)
+            )
+            UPDATE books b
+            SET status = :status,
+                available_copies = t.available_copies,
+                inventory_version = t.version + 1,
+                updated_at = LOCALTIMESTAMP
+            FROM totals t
+            WHERE b.isbn = t.isbn AND b.id IN (SELECT id FROM target)
+            RETURNING b.id, b.available_copies, b.status, b.inventory_version
+            """;
+
+    private static final String UPDATE_STATUS_SQL = SET_STATUS_SQL.formatted("TRUE");
+
+    // A book still showing AVAILABLE with nothing left has a hold waiting to be written behind
+    private static final String CONFIRM_HELD_SQL = SET_STATUS_SQL.formatted(
+            "t.available_copies = 0 AND b.status IN ('RESERVED', 'AVAILABLE')");
+
+    // The version is the sum over the branch rows as committed. Every commit raises it by at least one, so it is a
+    // per-book counter in commit order and no two committed states share it; a sequence value drawn during the
+    // change would not be, as transactions can commit in another order than they drew their numbers.
+    private static final String SNAPSHOT_SQL = """
+            SELECT b.id,
+                   b.isbn,
+                   t.available_copies,
+                   t.largest_branch_copies,
+                   t.version AS inventory_version,
+                   CASE WHEN t.available_copies = 0 AND b.status = 'AVAILABLE' THEN 'BORROWED'
+                        WHEN t.available_copies > 0 AND b.status IN ('BORROWED', 'RESERVED') THEN 'AVAILABLE'
+                        ELSE b.status END AS status
+            FROM books b
+            JOIN (
+                SELECT isbn, SUM(available_copies) AS available_copies, MAX(available_copies) AS largest_branch_copies,
+                       SUM(version) AS version
+                FROM book_branch_inventory
+                WHERE isbn = ANY(:isbns)
+                GROUP BY isbn
+            ) t ON t.isbn = b.isbn
+            """;
+
+    private static final String BRANCHES_SQL = """
+            SELECT branch, total_copies, available_copies
+            FROM book_branch_inventory
+            WHERE isbn = :isbn
+            ORDER BY branch
+            """;
+
+    private static final String INSERT_SPLIT_SQL = """
+            INSERT INTO book_branch_inventory (book_id, isbn, branch, total_copies, available_copies, version,
+                                               updated_at)
+            SELECT b.id, b.isbn, s.branch, s.copies, s.copies, 0, LOCALTIMESTAMP
+            FROM books b
+            CROSS JOIN unnest(:branches, :copies) AS s(branch, copies)
+            WHERE b.isbn = :isbn
+            """;
+
+    // Books without branch rows (created before branch inventory was enabled, or bulk imported) get a single
+    // row holding all their copies; its version starts at the book's so the sum is unchanged
+    private static final String BACKFILL_SQL = """
+            INSERT INTO book_branch_inventory (book_id, isbn, branch, total_copies, available_copies, version,
+                                               updated_at)
+            SELECT b.id, b.isbn, :branch, b.total_copies, b.available_copies, b.inventory_version, LOCALTIMESTAMP
+            FROM books b
+            WHERE %s
+              AND NOT EXISTS (SELECT 1 FROM book_branch_inventory i WHERE i.isbn = b.isbn)
+            """;
+
+    private static final String BACKFILL_ALL_SQL = BACKFILL_SQL.formatted("TRUE");
+
+    private static final String BACKFILL_ISBNS_SQL = BACKFILL_SQL.formatted("b.isbn = ANY(:isbns)");
+
+    // Write-behind of the branch totals into the book row. The hint is the status the last change computed,
+    // which tells a hold that took the last copy (RESERVED) from a loan (BORROWED).
+    private static final String REFRESH_SQL = """
+            UPDATE books b
+            SET available_copies = t.available_copies,
+                status = CASE WHEN t.available_copies = 0
+                                  THEN CASE WHEN h.status = 'RESERVED' THEN 'RESERVED' ELSE 'BORROWED' END
+                              WHEN b.status IN ('BORROWED', 'RESERVED') THEN 'AVAILABLE'
+                              ELSE b.status END,
+                inventory_version = t.version,
+                updated_at = LOCALTIMESTAMP
+            FROM (
+                SELECT isbn, SUM(available_copies) AS available_copies, SUM(version) AS version
+                FROM book_branch_inventory
+                WHERE isbn = ANY(:isbns)
+                GROUP BY isbn
+            ) t
+            JOIN unnest(:isbns, :statuses) AS h(isbn, status) ON h.isbn = t.isbn
+            WHERE b.isbn = t.isbn AND b.inventory_version < t.version
+            RETURNING b.id
+            """;
+
+    private static final RowMapper<ReservationResult> CHANGE_MAPPER = (rs, rowNum) -> {
+        ReservationResult result = ReservationResult.applied(rs.getLong("id"), rs.getInt("available_copies"),
+                rs.getString("status"), rs.getLong("inventory_version"));
+        result.setBranch(rs.getString("branch"));
+        return result;
+    };
+
+    private static final RowMapper<ReservationResult> STATUS_MAPPER = (rs, rowNum) ->
+            ReservationResult.applied(rs.getLong("id"), rs.getInt("available_copies"), rs.getString("status"),
+                    rs.getLong("inventory_version"));
+
+    private static final RowMapper<ReservationResult> SNAPSHOT_MAPPER = (rs, rowNum) ->
+            ReservationResult.rejected(rs.getLong("id"), rs.getInt("available_copies"), rs.getString("status"),
+                    rs.getLong("inventory_version"));
+
+    // A request is filled by one branch, so it can take no more than the branch holding the most
+    private static final RowMapper<ReservationResult> RESERVABLE_MAPPER = (rs, rowNum) ->
+            ReservationResult.rejected(rs.getLong("id"), rs.getInt("largest_branch_copies"), rs.getString("status"),
+                    rs.getLong("inventory_version"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Optional<ReservationResult> take(String isbn, int copies, String branch, Pick pick,
+                                            String exhaustedStatus) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbn", isbn)
+                .addValue("copies", copies)
+                .addValue("branch", branch)
+                .addValue("exhaustedStatus", exhaustedStatus);
+        return change(TAKE_SQL_BY_PICK.get(pick), CAN_TAKE_SQL, params, pick);
+    }
+
+    public Optional<ReservationResult> give(String isbn, int copies, String branch, Pick pick) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbn", isbn)
+                .addValue("copies", copies)
+                .addValue("branch", branch)
+                .addValue("exhaustedStatus", "BORROWED");
+        return change(GIVE_SQL_BY_PICK.get(pick), CAN_GIVE_SQL, params, pick);
+    }
+
+    public Optional<ReservationResult> updateStatus(String isbn, String status) {
+        return setStatus(UPDATE_STATUS_SQL, isbn, status);
+    }
+
+    public Optional<ReservationResult> confirmHeld(String isbn) {
+        return setStatus(CONFIRM_HELD_SQL, isbn, "BORROWED");
+    }
+
+    public Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns) {
+        return findSnapshots(isbns, SNAPSHOT_MAPPER);
+    }
+
+    // As findSnapshots, but reporting the most copies a single request can take
+    public Map<String, ReservationResult> findReservable(Collection<? extends String> isbns) {
+        return findSnapshots(isbns, RESERVABLE_MAPPER);
+    }
+
+    public List<BranchAvailability> findBranches(String isbn) {
+        return jdbcTemplate.query(BRANCHES_SQL, new MapSqlParameterSource("isbn", isbn), (rs, rowNum) ->
+                new BranchAvailability(rs.getString("branch"), rs.getInt("total_copies"),
+                        rs.getInt("available_copies")));
+    }
+
+    public int insertSplit(String isbn, Map<String, Integer> copiesByBranch) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbn", isbn)
+                .addValue("branches", sqlArray("text", copiesByBranch.keySet().toArray()))
+                .addValue("copies", sqlArray("int4", copiesByBranch.values().toArray()));
+        return jdbcTemplate.update(INSERT_SPLIT_SQL, params);
+    }
+
+    public int backfill(String branch) {
+        return jdbcTemplate.update(BACKFILL_ALL_SQL, new MapSqlParameterSource("branch", branch));
+    }
+
+    public int backfill(String branch, Collection<String> isbns) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("branch", branch)
+                .addValue("isbns", sqlArray("text", isbns.toArray()));
+        return jdbcTemplate.update(BACKFILL_ISBNS_SQL, params);
+    }
+
+    // Returns the ids of the books whose row changed
+    public List<Long> refresh(Map<String, String> statusHintsByIsbn) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", statusHintsByIsbn.keySet().toArray()))
+                .addValue("statuses", sqlArray("text", statusHintsByIsbn.values().toArray()));
+        return jdbcTemplate.queryForList(REFRESH_SQL, params, Long.class);
+    }
+
+    // Every retry follows a commit that changed the row it waited for, so the retries end once no branch qualifies
+    private Optional<ReservationResult> change(String sql, String qualifiesSql, MapSqlParameterSource params,
+                                               Pick pick) {
+        while (true) {
+            Optional<ReservationResult> result = jdbcTemplate.query(sql, params, CHANGE_MAPPER).stream().findFirst();
+            if (result.isPresent() || pick != Pick.ANY
+                    || !Boolean.TRUE.equals(jdbcTemplate.queryForObject(qualifiesSql, params, Boolean.class))) {
+                return result;
+            }
+        }
+    }
+
+    private Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns,
+                                                         RowMapper<ReservationResult> mapper) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbns", sqlArray("text", isbns.toArray()));
+        Map<String, ReservationResult> snapshots = new HashMap<>();
+        jdbcTemplate.query(SNAPSHOT_SQL, params, (RowCallbackHandler) rs ->
+                snapshots.put(rs.getString("isbn"), mapper.mapRow(rs, rs.getRow())));
+        return snapshots;
+    }
+
+    private Optional<ReservationResult> setStatus(String sql, String isbn, String status) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("isbn", isbn)
+                .addValue("status", status);
+        return jdbcTemplate.query(sql, params, STATUS_MAPPER).stream().findFirst();
+    }
+
+    private static SqlTypeValue sqlArray(String elementType, Object[] elements) {
+        return new AbstractSqlTypeValue() {
+            @Override
+            protected Object createTypeValue(Connection connection, int sqlType, String typeName) throws SQLException {
+                return connection.createArrayOf(elementType, elements);
+            }
+        };
+    }
+}
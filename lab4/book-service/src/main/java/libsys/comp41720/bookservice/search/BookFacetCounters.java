@@ -0,0 +1,261 @@
+package libsys.comp41720.bookservice.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.dto.BookFacets;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.event.BookAvailabilityChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Category, status and publication-decade counts for the catalog, kept in memory so facet requests never
+// touch the books table. Each book remembers the values it was counted under, so an availability event only
+// moves its own contribution. A periodic pass over the table picks up books and changes this instance did
+// not see, such as those made through another replica of the service.
+@Component
+@Slf4j
+public class BookFacetCounters {
+
+    private static final int RECONCILE_BATCH_SIZE = 10_000;
+    private static final String UNKNOWN_DECADE = "unknown";
+
+    private static final String RECONCILE_BATCH_SQL = """
+            SELECT id, category, publication_year, status, total_copies, available_copies, inventory_version
+            FROM books
+            WHERE id > :afterId
+            ORDER BY id
+            LIMIT :limit
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final CatalogVersion catalogVersion;
+    private final Duration reconcileInterval;
+    private final Counter corrections;
+    private final ScheduledExecutorService reconciler;
+
+    private final Map<Long, CountedBook> books = new ConcurrentHashMap<>();
+    private final Bucket total = new Bucket();
+    private final Map<String, Bucket> categories = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> statuses = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> decades = new ConcurrentHashMap<>();
+    private volatile LocalDateTime reconciledAt;
+
+    public BookFacetCounters(NamedParameterJdbcTemplate jdbcTemplate,
+                             CatalogVersion catalogVersion,
+                             MeterRegistry meterRegistry,
+                             @Value("${book.facets.reconcile-interval:5m}") Duration reconcileInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogVersion = catalogVersion;
+        this.reconcileInterval = reconcileInterval;
+        this.corrections = Counter.builder("book.facets.reconcile.corrections")
+                .description("Books whose facet counts were found stale by reconciliation")
+                .register(meterRegistry);
+        Gauge.builder("book.facets.books", books, Map::size)
+                .description("Books tracked by the facet counters")
+                .register(meterRegistry);
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "facet-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The first pass also loads the counters, so it starts straight away rather than after one interval
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconciler.scheduleWithFixedDelay(this::reconcile, 0, reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+    // A book created inside a transaction is only counted once that transaction commits
+    public void index(Book book) {
+        Runnable count = () -> track(book.getId(), book.getCategory(), book.getPublicationYear(),
+                book.getStatus().name(), book.getTotalCopies(), book.getAvailableCopies(), book.getInventoryVersion());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    count.run();
+                }
+            });
+        } else {
+            count.run();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        BookAvailabilityCache.Availability availability = event.getAvailability();
+        CountedBook book = books.get(availability.getBookId());
+        if (book != null) {
+            book.update(availability.getStatus(), book.totalCopies, availability.getAvailableCopies(),
+                    availability.getVersion());
+        }
+    }
+
+    public BookFacets snapshot() {
+        return new BookFacets(total.books.sum(), total.totalCopies.sum(), total.availableCopies.sum(),
+                toCounts(categories), toCounts(statuses), toCounts(decades), reconciledAt);
+    }
+
+    private void reconcile() {
+        try {
+            long started = System.currentTimeMillis();
+            long afterId = 0L;
+            int scanned = 0;
+            int corrected = 0;
+
+            while (true) {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("afterId", afterId)
+                        .addValue("limit", RECONCILE_BATCH_SIZE);
+                List<Object[]> rows = jdbcTemplate.query(RECONCILE_BATCH_SQL, params, (rs, rowNum) -> new Object[]{
+                        rs.getLong("id"),
+                        rs.getString("category"),
+                        rs.getObject("publication_year", Integer.class),
+                        rs.getString("status"),
+                        rs.getInt("total_copies"),
+                        rs.getInt("available_copies"),
+                        rs.getLong("inventory_version")
+                });
+                if (rows.isEmpty()) {
+                    break;
+                }
+
+                for (Object[] row : rows) {
+                    if (track((Long) row[0], (String) row[1], (Integer) row[2], (String) row[3], (Integer) row[4],
+                            (Integer) row[5], (Long) row[6])) {
+                        corrected++;
+                    }
+                }
+
+                scanned += rows.size();
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+            }
+
+            // The first pass loads everything and is not drift
+            if (reconciledAt != null && corrected > 0) {
+                corrections.increment(corrected);
+                log.info("Facet reconciliation corrected {} of {} books", corrected, scanned);
+            }
+            if (corrected > 0) {
+                catalogVersion.bump();
+            }
+            reconciledAt = LocalDateTime.now();
+            log.debug("Facet reconciliation checked {} books in {} ms", scanned, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Facet reconciliation failed, retrying in {}", reconcileInterval, e);
+        }
+    }
+
+    // Returns true when the book was missing or counted from an older inventory version
+    private boolean track(Long bookId, String category, Integer publicationYear, String status, int totalCopies,
+                          int availableCopies, long version) {
+        boolean[] added = new boolean[1];
+        CountedBook book = books.computeIfAbsent(bookId, id -> {
+            CountedBook counted = new CountedBook(category, decadeOf(publicationYear));
+            counted.add(status, totalCopies, availableCopies, version);
+            added[0] = true;
+            return counted;
+        });
+        return added[0] || book.update(status, totalCopies, availableCopies, version);
+    }
+
+    private static String decadeOf(Integer publicationYear) {
+        return publicationYear == null ? UNKNOWN_DECADE : Integer.toString(Math.floorDiv(publicationYear, 10) * 10);
+    }
+
+    // Buckets emptied by moves stay in the map but are left out of the response
+    private static List<BookFacets.FacetCount> toCounts(Map<String, Bucket> buckets) {
+        Map<String, BookFacets.FacetCount> sorted = new TreeMap<>();
+        buckets.forEach((value, bucket) -> {
+            long bookCount = bucket.books.sum();
+            if (bookCount > 0) {
+                sorted.put(value, new BookFacets.FacetCount(value, bookCount, bucket.totalCopies.sum(),
+                        bucket.availableCopies.sum()));
+            }
+        });
+        return List.copyOf(sorted.values());
+    }
+
+    private static final class Bucket {
+        private final LongAdder books = new LongAdder();
+        private final LongAdder totalCopies = new LongAdder();
+        private final LongAdder availableCopies = new LongAdder();
+
+        private void add(int sign, int total, int available) {
+            books.add(sign);
+            totalCopies.add((long) sign * total);
+            availableCopies.add((long) sign * available);
+        }
+    }
+
+    // Category and publication year are fixed once a book is created; status and copies move with events
+    private final class CountedBook {
+        private final String category;
+        private final String decade;
+        private String status;
+        private int totalCopies;
+        private int availableCopies;
+        private long version = -1;
+
+        private CountedBook(String category, String decade) {
+            this.category = category;
+            this.decade = decade;
+        }
+
+        private synchronized void add(String newStatus, int newTotalCopies, int newAvailableCopies,
+                                      long newVersion) {
+            status = newStatus;
+            totalCopies = newTotalCopies;
+            availableCopies = newAvailableCopies;
+            version = newVersion;
+            count(1);
+        }
+
+        // Out-of-order events and rows read before a newer event carry an older version and are ignored
+        private synchronized boolean update(String newStatus, int newTotalCopies, int newAvailableCopies,
+                                            long newVersion) {
+            if (newVersion <= version) {
+                return false;
+            }
+            count(-1);
+            add(newStatus, newTotalCopies, newAvailableCopies, newVersion);
+            return true;
+        }
+
+        private void count(int sign) {
+            total.add(sign, totalCopies, availableCopies);
+            categories.computeIfAbsent(category, key -> new Bucket()).add(sign, totalCopies, availableCopies);
+            statuses.computeIfAbsent(status, key -> new Bucket()).add(sign, totalCopies, availableCopies);
+            decades.computeIfAbsent(decade, key -> new Bucket()).add(sign, totalCopies, availableCopies);
+        }
+    }
+}
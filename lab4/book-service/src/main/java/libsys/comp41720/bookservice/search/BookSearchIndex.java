@@ -0,0 +1,380 @@
+package libsys.comp41720.bookservice.search;
+
+import libsys.comp41720.bookservice.entity.Book;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram inverted index over the searchable book fields, kept in sync by BookManagementService
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSearchIndex {
+
+    public enum Field {
+        TITLE(4.0),
+        AUTHOR(3.0),
+        PUBLISHER(1.0),
+        CATEGORY(1.5);
+
+        private final double weight;
+
+        Field(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int BUILD_BATCH_SIZE = 10_000;
+    private static final Field[] FIELDS = Field.values();
+
+    private static final String BUILD_BATCH_SQL = """
+            SELECT id, title, author, publisher, category
+            FROM books
+            WHERE id > :afterId
+            ORDER BY id
+            LIMIT :limit
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String[]> documents = new ArrayList<>();
+    private final Map<Long, Integer> ordinalsByBookId = new HashMap<>();
+    private final List<Map<String, Postings>> postingsByField = newFieldPostings();
+    private long[] bookIds = new long[1024];
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        log.info("Building book search index");
+        long started = System.currentTimeMillis();
+        long afterId = 0L;
+        int indexed = 0;
+
+        while (true) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("afterId", afterId)
+                    .addValue("limit", BUILD_BATCH_SIZE);
+            List<Object[]> rows = jdbcTemplate.query(BUILD_BATCH_SQL, params, (rs, rowNum) -> new Object[]{
+                    rs.getLong("id"),
+                    rs.getString("title"),
+                    rs.getString("author"),
+                    rs.getString("publisher"),
+                    rs.getString("category")
+            });
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Object[] row : rows) {
+                    addDocument((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            indexed += rows.size();
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+
+        ready = true;
+        log.info("Book search index built - {} books in {} ms", indexed, System.currentTimeMillis() - started);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A book created inside a transaction is only indexed once that transaction commits
+    public void index(Book book) {
+        Runnable add = () -> {
+            lock.writeLock().lock();
+            try {
+                addDocument(book.getId(), book.getTitle(), book.getAuthor(), book.getPublisher(), book.getCategory());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add.run();
+                }
+            });
+        } else {
+            add.run();
+        }
+    }
+
+    // Every query term must match at least one of the given fields; results are book ids, best first
+    public List<Long> search(String query, Set<Field> fields, int limit) {
+        List<String> terms = tokenize(normalize(query));
+        if (terms.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            terms.sort(Comparator.comparingInt(term -> estimateCandidates(term, fields)));
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (int candidate : candidates(terms.get(0), fields)) {
+                double score = score(candidate, terms.get(0), fields);
+                if (score > 0) {
+                    scores.put(candidate, score);
+                }
+            }
+
+            for (int i = 1; i < terms.size() && !scores.isEmpty(); i++) {
+                String term = terms.get(i);
+                scores.entrySet().removeIf(entry -> {
+                    double score = score(entry.getKey(), term, fields);
+                    if (score <= 0) {
+                        return true;
+                    }
+                    entry.setValue(entry.getValue() + score);
+                    return false;
+                });
+            }
+
+            return topResults(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> search(String query, int limit) {
+        return search(query, EnumSet.allOf(Field.class), limit);
+    }
+
+    private void addDocument(Long bookId, String title, String author, String publisher, String category) {
+        if (ordinalsByBookId.containsKey(bookId)) {
+            return;
+        }
+
+        int ordinal = documents.size();
+        String[] values = new String[]{normalize(title), normalize(author), normalize(publisher), normalize(category)};
+        documents.add(values);
+        ordinalsByBookId.put(bookId, ordinal);
+
+        if (ordinal == bookIds.length) {
+            bookIds = Arrays.copyOf(bookIds, ordinal * 2);
+        }
+        bookIds[ordinal] = bookId;
+
+        for (Field field : FIELDS) {
+            Map<String, Postings> postings = postingsByField.get(field.ordinal());
+            for (String key : indexKeys(values[field.ordinal()])) {
+                postings.computeIfAbsent(key, k -> new Postings()).add(ordinal);
+            }
+        }
+    }
+
+    private int estimateCandidates(String term, Set<Field> fields) {
+        int estimate = 0;
+        for (Field field : fields) {
+            int smallest = Integer.MAX_VALUE;
+            for (String key : queryKeys(term)) {
+                Postings postings = postingsByField.get(field.ordinal()).get(key);
+                smallest = Math.min(smallest, postings == null ? 0 : postings.size);
+            }
+            estimate += smallest == Integer.MAX_VALUE ? 0 : smallest;
+        }
+        return estimate;
+    }
+
+    private Set<Integer> candidates(String term, Set<Field> fields) {
+        Set<Integer> candidates = new HashSet<>();
+        for (Field field : fields) {
+            int[] intersection = null;
+            for (String key : queryKeys(term)) {
+                Postings postings = postingsByField.get(field.ordinal()).get(key);
+                if (postings == null) {
+                    intersection = new int[0];
+                    break;
+                }
+                intersection = intersection == null
+                        ? Arrays.copyOf(postings.ordinals, postings.size)
+                        : postings.intersect(intersection);
+                if (intersection.length == 0) {
+                    break;
+                }
+            }
+            if (intersection != null) {
+                for (int ordinal : intersection) {
+                    candidates.add(ordinal);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Trigram hits can be false positives, so every candidate is verified against the stored text
+    private double score(int ordinal, String term, Set<Field> fields) {
+        String[] values = documents.get(ordinal);
+        double score = 0;
+        for (Field field : fields) {
+            String value = values[field.ordinal()];
+            String padded = " " + value + " ";
+            if (padded.contains(" " + term + " ")) {
+                score += field.weight * 3;
+            } else if (padded.contains(" " + term)) {
+                score += field.weight * 2;
+            } else if (term.length() >= GRAM_LENGTH && value.contains(term)) {
+                score += field.weight;
+            }
+        }
+        return score;
+    }
+
+    private List<Long> topResults(Map<Integer, Double> scores, int limit) {
+        Comparator<Map.Entry<Integer, Double>> ranking = Map.Entry.<Integer, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(ranking);
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Long> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            results.add(bookIds[top.poll().getKey()]);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private static List<Map<String, Postings>> newFieldPostings() {
+        List<Map<String, Postings>> postings = new ArrayList<>(FIELDS.length);
+        for (int i = 0; i < FIELDS.length; i++) {
+            postings.add(new HashMap<>());
+        }
+        return postings;
+    }
+
+    private static Set<String> indexKeys(String value) {
+        Set<String> keys = new HashSet<>();
+        for (String token : tokenize(value)) {
+            keys.add("^" + token.substring(0, 1));
+            if (token.length() >= 2) {
+                keys.add("^" + token.substring(0, 2));
+            }
+            for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+                keys.add(token.substring(i, i + GRAM_LENGTH));
+            }
+        }
+        return keys;
+    }
+
+    // Terms shorter than a trigram fall back to token-prefix matching
+    private static List<String> queryKeys(String term) {
+        if (term.length() < GRAM_LENGTH) {
+            return List.of("^" + term);
+        }
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+            keys.add(term.substring(i, i + GRAM_LENGTH));
+        }
+        return keys;
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        for (char c : value.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static List<String> tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split(" ")) {
+            if (!token.isEmpty() && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Append-only ordinal list; ordinals are assigned in increasing order so it stays sorted
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        int[] intersect(int[] sorted) {
+            int[] result = new int[Math.min(size, sorted.length)];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < size && j < sorted.length) {
+                if (ordinals[i] < sorted[j]) {
+                    i++;
+                } else if (ordinals[i] > sorted[j]) {
+                    j++;
+                } else {
+                    result[count++] = ordinals[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
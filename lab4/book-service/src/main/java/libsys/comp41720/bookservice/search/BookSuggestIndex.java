@@ -0,0 +1,475 @@
+package libsys.comp41720.bookservice.search;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.dto.BookSuggestion;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.event.BookAvailabilityChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Radix trie over book titles and author names for type-ahead. Every word start of a phrase is a key,
+// so "pot" finds "Harry Potter"; keys are cut at maxKeyLength and longer prefixes are checked against
+// the phrase. Each distinct phrase is one suggestion, ranked by demand or by copies on the shelf.
+@Component
+@Slf4j
+public class BookSuggestIndex {
+
+    public enum Type {
+        TITLE,
+        AUTHOR
+    }
+
+    public enum Ranking {
+        POPULARITY,
+        AVAILABILITY
+    }
+
+    private static final int BUILD_BATCH_SIZE = 10_000;
+
+    private static final String BUILD_BATCH_SQL = """
+            SELECT id, title, author, total_copies, available_copies, inventory_version
+            FROM books
+            WHERE id > :afterId
+            ORDER BY id
+            LIMIT :limit
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final int maxKeyLength;
+    private final int maxWordsPerPhrase;
+    private final Comparator<Entry> ranking;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Type, Map<String, Integer>> entryOrdinals = new EnumMap<>(Type.class);
+    private final Map<Long, IndexedBook> books = new ConcurrentHashMap<>();
+    private final Footprint footprint = new Footprint();
+    private volatile boolean ready;
+
+    public BookSuggestIndex(NamedParameterJdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${book.suggest.max-key-length:32}") int maxKeyLength,
+                            @Value("${book.suggest.max-words-per-phrase:8}") int maxWordsPerPhrase,
+                            @Value("${book.suggest.ranking:popularity}") String ranking) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxKeyLength = maxKeyLength;
+        this.maxWordsPerPhrase = maxWordsPerPhrase;
+        this.ranking = comparator(Ranking.valueOf(ranking.toUpperCase(Locale.ROOT)));
+        for (Type type : Type.values()) {
+            entryOrdinals.put(type, new HashMap<>());
+        }
+
+        Gauge.builder("book.suggest.nodes", footprint, f -> f.nodes)
+                .description("Nodes in the suggestion trie")
+                .register(meterRegistry);
+        Gauge.builder("book.suggest.entries", footprint, f -> f.entries)
+                .description("Distinct title and author suggestions")
+                .register(meterRegistry);
+        Gauge.builder("book.suggest.memory.estimated", footprint, Footprint::estimatedBytes)
+                .description("Estimated heap retained by the suggestion trie")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        log.info("Building book suggestion index");
+        long started = System.currentTimeMillis();
+        long afterId = 0L;
+        int indexed = 0;
+
+        while (true) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("afterId", afterId)
+                    .addValue("limit", BUILD_BATCH_SIZE);
+            List<Object[]> rows = jdbcTemplate.query(BUILD_BATCH_SQL, params, (rs, rowNum) -> new Object[]{
+                    rs.getLong("id"),
+                    rs.getString("title"),
+                    rs.getString("author"),
+                    rs.getInt("total_copies"),
+                    rs.getInt("available_copies"),
+                    rs.getLong("inventory_version")
+            });
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Object[] row : rows) {
+                    addBook((Long) row[0], (String) row[1], (String) row[2], (Integer) row[3], (Integer) row[4],
+                            (Long) row[5]);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            indexed += rows.size();
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+
+        ready = true;
+        log.info("Book suggestion index built - {} books in {} ms, footprint: {}", indexed,
+                System.currentTimeMillis() - started, footprint);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // A book created inside a transaction is only indexed once that transaction commits
+    public void index(Book book) {
+        Runnable add = () -> {
+            lock.writeLock().lock();
+            try {
+                addBook(book.getId(), book.getTitle(), book.getAuthor(), book.getTotalCopies(),
+                        book.getAvailableCopies(), book.getInventoryVersion());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add.run();
+                }
+            });
+        } else {
+            add.run();
+        }
+    }
+
+    // Copies leaving the shelf count as demand; only the scores change, so the trie lock is not needed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        BookAvailabilityCache.Availability availability = event.getAvailability();
+        IndexedBook book = books.get(availability.getBookId());
+        if (book != null) {
+            book.update(availability.getAvailableCopies(), availability.getVersion());
+        }
+    }
+
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        String normalized = BookSearchIndex.normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        boolean truncated = normalized.length() > maxKeyLength;
+        String key = truncated ? normalized.substring(0, maxKeyLength) : normalized;
+
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            if (node == null) {
+                return List.of();
+            }
+
+            PriorityQueue<Entry> top = new PriorityQueue<>(ranking.reversed());
+            BitSet seen = new BitSet(entries.size());
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(node);
+            while (!pending.isEmpty()) {
+                Node current = pending.pop();
+                for (int ordinal : current.entries) {
+                    if (seen.get(ordinal)) {
+                        continue;
+                    }
+                    seen.set(ordinal);
+                    Entry entry = entries.get(ordinal);
+                    if (truncated && !(" " + entry.normalized).contains(" " + normalized)) {
+                        continue;
+                    }
+                    top.offer(entry);
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+                for (Node child : current.children) {
+                    pending.push(child);
+                }
+            }
+
+            List<BookSuggestion> suggestions = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Entry entry = top.poll();
+                suggestions.add(new BookSuggestion(entry.text, entry.type.name(),
+                        entry.type == Type.TITLE ? entry.bookId : null));
+            }
+            Collections.reverse(suggestions);
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addBook(Long bookId, String title, String author, int totalCopies, int availableCopies,
+                         long version) {
+        if (books.containsKey(bookId)) {
+            return;
+        }
+        Entry titleEntry = entryFor(Type.TITLE, title, bookId);
+        Entry authorEntry = entryFor(Type.AUTHOR, author, bookId);
+        IndexedBook book = new IndexedBook(titleEntry, authorEntry, availableCopies, version);
+        // Copies currently out seed the demand, so a restart does not reset the ranking to alphabetical
+        book.adjust(Math.max(0, totalCopies - availableCopies), availableCopies);
+        books.put(bookId, book);
+    }
+
+    private Entry entryFor(Type type, String text, Long bookId) {
+        String normalized = BookSearchIndex.normalize(text);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        Map<String, Integer> ordinals = entryOrdinals.get(type);
+        Integer existing = ordinals.get(normalized);
+        if (existing != null) {
+            return entries.get(existing);
+        }
+
+        int ordinal = entries.size();
+        Entry entry = new Entry(text.strip(), normalized, type, bookId);
+        entries.add(entry);
+        ordinals.put(normalized, ordinal);
+        footprint.entries++;
+        footprint.textChars += entry.text.length() + normalized.length();
+
+        int words = 0;
+        for (int start = 0; start < normalized.length() && words < maxWordsPerPhrase; start++) {
+            if (start == 0 || normalized.charAt(start - 1) == ' ') {
+                String key = normalized.substring(start, Math.min(normalized.length(), start + maxKeyLength));
+                insert(key, ordinal);
+                words++;
+            }
+        }
+        return entry;
+    }
+
+    // Caller holds the write lock
+    private void insert(String key, int ordinal) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.childIndex(key.charAt(position));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(position));
+                node.insertChild(-index - 1, leaf);
+                footprint.added(leaf);
+                node = leaf;
+                position = key.length();
+                break;
+            }
+
+            Node child = node.children[index];
+            int common = commonPrefixLength(child.label, key, position);
+            if (common < child.label.length()) {
+                // Split the edge: the shared part becomes a new node above the existing child
+                Node split = new Node(child.label.substring(0, common));
+                footprint.labelChars -= child.label.length() - common;
+                child.label = child.label.substring(common);
+                split.firsts = new char[]{child.label.charAt(0)};
+                split.children = new Node[]{child};
+                node.children[index] = split;
+                footprint.added(split);
+                child = split;
+            }
+            node = child;
+            position += common;
+        }
+        if (node.addEntry(ordinal)) {
+            footprint.keys++;
+        }
+    }
+
+    // Node whose subtree holds every key starting with the prefix
+    private Node find(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            int index = node.childIndex(prefix.charAt(position));
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            int common = commonPrefixLength(child.label, prefix, position);
+            if (position + common == prefix.length()) {
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            position += common;
+        }
+        return node;
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int length = 0;
+        while (length < max && label.charAt(length) == key.charAt(offset + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static Comparator<Entry> comparator(Ranking ranking) {
+        Comparator<Entry> popularity = Comparator.comparingInt((Entry entry) -> entry.demand.get()).reversed();
+        Comparator<Entry> availability = Comparator.comparingInt((Entry entry) -> entry.availableCopies.get())
+                .reversed();
+        Comparator<Entry> primary = ranking == Ranking.POPULARITY
+                ? popularity.thenComparing(availability)
+                : availability.thenComparing(popularity);
+        return primary.thenComparingInt(entry -> entry.text.length())
+                .thenComparing(entry -> entry.text);
+    }
+
+    private static final class Entry {
+        private final String text;
+        private final String normalized;
+        private final Type type;
+        private final Long bookId;
+        // Summed over every book sharing the phrase, e.g. all books by one author
+        private final AtomicInteger demand = new AtomicInteger();
+        private final AtomicInteger availableCopies = new AtomicInteger();
+
+        private Entry(String text, String normalized, Type type, Long bookId) {
+            this.text = text;
+            this.normalized = normalized;
+            this.type = type;
+            this.bookId = bookId;
+        }
+    }
+
+    private static final class IndexedBook {
+        private final Entry title;
+        private final Entry author;
+        private int availableCopies;
+        private long version;
+
+        private IndexedBook(Entry title, Entry author, int availableCopies, long version) {
+            this.title = title;
+            this.author = author;
+            this.availableCopies = availableCopies;
+            this.version = version;
+        }
+
+        // Out-of-order events carry an older inventory version and are ignored
+        private synchronized void update(int newAvailableCopies, long newVersion) {
+            if (newVersion <= version) {
+                return;
+            }
+            int delta = newAvailableCopies - availableCopies;
+            availableCopies = newAvailableCopies;
+            version = newVersion;
+            adjust(Math.max(0, -delta), delta);
+        }
+
+        private void adjust(int demandDelta, int availableDelta) {
+            for (Entry entry : new Entry[]{title, author}) {
+                if (entry != null) {
+                    entry.demand.addAndGet(demandDelta);
+                    entry.availableCopies.addAndGet(availableDelta);
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_CHARS = new char[0];
+        private static final Node[] NO_NODES = new Node[0];
+        private static final int[] NO_ENTRIES = new int[0];
+
+        private String label;
+        // First character of each child's label, sorted, for a binary search per step
+        private char[] firsts = NO_CHARS;
+        private Node[] children = NO_NODES;
+        private int[] entries = NO_ENTRIES;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private int childIndex(char c) {
+            return Arrays.binarySearch(firsts, c);
+        }
+
+        private void insertChild(int index, Node child) {
+            char[] newFirsts = new char[firsts.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newFirsts[index] = child.label.charAt(0);
+            newChildren[index] = child;
+            System.arraycopy(firsts, index, newFirsts, index + 1, firsts.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        private boolean addEntry(int ordinal) {
+            for (int existing : entries) {
+                if (existing == ordinal) {
+                    return false;
+                }
+            }
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = ordinal;
+            return true;
+        }
+    }
+
+    // Counters maintained on insert; the byte estimate assumes compressed oops and Latin-1 strings
+    private static final class Footprint {
+        private volatile long nodes;
+        private volatile long keys;
+        private volatile long entries;
+        private volatile long labelChars;
+        private volatile long textChars;
+
+        private void added(Node node) {
+            nodes++;
+            labelChars += node.label.length();
+        }
+
+        // Per node: object (32), label String (24 + array header 16), child slot in parent (2 + 4);
+        // per key: an int in a node's entry array; per entry: the object, its counters and two strings
+        private long estimatedBytes() {
+            return nodes * (32 + 40 + 6) + labelChars + keys * 4 + entries * (32 + 2 * 16 + 2 * 40) + textChars;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d nodes, %d keys, %d entries, ~%d KiB", nodes, keys, entries,
+                    estimatedBytes() / 1024);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package libsys.comp41720.bookservice.service;
+
+import libsys.comp41720.bookservice.dto.HoldDTO;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.entity.BookHold;
+import libsys.comp41720.bookservice.hold.HoldExpirySweeper;
+import libsys.comp41720.bookservice.inventory.InventoryStore;
+import libsys.comp41720.bookservice.repository.BookHoldRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Reservations that give their copies back unless confirmed within a time limit
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookHoldService {
+    
+    private final BookHoldRepository bookHoldRepository;
+    private final InventoryStore inventoryStore;
+    private final BookManagementService bookManagementService;
+    private final HoldExpirySweeper holdExpirySweeper;
+    
+    @Value("${book.hold.max-ttl:1h}")
+    private Duration maxTtl;
+    
+    // The hold row is written first so a rejected hold can simply be rolled back
+    @Transactional
+    public ReservationResult holdBook(String isbn, int copies, Duration ttl, String preferredBranch) {
+        Duration effectiveTtl = ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+        log.info("Attempting to hold {} copies of book {} for {}", copies, isbn, effectiveTtl);
+        
+        BookHold hold = new BookHold();
+        hold.setIsbn(isbn);
+        hold.setCopies(copies);
+        hold.setStatus(BookHold.HoldStatus.HELD);
+        hold.setExpiresAt(LocalDateTime.now().plus(effectiveTtl));
+        BookHold savedHold = bookHoldRepository.save(hold);
+        
+        ReservationResult result = inventoryStore.tryHold(isbn, copies, preferredBranch).orElse(null);
+        if (result == null) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            ReservationResult rejected = inventoryStore.findReservable(isbn)
+                    .orElseThrow(() -> new IllegalArgumentException("Book not found: " + isbn));
+            log.warn("Insufficient copies available for hold. Requested: {}, Available: {}",
+                    copies, rejected.getAvailableCopies());
+            return rejected;
+        }
+        
+        savedHold.setBranch(result.getBranch());
+        bookManagementService.publishInventoryChange(isbn, result);
+        afterCommit(() -> holdExpirySweeper.schedule(savedHold.getId(), savedHold.getExpiresAt()));
+        result.setHoldId(savedHold.getId());
+        result.setHoldExpiresAt(savedHold.getExpiresAt());
+        log.info("Hold {} placed on {} copies of book {} until {}", savedHold.getId(), copies, isbn,
+                savedHold.getExpiresAt());
+        return result;
+    }
+    
+    @Transactional
+    public HoldDTO confirmHold(long holdId) {
+        log.info("Confirming hold {}", holdId);
+        BookHold hold = lockHeld(holdId);
+        hold.setStatus(BookHold.HoldStatus.CONFIRMED);
+        
+        inventoryStore.confirmHeld(hold.getIsbn())
+                .ifPresent(result -> bookManagementService.publishInventoryChange(hold.getIsbn(), result));
+        afterCommit(() -> holdExpirySweeper.cancel(holdId));
+        log.info("Hold {} confirmed", holdId);
+        return HoldDTO.fromEntity(hold);
+    }
+    
+    @Transactional
+    public HoldDTO releaseHold(long holdId) {
+        log.info("Releasing hold {}", holdId);
+        BookHold hold = lockHeld(holdId);
+        hold.setStatus(BookHold.HoldStatus.RELEASED);
+        
+        ReservationResult result = inventoryStore.tryRelease(hold.getIsbn(), hold.getCopies(), hold.getBranch())
+                .orElse(null);
+        if (result == null) {
+            log.warn("Releasing hold {} would exceed the total copies of book {}", holdId, hold.getIsbn());
+        } else {
+            bookManagementService.publishInventoryChange(hold.getIsbn(), result);
+        }
+        afterCommit(() -> holdExpirySweeper.cancel(holdId));
+        log.info("Hold {} released", holdId);
+        return HoldDTO.fromEntity(hold);
+    }
+    
+    @Transactional(readOnly = true)
+    public HoldDTO getHold(long holdId) {
+        return bookHoldRepository.findById(holdId)
+                .map(HoldDTO::fromEntity)
+                .orElseThrow(() -> new IllegalArgumentException("Hold not found: " + holdId));
+    }
+    
+    private BookHold lockHeld(long holdId) {
+        return bookHoldRepository.findForUpdate(List.of(holdId), BookHold.HoldStatus.HELD)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> bookHoldRepository.existsById(holdId)
+                        ? new IllegalStateException("Hold " + holdId + " is no longer held")
+                        : new IllegalArgumentException("Hold not found: " + holdId));
+    }
+    
+    // The wheel only learns about a hold once its row is committed (and forgets it only then)
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
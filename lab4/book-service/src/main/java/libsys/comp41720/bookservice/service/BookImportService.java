@@ -0,0 +1,320 @@
+package libsys.comp41720.bookservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import libsys.comp41720.bookservice.dto.BookCreationRequest;
+import libsys.comp41720.bookservice.dto.BookImportReport;
+import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.repository.BookImportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookImportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private final BookImportRepository bookImportRepository;
+    private final BookManagementService bookManagementService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${book.import.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${book.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    public BookImportReport importBooks(InputStream input, Format format) throws IOException {
+        log.info("Starting bulk book import, format: {}", format);
+        long started = System.nanoTime();
+
+        BookImportReport report = new BookImportReport();
+        List<PendingRow> chunk = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            RowSource source = format == Format.CSV ? new CsvRowSource(reader) : new NdjsonRowSource(reader);
+            PendingRow row;
+            while ((row = source.next()) != null) {
+                report.setTotalRows(report.getTotalRows() + 1);
+                if (row.error != null) {
+                    reject(report, row.rowNumber, row.isbn(), row.error);
+                    continue;
+                }
+
+                String violations = validate(row.request);
+                if (violations != null) {
+                    reject(report, row.rowNumber, row.isbn(), violations);
+                    continue;
+                }
+
+                chunk.add(row);
+                if (chunk.size() >= batchSize) {
+                    flush(chunk, report);
+                }
+            }
+        }
+        flush(chunk, report);
+
+        long elapsedNanos = System.nanoTime() - started;
+        report.setElapsedMillis(elapsedNanos / 1_000_000);
+        report.setRowsPerSecond(elapsedNanos == 0 ? 0 : report.getImported() * 1_000_000_000.0 / elapsedNanos);
+        log.info("Bulk import finished - rows: {}, imported: {}, rejected: {}, {} rows/s",
+                report.getTotalRows(), report.getImported(), report.getRejected(), (long) report.getRowsPerSecond());
+        return report;
+    }
+
+    private void flush(List<PendingRow> chunk, BookImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Duplicates inside the chunk are settled here; duplicates against the table by ON CONFLICT
+        Set<String> seen = new HashSet<>();
+        List<PendingRow> unique = new ArrayList<>(chunk.size());
+        for (PendingRow row : chunk) {
+            if (seen.add(row.isbn())) {
+                unique.add(row);
+            } else {
+                reject(report, row.rowNumber, row.isbn(), "Duplicate ISBN in upload");
+            }
+        }
+
+        Map<String, Long> inserted = bookImportRepository.insertIgnoringExisting(unique.stream()
+                .map(row -> row.request)
+                .collect(Collectors.toList()));
+
+        List<Book> importedBooks = new ArrayList<>(inserted.size());
+        for (PendingRow row : unique) {
+            Long id = inserted.get(row.isbn());
+            if (id == null) {
+                reject(report, row.rowNumber, row.isbn(), "Book with ISBN " + row.isbn() + " already exists");
+            } else {
+                importedBooks.add(toBook(id, row.request));
+            }
+        }
+
+        bookManagementService.registerImportedBooks(importedBooks);
+        report.setImported(report.getImported() + importedBooks.size());
+        chunk.clear();
+    }
+
+    private String validate(BookCreationRequest request) {
+        Set<ConstraintViolation<BookCreationRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void reject(BookImportReport report, long rowNumber, String isbn, String message) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add(new BookImportReport.RowError(rowNumber, isbn, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static Book toBook(Long id, BookCreationRequest request) {
+        Book book = new Book();
+        book.setId(id);
+        book.setIsbn(request.getIsbn());
+        book.setTitle(request.getTitle());
+        book.setAuthor(request.getAuthor());
+        book.setPublisher(request.getPublisher());
+        book.setPublicationYear(request.getPublicationYear());
+        book.setCategory(request.getCategory());
+        book.setTotalCopies(request.getTotalCopies());
+        book.setAvailableCopies(request.getTotalCopies());
+        book.setStatus(Book.BookStatus.AVAILABLE);
+        return book;
+    }
+
+    private static final class PendingRow {
+        private final long rowNumber;
+        private final BookCreationRequest request;
+        private final String error;
+
+        private PendingRow(long rowNumber, BookCreationRequest request, String error) {
+            this.rowNumber = rowNumber;
+            this.request = request;
+            this.error = error;
+        }
+
+        private String isbn() {
+            return request != null ? request.getIsbn() : null;
+        }
+    }
+
+    private interface RowSource {
+        PendingRow next() throws IOException;
+    }
+
+    private final class NdjsonRowSource implements RowSource {
+        private final BufferedReader reader;
+        private long rowNumber;
+
+        private NdjsonRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public PendingRow next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rowNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    return new PendingRow(rowNumber, objectMapper.readValue(line, BookCreationRequest.class), null);
+                } catch (JsonProcessingException e) {
+                    return new PendingRow(rowNumber, null, "Malformed JSON: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    // RFC 4180 style: comma separated, optional double quotes, "" escapes a quote, quoted fields may span lines
+    private static final class CsvRowSource implements RowSource {
+        private static final List<String> REQUIRED_COLUMNS = List.of("isbn", "title", "author", "publisher",
+                "category", "totalcopies");
+
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long lineNumber;
+        // Line the current record starts on; a quoted field spanning lines puts later records further down
+        private long rowNumber;
+
+        private CsvRowSource(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) {
+                return;
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+            }
+            for (String column : REQUIRED_COLUMNS) {
+                if (!columns.containsKey(column)) {
+                    throw new IllegalArgumentException("CSV header is missing column: " + column);
+                }
+            }
+        }
+
+        @Override
+        public PendingRow next() throws IOException {
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isBlank());
+
+            BookCreationRequest request = new BookCreationRequest();
+            request.setIsbn(field(record, "isbn"));
+            request.setTitle(field(record, "title"));
+            request.setAuthor(field(record, "author"));
+            request.setPublisher(field(record, "publisher"));
+            request.setCategory(field(record, "category"));
+            try {
+                request.setPublicationYear(parseInteger(field(record, "publicationyear")));
+                request.setTotalCopies(parseInteger(field(record, "totalcopies")));
+            } catch (NumberFormatException e) {
+                return new PendingRow(rowNumber, request, "Invalid number: " + e.getMessage());
+            }
+            return new PendingRow(rowNumber, request, null);
+        }
+
+        private String field(List<String> record, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static Integer parseInteger(String value) {
+            return value == null ? null : Integer.valueOf(value);
+        }
+
+        private List<String> readRecord() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            rowNumber = ++lineNumber;
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    String continuation = reader.readLine();
+                    if (continuation == null) {
+                        break;
+                    }
+                    lineNumber++;
+                    current.append('\n');
+                    line = continuation;
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == '"' && i < line.length() && line.charAt(i) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+    }
+}
@@ -1,15 +1,44 @@
 package libsys.comp41720.bookservice.service;
 
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.datasource.ReadConsistency;
+import libsys.comp41720.bookservice.dto.BatchReservationResult;
 import libsys.comp41720.bookservice.dto.BookCreationRequest;
 import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.bookservice.dto.BookFacets;
+import libsys.comp41720.bookservice.dto.BookPage;
+import libsys.comp41720.bookservice.dto.BookSuggestion;
+import libsys.comp41720.bookservice.dto.BranchAvailability;
+import libsys.comp41720.bookservice.dto.ReservationResult;
 import libsys.comp41720.bookservice.entity.Book;
+import libsys.comp41720.bookservice.event.BookAvailabilityChangedEvent;
+import libsys.comp41720.bookservice.inventory.InventoryStore;
 import libsys.comp41720.bookservice.repository.BookRepository;
+import libsys.comp41720.bookservice.repository.BookStreamingRepository;
+import libsys.comp41720.bookservice.search.BookFacetCounters;
+import libsys.comp41720.bookservice.search.BookSearchIndex;
+import libsys.comp41720.bookservice.search.BookSuggestIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,6 +47,31 @@ import java.util.stream.Collectors;
 public class BookManagementService {
     
     private final BookRepository bookRepository;
+    private final InventoryStore inventoryStore;
+    private final BookAvailabilityCache availabilityCache;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final BookFacetCounters bookFacetCounters;
+    private final BookStreamingRepository bookStreamingRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${book.search.default-limit:50}")
+    private int defaultSearchLimit;
+    
+    @Value("${book.search.max-limit:500}")
+    private int maxSearchLimit;
+    
+    @Value("${book.suggest.default-limit:10}")
+    private int defaultSuggestLimit;
+    
+    @Value("${book.suggest.max-limit:25}")
+    private int maxSuggestLimit;
+    
+    @Value("${book.pagination.default-limit:100}")
+    private int defaultPageLimit;
+    
+    @Value("${book.pagination.max-limit:1000}")
+    private int maxPageLimit;
     
     @Transactional
     public BookDTO createBook(BookCreationRequest request) {
@@ -38,107 +92,414 @@ public class BookManagementService {
         book.setAvailableCopies(request.getTotalCopies());
         book.setStatus(Book.BookStatus.AVAILABLE);
         
+        Map<String, Integer> branchCopies = validateBranchCopies(request);
+        
         Book savedBook = bookRepository.save(book);
+        inventoryStore.registerBook(savedBook.getIsbn(), branchCopies);
+        publishAvailability(toAvailability(savedBook));
+        bookSearchIndex.index(savedBook);
+        bookSuggestIndex.index(savedBook);
+        bookFacetCounters.index(savedBook);
         log.info("Successfully created book: {}", savedBook.getIsbn());
         
         return BookDTO.fromEntity(savedBook);
     }
     
+    private Map<String, Integer> validateBranchCopies(BookCreationRequest request) {
+        Map<String, Integer> branchCopies = request.getBranchCopies();
+        if (branchCopies == null || branchCopies.isEmpty()) {
+            return Map.of();
+        }
+        if (!inventoryStore.isBranchAware()) {
+            throw new IllegalArgumentException("Branch copies require book.inventory.mode=branch");
+        }
+        int sum = 0;
+        for (Map.Entry<String, Integer> entry : branchCopies.entrySet()) {
+            if (entry.getKey() == null || entry.getKey().isBlank() || entry.getValue() == null
+                    || entry.getValue() < 0) {
+                throw new IllegalArgumentException("Invalid branch copies for branch: " + entry.getKey());
+            }
+            sum += entry.getValue();
+        }
+        if (sum != request.getTotalCopies()) {
+            throw new IllegalArgumentException("Branch copies add up to " + sum + ", expected "
+                    + request.getTotalCopies());
+        }
+        return branchCopies;
+    }
+    
+    // Bulk-imported rows bypass createBook, so they are brought into the index and cache here
+    public void registerImportedBooks(List<Book> books) {
+        inventoryStore.registerBooks(books.stream().map(Book::getIsbn).toList());
+        for (Book book : books) {
+            bookSearchIndex.index(book);
+            bookSuggestIndex.index(book);
+            bookFacetCounters.index(book);
+            publishAvailability(toAvailability(book));
+        }
+    }
+    
     @Transactional(readOnly = true)
     public List<BookDTO> getAllBooks() {
         log.info("Fetching all books");
-        return bookRepository.findAll()
-                .stream()
-                .map(BookDTO::fromEntity)
-                .collect(Collectors.toList());
+        return bookRepository.findAllDtos();
     }
     
+    // Loads the entity through the second-level cache, which must not be filled from a lagging replica;
+    // it is also the lookup a client makes right after creating a book
     @Transactional(readOnly = true)
     public BookDTO getBookByIsbn(String isbn) {
         log.info("Fetching book with ISBN: {}", isbn);
-        return bookRepository.findByIsbn(isbn)
+        return ReadConsistency.fresh(() -> bookRepository.findByNaturalIsbn(isbn))
                 .map(BookDTO::fromEntity)
                 .orElseThrow(() -> new IllegalArgumentException("Book not found with ISBN: " + isbn));
     }
     
+    // Availability is taken from the snapshot the caller derived its ETag from, so body and tag agree
+    @Transactional(readOnly = true)
+    public BookDTO getBookByIsbn(String isbn, BookAvailabilityCache.Availability availability) {
+        BookDTO book = getBookByIsbn(isbn);
+        book.setAvailableCopies(availability.getAvailableCopies());
+        book.setStatus(availability.getStatus());
+        return book;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<BookDTO> searchBooks(String query, Integer limit) {
+        log.info("Searching books by keywords: {}", query);
+        if (!bookSearchIndex.isReady()) {
+            return bookRepository.findDtosByKeyword(query, PageRequest.of(0, resolveSearchLimit(limit)));
+        }
+        return searchIndexed(query, EnumSet.allOf(BookSearchIndex.Field.class), limit);
+    }
+    
     @Transactional(readOnly = true)
-    public List<BookDTO> searchBooksByTitle(String title) {
+    public List<BookDTO> searchBooksByTitle(String title, Integer limit) {
         log.info("Searching books by title: {}", title);
-        return bookRepository.findByTitleContainingIgnoreCase(title)
-                .stream()
-                .map(BookDTO::fromEntity)
-                .collect(Collectors.toList());
+        if (!bookSearchIndex.isReady()) {
+            return bookRepository.findDtosByTitleContaining(title, PageRequest.of(0, resolveSearchLimit(limit)));
+        }
+        return searchIndexed(title, EnumSet.of(BookSearchIndex.Field.TITLE), limit);
     }
     
     @Transactional(readOnly = true)
-    public List<BookDTO> searchBooksByAuthor(String author) {
+    public List<BookDTO> searchBooksByAuthor(String author, Integer limit) {
         log.info("Searching books by author: {}", author);
-        return bookRepository.findByAuthorContainingIgnoreCase(author)
-                .stream()
-                .map(BookDTO::fromEntity)
-                .collect(Collectors.toList());
+        if (!bookSearchIndex.isReady()) {
+            return bookRepository.findDtosByAuthorContaining(author, PageRequest.of(0, resolveSearchLimit(limit)));
+        }
+        return searchIndexed(author, EnumSet.of(BookSearchIndex.Field.AUTHOR), limit);
+    }
+    
+    // Called per keystroke, so it logs at debug; only the start-up window before the trie is built hits the database
+    public List<BookSuggestion> suggest(String prefix, Integer limit) {
+        log.debug("Suggesting completions for prefix: {}", prefix);
+        int resolvedLimit = limit == null || limit <= 0 ? defaultSuggestLimit : Math.min(limit, maxSuggestLimit);
+        if (!bookSuggestIndex.isReady()) {
+            return bookRepository.findDtosByTitleStartingWith(prefix, PageRequest.of(0, resolvedLimit))
+                    .stream()
+                    .map(book -> new BookSuggestion(book.getTitle(), BookSuggestIndex.Type.TITLE.name(), book.getId()))
+                    .collect(Collectors.toList());
+        }
+        return bookSuggestIndex.suggest(prefix, resolvedLimit);
+    }
+    
+    // Served from in-memory counters; reserve, release and status changes reach them through availability events
+    public BookFacets getFacets() {
+        return bookFacetCounters.snapshot();
     }
     
     @Transactional(readOnly = true)
     public List<BookDTO> getBooksByCategory(String category) {
         log.info("Fetching books in category: {}", category);
-        return bookRepository.findByCategory(category)
-                .stream()
-                .map(BookDTO::fromEntity)
-                .collect(Collectors.toList());
+        return bookRepository.findDtosByCategory(category);
     }
     
     @Transactional(readOnly = true)
     public List<BookDTO> getAvailableBooks() {
         log.info("Fetching all available books");
-        return bookRepository.findAllAvailableBooks()
-                .stream()
-                .map(BookDTO::fromEntity)
-                .collect(Collectors.toList());
+        return bookRepository.findAvailableDtos();
+    }
+    
+    @Transactional(readOnly = true)
+    public BookPage getBooksPage(long afterId, int limit) {
+        log.info("Fetching books after id {} (limit {})", afterId, limit);
+        int pageSize = resolvePageLimit(limit);
+        return toPage(bookRepository.findPageAfter(afterId, PageRequest.of(0, pageSize + 1)), pageSize);
     }
     
+    @Transactional(readOnly = true)
+    public BookPage getAvailableBooksPage(long afterId, int limit) {
+        log.info("Fetching available books after id {} (limit {})", afterId, limit);
+        int pageSize = resolvePageLimit(limit);
+        return toPage(bookRepository.findAvailablePageAfter(afterId, PageRequest.of(0, pageSize + 1)), pageSize);
+    }
+    
+    @Transactional(readOnly = true)
+    public BookPage getBooksByCategoryPage(String category, long afterId, int limit) {
+        log.info("Fetching books in category {} after id {} (limit {})", category, afterId, limit);
+        int pageSize = resolvePageLimit(limit);
+        return toPage(bookRepository.findCategoryPageAfter(category, afterId, PageRequest.of(0, pageSize + 1)),
+                pageSize);
+    }
+    
+    @Transactional(readOnly = true)
+    public void streamAllBooks(Consumer<BookDTO> consumer) {
+        log.info("Streaming all books");
+        bookStreamingRepository.streamAll(consumer);
+    }
+    
+    @Transactional(readOnly = true)
+    public void streamAvailableBooks(Consumer<BookDTO> consumer) {
+        log.info("Streaming available books");
+        bookStreamingRepository.streamAvailable(consumer);
+    }
+    
+    @Transactional(readOnly = true)
+    public void streamBooksByCategory(String category, Consumer<BookDTO> consumer) {
+        log.info("Streaming books in category: {}", category);
+        bookStreamingRepository.streamByCategory(category, consumer);
+    }
+    
+    // preferredBranch may be null; with branch inventory the copies come from another branch when it has none
     @Transactional
-    public boolean reserveBook(String isbn, int copiesNeeded) {
-        log.info("Attempting to reserve {} copies of book: {}", copiesNeeded, isbn);
+    public ReservationResult reserveBook(String isbn, int copiesNeeded, String preferredBranch) {
+        log.info("Attempting to reserve {} copies of book: {} (preferred branch: {})", copiesNeeded, isbn,
+                preferredBranch);
         
-        Book book = bookRepository.findByIsbn(isbn)
-                .orElseThrow(() -> new IllegalArgumentException("Book not found: " + isbn));
+        ReservationResult result = inventoryStore.tryReserve(isbn, copiesNeeded, preferredBranch)
+                .orElse(null);
         
-        if (book.getAvailableCopies() < copiesNeeded) {
+        if (result == null) {
+            ReservationResult rejected = inventoryStore.findReservable(isbn)
+                    .orElseThrow(() -> new IllegalArgumentException("Book not found: " + isbn));
             log.warn("Insufficient copies available. Requested: {}, Available: {}", 
-                    copiesNeeded, book.getAvailableCopies());
-            return false;
+                    copiesNeeded, rejected.getAvailableCopies());
+            return rejected;
         }
         
-        book.setAvailableCopies(book.getAvailableCopies() - copiesNeeded);
+        publishChange(isbn, result);
+        log.info("Successfully reserved {} copies of book: {}", copiesNeeded, isbn);
+        return result;
+    }
+    
+    @Transactional
+    public ReservationResult releaseBook(String isbn, int copiesReturned) {
+        return releaseBook(isbn, copiesReturned, null);
+    }
+    
+    // branch may be null; with branch inventory the copies go back to it when it has room for them
+    @Transactional
+    public ReservationResult releaseBook(String isbn, int copiesReturned, String branch) {
+        log.info("Releasing {} copies of book: {} (branch: {})", copiesReturned, isbn, branch);
+        
+        ReservationResult result = inventoryStore.tryRelease(isbn, copiesReturned, branch)
+                .orElse(null);
         
-        if (book.getAvailableCopies() == 0) {
-            book.setStatus(Book.BookStatus.BORROWED);
+        if (result == null) {
+            ReservationResult rejected = inventoryStore.findSnapshot(isbn)
+                    .orElseThrow(() -> new IllegalArgumentException("Book not found: " + isbn));
+            log.warn("Release would exceed total copies. Returned: {}, Available: {}", 
+                    copiesReturned, rejected.getAvailableCopies());
+            return rejected;
         }
         
-        bookRepository.save(book);
-        log.info("Successfully reserved {} copies of book: {}", copiesNeeded, isbn);
+        publishChange(isbn, result);
+        log.info("Successfully released {} copies of book: {}", copiesReturned, isbn);
+        return result;
+    }
+    
+    @Transactional
+    public boolean updateBookStatus(String isbn, Book.BookStatus status) {
+        log.info("Updating status of book {} to {}", isbn, status);
+        
+        ReservationResult result = inventoryStore.updateStatus(isbn, status.name()).orElse(null);
+        if (result == null) {
+            return false;
+        }
         
+        publishChange(isbn, result);
         return true;
     }
     
+    // Empty unless branch inventory is enabled
+    public List<BranchAvailability> getBranchAvailability(String isbn) {
+        if (inventoryStore.isBranchAware() && !bookRepository.existsByIsbn(isbn)) {
+            throw new IllegalArgumentException("Book not found: " + isbn);
+        }
+        return inventoryStore.findBranches(isbn);
+    }
+    
+    public Optional<BookAvailabilityCache.Availability> checkAvailability(String isbn) {
+        return availabilityCache.get(isbn, key -> inventoryStore.findSnapshot(key)
+                .map(snapshot -> toAvailability(key, snapshot))
+                .orElse(null));
+    }
+    
+    public Map<String, BookAvailabilityCache.Availability> checkAvailability(Collection<String> isbns) {
+        return availabilityCache.getAll(isbns, missing -> inventoryStore.findSnapshots(missing)
+                .entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> toAvailability(entry.getKey(), entry.getValue()))));
+    }
+    
     @Transactional
-    public boolean releaseBook(String isbn, int copiesReturned) {
-        log.info("Releasing {} copies of book: {}", copiesReturned, isbn);
+    public BatchReservationResult reserveBooks(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        log.info("Attempting batch reservation of {} books (all-or-nothing: {})", copiesByIsbn.size(), allOrNothing);
+        Map<String, ReservationResult> applied = inventoryStore.tryReserveAll(copiesByIsbn, allOrNothing);
+        return completeBatch(copiesByIsbn, applied, allOrNothing, 1);
+    }
+    
+    @Transactional
+    public BatchReservationResult releaseBooks(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        log.info("Attempting batch release of {} books (all-or-nothing: {})", copiesByIsbn.size(), allOrNothing);
+        Map<String, ReservationResult> applied = inventoryStore.tryReleaseAll(copiesByIsbn, allOrNothing);
+        return completeBatch(copiesByIsbn, applied, allOrNothing, -1);
+    }
+    
+    // copiesSign is +1 when the batch removed copies and -1 when it returned them
+    private BatchReservationResult completeBatch(Map<String, Integer> requested,
+                                                 Map<String, ReservationResult> applied,
+                                                 boolean allOrNothing,
+                                                 int copiesSign) {
+        List<String> rejectedIsbns = requested.keySet()
+                .stream()
+                .filter(isbn -> !applied.containsKey(isbn))
+                .collect(Collectors.toList());
+        // A rejected reservation reports the copies it could have taken, a rejected return the counters as they are
+        Map<String, ReservationResult> rejected = rejectedIsbns.isEmpty()
+                ? Map.of()
+                : copiesSign > 0
+                ? inventoryStore.findReservable(rejectedIsbns)
+                : inventoryStore.findSnapshots(rejectedIsbns);
         
-        Book book = bookRepository.findByIsbn(isbn)
-                .orElseThrow(() -> new IllegalArgumentException("Book not found: " + isbn));
+        boolean rolledBack = allOrNothing && !rejectedIsbns.isEmpty();
+        if (rolledBack) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
         
-        book.setAvailableCopies(book.getAvailableCopies() + copiesReturned);
+        Map<String, ReservationResult> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : requested.entrySet()) {
+            String isbn = entry.getKey();
+            ReservationResult result = applied.get(isbn);
+            if (result == null) {
+                results.put(isbn, rejected.get(isbn));
+            } else if (rolledBack) {
+                // Report the counters as they were before the rolled-back statement
+                results.put(isbn, ReservationResult.rejected(result.getBookId(),
+                        result.getAvailableCopies() + copiesSign * entry.getValue(),
+                        null,
+                        result.getInventoryVersion() - 1));
+            } else {
+                publishChange(isbn, result);
+                results.put(isbn, result);
+            }
+        }
         
-        if (book.getAvailableCopies() > 0 && book.getStatus() == Book.BookStatus.BORROWED) {
-            book.setStatus(Book.BookStatus.AVAILABLE);
+        int appliedCount = rolledBack ? 0 : applied.size();
+        String message;
+        if (rolledBack) {
+            message = "Batch rolled back - " + rejectedIsbns.size() + " of " + requested.size() + " items could not be applied";
+        } else {
+            message = appliedCount + " of " + requested.size() + " items applied";
         }
+        log.info("Batch completed: {}", message);
         
-        bookRepository.save(book);
-        log.info("Successfully released {} copies of book: {}", copiesReturned, isbn);
+        return new BatchReservationResult(appliedCount == requested.size(), message, results);
+    }
+    
+    // One extra row is fetched to learn whether another page follows
+    private BookPage toPage(List<BookDTO> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<BookDTO> items = hasMore ? rows.subList(0, pageSize) : rows;
+        Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new BookPage(items, nextCursor, pageSize);
+    }
+    
+    private int resolvePageLimit(int limit) {
+        if (limit <= 0) {
+            return defaultPageLimit;
+        }
+        return Math.min(limit, maxPageLimit);
+    }
+    
+    private List<BookDTO> searchIndexed(String query, Set<BookSearchIndex.Field> fields, Integer limit) {
+        List<Long> rankedIds = bookSearchIndex.search(query, fields, resolveSearchLimit(limit));
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
         
-        return true;
+        Map<Long, BookDTO> booksById = bookRepository.findDtosByIdIn(rankedIds)
+                .stream()
+                .collect(Collectors.toMap(BookDTO::getId, Function.identity()));
+        
+        return rankedIds.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
+    private int resolveSearchLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultSearchLimit;
+        }
+        return Math.min(limit, maxSearchLimit);
+    }
+    
+    // For counter changes made outside this service, such as by holds
+    void publishInventoryChange(String isbn, ReservationResult result) {
+        publishChange(isbn, result);
+    }
+    
+    // A branch change reports its own branch together with the other branches as last committed. Concurrent
+    // changes to other branches make that a state that never exists, under a version a real state will have too,
+    // so with branch inventory the totals are read again once the change has committed and those are published.
+    // Events published from afterCommit still reach the transactional listeners, on completion.
+    private void publishChange(String isbn, ReservationResult result) {
+        if (!inventoryStore.isBranchAware()) {
+            publishAvailability(toAvailability(isbn, result));
+            return;
+        }
+        Runnable publishCommitted = () -> inventoryStore.findSnapshot(isbn).ifPresent(snapshot -> {
+            BookAvailabilityCache.Availability availability = toAvailability(isbn, snapshot);
+            availabilityCache.update(availability);
+            eventPublisher.publishEvent(new BookAvailabilityChangedEvent(availability));
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishCommitted.run();
+                }
+            });
+        } else {
+            publishCommitted.run();
+        }
+    }
+    
+    // The cache only takes the change once it is committed, so a rolled-back reservation is never served from
+    // it; watchers are notified through the event, whose listeners wait for the commit themselves
+    private void publishAvailability(BookAvailabilityCache.Availability availability) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    availabilityCache.update(availability);
+                }
+            });
+        } else {
+            availabilityCache.update(availability);
+        }
+        eventPublisher.publishEvent(new BookAvailabilityChangedEvent(availability));
+    }
+    
+    private BookAvailabilityCache.Availability toAvailability(Book book) {
+        return new BookAvailabilityCache.Availability(book.getIsbn(), book.getId(), book.getAvailableCopies(),
+                book.getStatus().name(), book.getInventoryVersion());
+    }
+    
+    private BookAvailabilityCache.Availability toAvailability(String isbn, ReservationResult result) {
+        return new BookAvailabilityCache.Availability(isbn, result.getBookId(), result.getAvailableCopies(),
+                result.getStatus(), result.getInventoryVersion());
     }
 }
-
@@ -0,0 +1,77 @@
+package libsys.comp41720.bookservice;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+// Inventory tables as Hibernate creates them from the entities, for tests that run the repositories' SQL against
+// a PostgreSQL container
+public final class PostgresFixture {
+
+    public static final String IMAGE = "postgres:16-alpine";
+
+    private static final String CREATE_BOOKS_SQL = """
+            CREATE TABLE IF NOT EXISTS books (
+                id BIGSERIAL PRIMARY KEY,
+                isbn VARCHAR(255) NOT NULL UNIQUE,
+                title VARCHAR(255) NOT NULL,
+                author VARCHAR(255) NOT NULL,
+                publisher VARCHAR(255) NOT NULL,
+                publication_year INTEGER,
+                category VARCHAR(255) NOT NULL,
+                total_copies INTEGER NOT NULL,
+                available_copies INTEGER NOT NULL,
+                status VARCHAR(255) NOT NULL,
+                inventory_version BIGINT NOT NULL DEFAULT 0,
+                created_at TIMESTAMP NOT NULL,
+                updated_at TIMESTAMP
+            )
+            """;
+
+    private static final String CREATE_BRANCH_INVENTORY_SQL = """
+            CREATE TABLE IF NOT EXISTS book_branch_inventory (
+                id BIGSERIAL PRIMARY KEY,
+                book_id BIGINT NOT NULL,
+                isbn VARCHAR(255) NOT NULL,
+                branch VARCHAR(255) NOT NULL,
+                total_copies INTEGER NOT NULL,
+                available_copies INTEGER NOT NULL,
+                version BIGINT NOT NULL,
+                updated_at TIMESTAMP,
+                CONSTRAINT uk_book_branch_inventory_isbn_branch UNIQUE (isbn, branch)
+            )
+            """;
+
+    private static final String INSERT_BOOK_SQL = """
+            INSERT INTO books (isbn, title, author, publisher, publication_year, category, total_copies,
+                               available_copies, status, inventory_version, created_at, updated_at)
+            VALUES (?, 'Concurrent Systems ' || ?, 'Leslie Lamport', 'Test Press', 1978, 'Computer Science', ?, ?,
+                    'AVAILABLE', 0, LOCALTIMESTAMP, LOCALTIMESTAMP)
+            """;
+
+    private PostgresFixture() {
+    }
+
+    public static HikariDataSource dataSource(PostgreSQLContainer<?> postgres, int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl());
+        config.setUsername(postgres.getUsername());
+        config.setPassword(postgres.getPassword());
+        config.setMaximumPoolSize(poolSize);
+        return new HikariDataSource(config);
+    }
+
+    public static void createSchema(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute(CREATE_BOOKS_SQL);
+        jdbcTemplate.execute(CREATE_BRANCH_INVENTORY_SQL);
+    }
+
+    public static void clear(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("TRUNCATE books, book_branch_inventory RESTART IDENTITY");
+    }
+
+    public static void insertBook(JdbcTemplate jdbcTemplate, String isbn, int copies) {
+        jdbcTemplate.update(INSERT_BOOK_SQL, isbn, isbn, copies, copies);
+    }
+}
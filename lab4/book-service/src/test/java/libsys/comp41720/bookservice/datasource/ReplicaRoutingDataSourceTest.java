@@ -0,0 +1,171 @@
+package libsys.comp41720.bookservice.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.controller.BookRestController;
+import libsys.comp41720.bookservice.dto.BookDTO;
+import libsys.comp41720.bookservice.service.BookHoldService;
+import libsys.comp41720.bookservice.service.BookImportService;
+import libsys.comp41720.bookservice.service.BookManagementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Routing between a primary and one replica, both stood in for by pools whose connections answer the lag probe
+// with a chosen value (null being a standby whose WAL receiver has stopped)
+class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final HikariDataSource primary = pool("primary", primaryConnection);
+    private ReplicaRoutingDataSource router;
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        if (router != null) {
+            router.close();
+        }
+    }
+
+    @Test
+    void readOnlyTransactionsGoToAReplicaWithinTheLagLimit() throws SQLException {
+        Connection replicaConnection = probedConnection(1.0);
+        router = router(pool("replica", replicaConnection));
+
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(router.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void replicaTooFarBehindIsSkipped() throws SQLException {
+        router = router(pool("replica", probedConnection(30.0)));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void replicaWithoutWalReceiverIsNotUsed() throws SQLException {
+        router = router(pool("replica", probedConnection(null)));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+    }
+
+    // After one failed connection the replica stays out until a probe succeeds again
+    @Test
+    void failedReplicaConnectionFailsOverToThePrimary() throws SQLException {
+        Connection replicaConnection = probedConnection(0.0);
+        HikariDataSource replica = pool("replica", replicaConnection);
+        router = router(replica);
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void freshReadsStayOnThePrimary() throws SQLException {
+        Connection replicaConnection = probedConnection(0.0);
+        router = router(pool("replica", replicaConnection));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(ReadConsistency.fresh(this::connect)).isSameAs(primaryConnection);
+        assertThat(router.getConnection()).isSameAs(replicaConnection);
+    }
+
+    // Catalog lists are tagged from the rows read, so they are served by the replica and revalidate against it
+    @Test
+    void catalogReadsGoToTheReplicaAndAreTaggedByTheirRows() throws SQLException {
+        Connection replicaConnection = probedConnection(0.0);
+        router = router(pool("replica", replicaConnection));
+        BookManagementService bookManagementService = mock(BookManagementService.class);
+        AtomicReference<Connection> used = new AtomicReference<>();
+        BookDTO book = new BookDTO(1L, "978-0-000001", "Title", "Author", "Publisher", 2020, "Fiction", 2, 2,
+                "AVAILABLE", null, null);
+        when(bookManagementService.getAllBooks()).thenAnswer(invocation -> {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            used.set(connect());
+            return List.of(book);
+        });
+        BookRestController controller = new BookRestController(bookManagementService, mock(BookImportService.class),
+                mock(BookHoldService.class), new CatalogVersion(), new ObjectMapper());
+        ReflectionTestUtils.setField(controller, "listCacheControl", "no-cache");
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertThat(controller.getAllBooks(new ServletWebRequest(new MockHttpServletRequest("GET", "/api/books"),
+                first))).isNotNull();
+        assertThat(used.get()).isSameAs(replicaConnection);
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).startsWith("W/");
+
+        MockHttpServletRequest revalidation = new MockHttpServletRequest("GET", "/api/books");
+        revalidation.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        assertThat(controller.getAllBooks(new ServletWebRequest(revalidation, new MockHttpServletResponse())))
+                .isNull();
+
+        book.setAvailableCopies(1);
+        MockHttpServletRequest afterChange = new MockHttpServletRequest("GET", "/api/books");
+        afterChange.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        assertThat(controller.getAllBooks(new ServletWebRequest(afterChange, new MockHttpServletResponse())))
+                .isNotNull();
+    }
+
+    private ReplicaRoutingDataSource router(HikariDataSource replica) {
+        return new ReplicaRoutingDataSource(primary, List.of(replica), Duration.ofSeconds(5), Duration.ZERO,
+                Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    private Connection connect() {
+        try {
+            return router.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HikariDataSource pool(String name, Connection connection) {
+        HikariDataSource pool = mock(HikariDataSource.class);
+        when(pool.getPoolName()).thenReturn(name);
+        try {
+            when(pool.getConnection()).thenReturn(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return pool;
+    }
+
+    private static Connection probedConnection(Double lagSeconds) throws SQLException {
+        ResultSet lag = mock(ResultSet.class);
+        when(lag.next()).thenReturn(true);
+        when(lag.getDouble(1)).thenReturn(lagSeconds == null ? 0 : lagSeconds);
+        when(lag.wasNull()).thenReturn(lagSeconds == null);
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(anyString())).thenReturn(lag);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        return connection;
+    }
+}
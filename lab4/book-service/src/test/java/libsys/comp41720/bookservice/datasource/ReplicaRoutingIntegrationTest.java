@@ -0,0 +1,204 @@
+package libsys.comp41720.bookservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.bookservice.PostgresFixture;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Routing against a real primary and a streaming replica cloned from it, wired as ReadReplicaDataSourceConfig
+// wires them. Whether a transaction ran on the replica is asked of the server it ran on (pg_is_in_recovery).
+// The replica is paused and then stopped by the last tests, so they run in order.
+@Testcontainers(disabledWithoutDocker = true)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReplicaRoutingIntegrationTest {
+
+    private static final String ISBN = "978-0-000001";
+    private static final Duration MAX_LAG = Duration.ofSeconds(1);
+    private static final Duration AWAIT = Duration.ofSeconds(30);
+
+    // Runs on the primary's first start; the entrypoint's own rule only admits ordinary connections
+    private static final String ALLOW_REPLICATION = """
+            #!/bin/sh
+            set -e
+            psql -v ON_ERROR_STOP=1 --username "$POSTGRES_USER" --dbname "$POSTGRES_DB" \\
+                -c "CREATE ROLE replicator WITH REPLICATION LOGIN PASSWORD 'replicator'"
+            echo "host replication replicator all scram-sha-256" >> "$PGDATA/pg_hba.conf"
+            """;
+
+    // The base backup brings the primary's settings and users along, and -R makes the copy start as its standby
+    private static final String FOLLOW_PRIMARY = """
+            until pg_basebackup -h primary -U replicator -D /var/lib/postgresql/data/replica -R -X stream; do
+                rm -rf /var/lib/postgresql/data/replica
+                sleep 1
+            done
+            exec postgres -D /var/lib/postgresql/data/replica
+            """;
+
+    private static final Network NETWORK = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>(PostgresFixture.IMAGE)
+            .withNetwork(NETWORK)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(Transferable.of(ALLOW_REPLICATION, 0755),
+                    "/docker-entrypoint-initdb.d/allow-replication.sh");
+
+    @Container
+    private static final GenericContainer<?> REPLICA = new GenericContainer<>(PostgresFixture.IMAGE)
+            .withNetwork(NETWORK)
+            .dependsOn(PRIMARY)
+            .withEnv("PGPASSWORD", "replicator")
+            .withExposedPorts(5432)
+            .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres").withEntrypoint("sh", "-c", FOLLOW_PRIMARY))
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*\\n", 1));
+
+    private static HikariDataSource primaryPool;
+    private static HikariDataSource replicaPool;
+    private static ReplicaRoutingDataSource router;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate readWrite;
+    private static TransactionTemplate readOnly;
+
+    @BeforeAll
+    static void connect() {
+        primaryPool = PostgresFixture.dataSource(PRIMARY, 4);
+        replicaPool = new HikariDataSource();
+        replicaPool.setPoolName("book-replica-1");
+        replicaPool.setJdbcUrl("jdbc:postgresql://" + REPLICA.getHost() + ":" + REPLICA.getMappedPort(5432) + "/"
+                + PRIMARY.getDatabaseName());
+        replicaPool.setUsername(PRIMARY.getUsername());
+        replicaPool.setPassword(PRIMARY.getPassword());
+        replicaPool.setMaximumPoolSize(4);
+        replicaPool.setConnectionTimeout(1000);
+        replicaPool.setReadOnly(true);
+        replicaPool.setInitializationFailTimeout(-1);
+
+        router = new ReplicaRoutingDataSource(primaryPool, List.of(replicaPool), MAX_LAG, Duration.ZERO,
+                Duration.ofMillis(200), new SimpleMeterRegistry());
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(router);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        PostgresFixture.createSchema(new JdbcTemplate(primaryPool));
+        await("the replica is routed to", () -> ranOnReplica(readOnly));
+    }
+
+    @AfterAll
+    static void disconnect() {
+        router.close();
+        primaryPool.close();
+    }
+
+    @Test
+    @Order(1)
+    void readOnlyTransactionsGoToTheReplicaAndEverythingElseToThePrimary() {
+        assertThat(ranOnReplica(readOnly)).isTrue();
+        assertThat(ranOnReplica(readWrite)).isFalse();
+        assertThat(ReadConsistency.fresh(() -> ranOnReplica(readOnly))).isFalse();
+        assertThat(ranOnReplica(readOnly)).isTrue();
+    }
+
+    @Test
+    @Order(2)
+    void writesGoToThePrimaryAndReachTheReplicaReads() {
+        readWrite.executeWithoutResult(status -> PostgresFixture.insertBook(jdbcTemplate, ISBN, 2));
+
+        assertThat(ReadConsistency.fresh(() -> copiesOnRecord(readOnly))).isEqualTo(1);
+        await("the replica serves the new book", () -> copiesOnRecord(readOnly) == 1);
+    }
+
+    // With replay paused the replica receives the write but does not apply it, and its lag grows with the clock
+    @Test
+    @Order(3)
+    void readsMoveToThePrimaryWhileTheReplicaLagsAndBackOnceItCatchesUp() {
+        JdbcTemplate replica = new JdbcTemplate(replicaPool);
+        replica.execute("SELECT pg_wal_replay_pause()");
+        try {
+            readWrite.executeWithoutResult(status -> jdbcTemplate.update(
+                    "UPDATE books SET available_copies = 1 WHERE isbn = ?", ISBN));
+
+            await("reads leave the lagging replica", () -> !ranOnReplica(readOnly));
+            assertThat(availableCopies(readOnly)).isEqualTo(1);
+        } finally {
+            replica.execute("SELECT pg_wal_replay_resume()");
+        }
+        await("reads return to the replica", () -> ranOnReplica(readOnly));
+        assertThat(availableCopies(readOnly)).isEqualTo(1);
+    }
+
+    @Test
+    @Order(4)
+    void readsFailOverToThePrimaryWhenTheReplicaStops() {
+        REPLICA.stop();
+
+        await("reads fail over to the primary", () -> !ranOnReplica(readOnly));
+        assertThat(availableCopies(readOnly)).isEqualTo(1);
+        assertThat(ranOnReplica(readOnly)).isFalse();
+    }
+
+    private static boolean ranOnReplica(TransactionTemplate transaction) {
+        return Boolean.TRUE.equals(transaction.execute(status ->
+                jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class)));
+    }
+
+    private static int copiesOnRecord(TransactionTemplate transaction) {
+        Integer count = transaction.execute(status ->
+                jdbcTemplate.queryForObject("SELECT count(*) FROM books WHERE isbn = ?", Integer.class, ISBN));
+        return count == null ? 0 : count;
+    }
+
+    private static int availableCopies(TransactionTemplate transaction) {
+        Integer available = transaction.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT available_copies FROM books WHERE isbn = ?", Integer.class, ISBN));
+        return available == null ? -1 : available;
+    }
+
+    // A read can fail while the router still takes a replica that just went away for healthy; that counts as not yet
+    private static void await(String description, BooleanSupplier condition) {
+        long deadline = System.nanoTime() + AWAIT.toNanos();
+        while (!holds(condition)) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting until " + description);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("Interrupted waiting until " + description, e);
+            }
+        }
+    }
+
+    private static boolean holds(BooleanSupplier condition) {
+        try {
+            return condition.getAsBoolean();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package libsys.comp41720.bookservice.inventory;
+
+import com.zaxxer.hikari.HikariDataSource;
+import libsys.comp41720.bookservice.PostgresFixture;
+import libsys.comp41720.bookservice.cache.BookEntityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.dto.BranchAvailability;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.repository.BranchInventoryRepository;
+import libsys.comp41720.bookservice.repository.BranchInventoryRepository.Pick;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// Branch inventory against a PostgreSQL container, with the book's five copies split three in EAST and two in MAIN
+@Testcontainers(disabledWithoutDocker = true)
+class BranchInventoryStoreTest {
+
+    private static final String ISBN = "978-0-000001";
+    private static final String BORROWED = "BORROWED";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(PostgresFixture.IMAGE);
+
+    private static HikariDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+    private static BranchInventoryRepository repository;
+    private static BranchInventoryStore store;
+
+    @BeforeAll
+    static void createSchema() {
+        dataSource = PostgresFixture.dataSource(POSTGRES, 4);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new BranchInventoryRepository(new NamedParameterJdbcTemplate(dataSource));
+        store = new BranchInventoryStore(repository, mock(CatalogVersion.class), mock(BookEntityCache.class), "MAIN",
+                Duration.ofMinutes(1));
+        PostgresFixture.createSchema(jdbcTemplate);
+    }
+
+    @AfterAll
+    static void closePool() throws InterruptedException {
+        store.shutdown();
+        dataSource.close();
+    }
+
+    @BeforeEach
+    void splitTheCopies() {
+        PostgresFixture.clear(jdbcTemplate);
+        PostgresFixture.insertBook(jdbcTemplate, ISBN, 5);
+        Map<String, Integer> split = new LinkedHashMap<>();
+        split.put("EAST", 3);
+        split.put("MAIN", 2);
+        store.registerBook(ISBN, split);
+    }
+
+    @Test
+    void reservationTakesFromAnotherBranchWhenThePreferredOneIsShort() {
+        ReservationResult result = store.tryReserve(ISBN, 3, "MAIN").orElseThrow();
+
+        assertThat(result.getBranch()).isEqualTo("EAST");
+        assertThat(result.getAvailableCopies()).isEqualTo(2);
+        assertThat(availableIn("EAST")).isZero();
+        assertThat(availableIn("MAIN")).isEqualTo(2);
+    }
+
+    @Test
+    void requestNoSingleBranchCanFillIsRejectedAndReportsTheLargestBranch() {
+        assertThat(store.tryReserve(ISBN, 4, null)).isEmpty();
+        assertThat(store.tryHold(ISBN, 4, "EAST")).isEmpty();
+
+        assertThat(store.findSnapshot(ISBN).orElseThrow().getAvailableCopies()).isEqualTo(5);
+        assertThat(store.findReservable(ISBN).orElseThrow().getAvailableCopies()).isEqualTo(3);
+        assertThat(availableIn("EAST")).isEqualTo(3);
+        assertThat(availableIn("MAIN")).isEqualTo(2);
+    }
+
+    @Test
+    void releasedCopiesGoBackToTheBranchTheyCameFrom() {
+        ReservationResult held = store.tryHold(ISBN, 2, "MAIN").orElseThrow();
+        store.tryReserve(ISBN, 1, "EAST").orElseThrow();
+
+        ReservationResult released = store.tryRelease(ISBN, 2, held.getBranch()).orElseThrow();
+
+        assertThat(released.getBranch()).isEqualTo("MAIN");
+        assertThat(released.getAvailableCopies()).isEqualTo(4);
+        assertThat(availableIn("MAIN")).isEqualTo(2);
+        assertThat(availableIn("EAST")).isEqualTo(2);
+    }
+
+    // With MAIN out of copies, a reservation from any branch can only wait for the transaction emptying EAST. That
+    // one also returns a copy to MAIN, which the reservation must take once it finds EAST no longer qualifies.
+    @Test
+    void anyBranchIsTriedAgainWhenTheBranchItWaitedForRanOut() throws Exception {
+        store.tryReserve(ISBN, 2, "MAIN").orElseThrow();
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        CountDownLatch emptied = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<ReservationResult>> emptying = executor.submit(() -> transaction.execute(status -> {
+                Optional<ReservationResult> taken = repository.take(ISBN, 3, "EAST", Pick.PREFERRED, BORROWED);
+                repository.give(ISBN, 1, "MAIN", Pick.PREFERRED).orElseThrow();
+                emptied.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return taken;
+            }));
+            assertThat(emptied.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Future<Optional<ReservationResult>> waiting =
+                    executor.submit(() -> repository.take(ISBN, 1, null, Pick.ANY, BORROWED));
+            awaitLockWaiter();
+            commit.countDown();
+
+            assertThat(emptying.get(10, TimeUnit.SECONDS)).isPresent();
+            ReservationResult result = waiting.get(10, TimeUnit.SECONDS).orElseThrow();
+            assertThat(result.getBranch()).isEqualTo("MAIN");
+            assertThat(result.getAvailableCopies()).isZero();
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void anyBranchGivesUpOnceNoBranchQualifies() {
+        store.tryReserve(ISBN, 3, "EAST").orElseThrow();
+        store.tryReserve(ISBN, 2, "MAIN").orElseThrow();
+
+        assertThat(repository.take(ISBN, 1, null, Pick.ANY, BORROWED)).isEmpty();
+        assertThat(repository.give(ISBN, 4, null, Pick.ANY)).isEmpty();
+    }
+
+    private static int availableIn(String branch) {
+        return store.findBranches(ISBN).stream()
+                .filter(availability -> availability.getBranch().equals(branch))
+                .mapToInt(BranchAvailability::getAvailableCopies)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void awaitLockWaiter() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Integer waiting = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'", Integer.class);
+            if (waiting != null && waiting > 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("The reservation never waited for the locked branch");
+    }
+}
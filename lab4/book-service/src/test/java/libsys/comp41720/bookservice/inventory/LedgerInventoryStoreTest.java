@@ -0,0 +1,145 @@
+package libsys.comp41720.bookservice.inventory;
+
+import libsys.comp41720.bookservice.cache.BookEntityCache;
+import libsys.comp41720.bookservice.cache.CatalogVersion;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.repository.BookInventoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LedgerInventoryStoreTest {
+
+    private static final String ISBN = "978-0-000001";
+
+    @TempDir
+    Path journalDir;
+
+    private final BookInventoryRepository repository = mock(BookInventoryRepository.class);
+    private final List<LedgerInventoryStore> stores = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findInventoryStates(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> isbns = invocation.getArgument(0);
+            return isbns.contains(ISBN)
+                    ? Map.of(ISBN, new InventoryState(ISBN, 1L, 3, 3, "AVAILABLE", 0))
+                    : Map.of();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        for (LedgerInventoryStore store : stores) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void journaledChangesAreRecoveredAfterACrash() throws Exception {
+        LedgerInventoryStore crashed = startStore();
+        crashed.tryReserve(ISBN, 1);
+        crashed.tryReserve(ISBN, 1);
+        crashed.tryRelease(ISBN, 1);
+        // The write-behind never ran and shutdown is skipped, as if the process had been killed
+        verify(repository, never()).applyStates(anyCollection());
+        appendTornRecord();
+
+        startStore();
+
+        InventoryState recovered = recoveredStates().get(0);
+        assertThat(recovered.getAvailableCopies()).isEqualTo(2);
+        assertThat(recovered.getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void rolledBackReservationGivesItsCopiesBack() throws Exception {
+        LedgerInventoryStore store = startStore();
+        TransactionSynchronizationManager.initSynchronization();
+        ReservationResult taken = store.tryReserve(ISBN, 3).orElseThrow();
+        assertThat(taken.getStatus()).isEqualTo("BORROWED");
+
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        ReservationResult snapshot = store.findSnapshot(ISBN).orElseThrow();
+        assertThat(snapshot.getAvailableCopies()).isEqualTo(3);
+        assertThat(snapshot.getStatus()).isEqualTo("AVAILABLE");
+    }
+
+    @Test
+    void returnInsideATransactionWaitsForTheCommit() throws Exception {
+        LedgerInventoryStore store = startStore();
+        store.tryReserve(ISBN, 2);
+
+        TransactionSynchronizationManager.initSynchronization();
+        ReservationResult returned = store.tryRelease(ISBN, 2).orElseThrow();
+        assertThat(returned.getAvailableCopies()).isEqualTo(3);
+        assertThat(store.findSnapshot(ISBN).orElseThrow().getAvailableCopies()).isEqualTo(1);
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertThat(store.findSnapshot(ISBN).orElseThrow().getAvailableCopies()).isEqualTo(3);
+    }
+
+    @Test
+    void rolledBackReturnNeverReachesTheShelf() throws Exception {
+        LedgerInventoryStore store = startStore();
+        store.tryReserve(ISBN, 2);
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.tryRelease(ISBN, 2);
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(store.findSnapshot(ISBN).orElseThrow().getAvailableCopies()).isEqualTo(1);
+    }
+
+    private LedgerInventoryStore startStore() throws IOException {
+        LedgerInventoryStore store = new LedgerInventoryStore(repository, new CatalogVersion(),
+                mock(BookEntityCache.class), 4, journalDir, true, Duration.ofHours(1));
+        store.start();
+        stores.add(store);
+        return store;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InventoryState> recoveredStates() {
+        ArgumentCaptor<Collection<InventoryState>> states = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).applyStates(states.capture());
+        return new ArrayList<>(states.getValue());
+    }
+
+    // A record cut off halfway through its write, as a crash during an append leaves it
+    private void appendTornRecord() throws IOException {
+        try (Stream<Path> segments = Files.list(journalDir)) {
+            Path last = segments.sorted().reduce((first, second) -> second).orElseThrow();
+            Files.write(last, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+    }
+}
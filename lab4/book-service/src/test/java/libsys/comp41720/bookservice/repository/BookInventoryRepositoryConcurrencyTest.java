@@ -0,0 +1,133 @@
+package libsys.comp41720.bookservice.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import libsys.comp41720.bookservice.PostgresFixture;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs more borrowers than there are copies against the guarded UPDATEs on a real PostgreSQL, checking that no copy
+// is ever handed out twice and that every copy is back on the shelf once the borrowers are done.
+// InventoryContentionBenchmark measures the same contention under load.
+@Testcontainers(disabledWithoutDocker = true)
+class BookInventoryRepositoryConcurrencyTest {
+
+    private static final String ISBN = "978-0-000001";
+    private static final int COPIES = 3;
+    private static final int BORROWERS = 12;
+    private static final int ROUNDS = 200;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(PostgresFixture.IMAGE);
+
+    private static HikariDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+    private static BookInventoryRepository repository;
+
+    @BeforeAll
+    static void createSchema() {
+        dataSource = PostgresFixture.dataSource(POSTGRES, BORROWERS + 1);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new BookInventoryRepository(new NamedParameterJdbcTemplate(dataSource));
+        PostgresFixture.createSchema(jdbcTemplate);
+        PostgresFixture.insertBook(jdbcTemplate, ISBN, COPIES);
+    }
+
+    @AfterAll
+    static void closePool() {
+        dataSource.close();
+    }
+
+    @Test
+    void moreBorrowersThanCopiesNeverOversellAndEveryCopyComesBack() throws Exception {
+        // A copy counts as held from the moment its reserve returned until just before its release starts, so the
+        // count never exceeds the copies truly out even while one is passing from one borrower to the next
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger mostHeld = new AtomicInteger();
+        AtomicInteger leastAvailable = new AtomicInteger(COPIES);
+        LongAdder taken = new LongAdder();
+        LongAdder turnedAway = new LongAdder();
+        AtomicBoolean borrowing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(BORROWERS + 1);
+        try {
+            List<Future<?>> borrowers = new ArrayList<>();
+            for (int i = 0; i < BORROWERS; i++) {
+                borrowers.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        Optional<ReservationResult> reserved = repository.tryReserve(ISBN, 1);
+                        if (reserved.isEmpty()) {
+                            turnedAway.increment();
+                            continue;
+                        }
+                        taken.increment();
+                        leastAvailable.accumulateAndGet(reserved.get().getAvailableCopies(), Math::min);
+                        mostHeld.accumulateAndGet(held.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        held.decrementAndGet();
+
+                        Optional<ReservationResult> released = repository.tryRelease(ISBN, 1);
+                        assertThat(released).as("release of a copy this borrower holds").isPresent();
+                        assertThat(released.get().getAvailableCopies()).isBetween(1, COPIES);
+                    }
+                    return null;
+                }));
+            }
+
+            // Reads the committed counter in between the borrowers' updates
+            Future<?> observer = executor.submit(() -> {
+                start.await();
+                while (borrowing.get()) {
+                    Integer available = jdbcTemplate.queryForObject(
+                            "SELECT available_copies FROM books WHERE isbn = ?", Integer.class, ISBN);
+                    leastAvailable.accumulateAndGet(available, Math::min);
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> borrower : borrowers) {
+                borrower.get(2, TimeUnit.MINUTES);
+            }
+            borrowing.set(false);
+            observer.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(turnedAway.sum()).as("borrowers turned away; without contention the test proves nothing")
+                .isPositive();
+        assertThat(taken.sum()).isPositive();
+        assertThat(mostHeld.get()).as("copies held at once").isLessThanOrEqualTo(COPIES);
+        assertThat(leastAvailable.get()).as("fewest available copies seen").isNotNegative();
+
+        Map<String, Object> book = jdbcTemplate.queryForMap(
+                "SELECT total_copies, available_copies, status, inventory_version FROM books WHERE isbn = ?", ISBN);
+        assertThat(book.get("available_copies")).isEqualTo(book.get("total_copies"));
+        assertThat(book.get("status")).isEqualTo("AVAILABLE");
+        assertThat(((Number) book.get("inventory_version")).longValue()).isEqualTo(2 * taken.sum());
+    }
+}
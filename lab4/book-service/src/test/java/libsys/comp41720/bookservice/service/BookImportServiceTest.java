@@ -0,0 +1,64 @@
+package libsys.comp41720.bookservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import libsys.comp41720.bookservice.dto.BookCreationRequest;
+import libsys.comp41720.bookservice.dto.BookImportReport;
+import libsys.comp41720.bookservice.repository.BookImportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookImportServiceTest {
+
+    private final BookImportRepository bookImportRepository = mock(BookImportRepository.class);
+    private BookImportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BookImportService(bookImportRepository, mock(BookManagementService.class),
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "maxReportedErrors", 100);
+        when(bookImportRepository.insertIgnoringExisting(anyList())).thenAnswer(invocation -> {
+            List<BookCreationRequest> books = invocation.getArgument(0);
+            Map<String, Long> ids = new HashMap<>();
+            books.forEach(book -> ids.put(book.getIsbn(), (long) ids.size() + 1));
+            return ids;
+        });
+    }
+
+    @Test
+    void csvErrorsReportTheLineTheRecordStartsOn() throws Exception {
+        String csv = """
+                isbn,title,author,publisher,publicationYear,category,totalCopies
+                978-1,"Two
+                line
+                title",Ada Lovelace,Press,1999,Fiction,2
+                978-2,Plain,Alan Turing,Press,2001,Fiction,x
+                978-3,"Also ""quoted""
+                ",Grace Hopper,Press,2003,Fiction,0
+                """;
+
+        BookImportReport report = service.importBooks(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), BookImportService.Format.CSV);
+
+        assertThat(report.getTotalRows()).isEqualTo(3);
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors())
+                .extracting(BookImportReport.RowError::getRow, BookImportReport.RowError::getIsbn)
+                .containsExactly(tuple(5L, "978-2"), tuple(6L, "978-3"));
+    }
+}
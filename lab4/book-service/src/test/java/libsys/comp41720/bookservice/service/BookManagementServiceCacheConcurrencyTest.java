@@ -0,0 +1,197 @@
+package libsys.comp41720.bookservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.inventory.InventoryStore;
+import libsys.comp41720.bookservice.repository.BookRepository;
+import libsys.comp41720.bookservice.repository.BookStreamingRepository;
+import libsys.comp41720.bookservice.search.BookFacetCounters;
+import libsys.comp41720.bookservice.search.BookSearchIndex;
+import libsys.comp41720.bookservice.search.BookSuggestIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// Borrowers reserve and release while readers go through the availability cache, which is also dropped now and
+// then so reads load through it. Writers race between their counter update and the cache update, so the cache may
+// lag the store, but a reader must never be shown an older version than one already seen, and once the writers
+// stop the cache must hold what the store holds.
+class BookManagementServiceCacheConcurrencyTest {
+
+    private static final String ISBN = "978-0-000001";
+    private static final int COPIES = 3;
+    private static final int BORROWERS = 6;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 2_000;
+
+    private final CountingStore inventoryStore = new CountingStore();
+    private final BookAvailabilityCache availabilityCache =
+            new BookAvailabilityCache(1000, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    private final BookManagementService service = new BookManagementService(mock(BookRepository.class),
+            inventoryStore, availabilityCache, mock(BookSearchIndex.class), mock(BookSuggestIndex.class),
+            mock(BookFacetCounters.class), mock(BookStreamingRepository.class),
+            mock(ApplicationEventPublisher.class));
+
+    @Test
+    void readersNeverSeeTheVersionGoBackAndTheCacheSettlesOnTheStore() throws Exception {
+        AtomicLong newestSeen = new AtomicLong(-1);
+        AtomicBoolean borrowing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(BORROWERS + READERS + 1);
+        try {
+            List<Future<?>> borrowers = new ArrayList<>();
+            for (int i = 0; i < BORROWERS; i++) {
+                borrowers.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        if (service.reserveBook(ISBN, 1, null).isSuccess()) {
+                            assertThat(service.releaseBook(ISBN, 1).isSuccess()).isTrue();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<?>> others = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                others.add(executor.submit(() -> {
+                    start.await();
+                    while (borrowing.get()) {
+                        // Whatever any reader saw before this read started is the floor for it
+                        long floor = newestSeen.get();
+                        BookAvailabilityCache.Availability availability =
+                                service.checkAvailability(ISBN).orElseThrow();
+                        assertThat(availability.getVersion()).as("version read after %d was seen", floor)
+                                .isGreaterThanOrEqualTo(floor);
+                        assertThat(availability.getAvailableCopies()).isBetween(0, COPIES);
+                        newestSeen.accumulateAndGet(availability.getVersion(), Math::max);
+                    }
+                    return null;
+                }));
+            }
+            others.add(executor.submit(() -> {
+                start.await();
+                while (borrowing.get()) {
+                    availabilityCache.invalidate(ISBN);
+                    Thread.sleep(1);
+                }
+                return null;
+            }));
+
+            start.countDown();
+            try {
+                for (Future<?> borrower : borrowers) {
+                    borrower.get(1, TimeUnit.MINUTES);
+                }
+            } finally {
+                borrowing.set(false);
+            }
+            for (Future<?> other : others) {
+                other.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ReservationResult stored = inventoryStore.findSnapshot(ISBN).orElseThrow();
+        BookAvailabilityCache.Availability cached = service.checkAvailability(ISBN).orElseThrow();
+        assertThat(stored.getAvailableCopies()).isEqualTo(COPIES);
+        assertThat(stored.getInventoryVersion()).as("the borrowers never got a copy").isPositive();
+        assertThat(cached.getVersion()).isEqualTo(stored.getInventoryVersion());
+        assertThat(cached.getAvailableCopies()).isEqualTo(stored.getAvailableCopies());
+        assertThat(cached.getStatus()).isEqualTo(stored.getStatus());
+        assertThat(newestSeen.get()).isLessThanOrEqualTo(stored.getInventoryVersion());
+    }
+
+    // One book's counters behind a lock, as the guarded UPDATEs keep them. Each change yields before returning
+    // so the writer that made it is often overtaken on its way to the cache.
+    private static final class CountingStore implements InventoryStore {
+
+        private int available = COPIES;
+        private String status = "AVAILABLE";
+        private long version;
+
+        @Override
+        public Optional<ReservationResult> tryReserve(String isbn, int copies) {
+            Optional<ReservationResult> result;
+            synchronized (this) {
+                if (available < copies) {
+                    return Optional.empty();
+                }
+                available -= copies;
+                status = available == 0 ? "BORROWED" : status;
+                result = Optional.of(ReservationResult.applied(1L, available, status, ++version));
+            }
+            Thread.yield();
+            return result;
+        }
+
+        @Override
+        public Optional<ReservationResult> tryRelease(String isbn, int copies) {
+            Optional<ReservationResult> result;
+            synchronized (this) {
+                if (available + copies > COPIES) {
+                    return Optional.empty();
+                }
+                available += copies;
+                status = "AVAILABLE";
+                result = Optional.of(ReservationResult.applied(1L, available, status, ++version));
+            }
+            Thread.yield();
+            return result;
+        }
+
+        @Override
+        public synchronized Optional<ReservationResult> findSnapshot(String isbn) {
+            return Optional.of(ReservationResult.rejected(1L, available, status, version));
+        }
+
+        @Override
+        public Map<String, ReservationResult> findSnapshots(Collection<? extends String> isbns) {
+            return Map.of(ISBN, findSnapshot(ISBN).orElseThrow());
+        }
+
+        @Override
+        public Optional<ReservationResult> tryHold(String isbn, int copies) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<ReservationResult> confirmHeld(String isbn) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<ReservationResult> updateStatus(String isbn, String status) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, ReservationResult> tryReserveAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, ReservationResult> tryReleaseAll(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package libsys.comp41720.bookservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.bookservice.cache.BookAvailabilityCache;
+import libsys.comp41720.bookservice.dto.ReservationResult;
+import libsys.comp41720.bookservice.inventory.InventoryStore;
+import libsys.comp41720.bookservice.repository.BookRepository;
+import libsys.comp41720.bookservice.repository.BookStreamingRepository;
+import libsys.comp41720.bookservice.search.BookFacetCounters;
+import libsys.comp41720.bookservice.search.BookSearchIndex;
+import libsys.comp41720.bookservice.search.BookSuggestIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The availability cache must only ever hold committed counters
+class BookManagementServiceCacheTest {
+
+    private static final String ISBN = "978-0-000001";
+
+    private final InventoryStore inventoryStore = mock(InventoryStore.class);
+    private final BookAvailabilityCache availabilityCache =
+            new BookAvailabilityCache(1000, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    private BookManagementService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BookManagementService(mock(BookRepository.class), inventoryStore, availabilityCache,
+                mock(BookSearchIndex.class), mock(BookSuggestIndex.class), mock(BookFacetCounters.class),
+                mock(BookStreamingRepository.class), mock(ApplicationEventPublisher.class));
+        availabilityCache.update(new BookAvailabilityCache.Availability(ISBN, 1L, 3, "AVAILABLE", 5));
+        when(inventoryStore.tryReserve(ISBN, 1, null))
+                .thenReturn(Optional.of(ReservationResult.applied(1L, 2, "AVAILABLE", 6)));
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rolledBackReservationNeverReachesTheCache() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.reserveBook(ISBN, 1, null);
+        assertThat(cachedCopies()).isEqualTo(3);
+
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(cachedCopies()).isEqualTo(3);
+    }
+
+    @Test
+    void committedReservationUpdatesTheCacheAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.reserveBook(ISBN, 1, null);
+        assertThat(cachedCopies()).isEqualTo(3);
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertThat(cachedCopies()).isEqualTo(2);
+    }
+
+    @Test
+    void reservationWithoutTransactionUpdatesTheCacheStraightAway() {
+        service.reserveBook(ISBN, 1, null);
+        assertThat(cachedCopies()).isEqualTo(2);
+    }
+
+    private int cachedCopies() {
+        return availabilityCache.get(ISBN, key -> null).orElseThrow().getAvailableCopies();
+    }
+}
@@ -23,6 +23,10 @@ public class KafkaProducerConfig {
     @Value("${spring.kafka.properties.schema.registry.url:http://localhost:8081}")
     private String schemaRegistryUrl;
     
+    // The outbox relay sends in batches; a short linger lets each batch go out in a few requests
+    @Value("${spring.kafka.producer.properties.linger.ms:5}")
+    private int lingerMs;
+    
     @Bean
     public ProducerFactory<String, BorrowEvent> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
@@ -33,6 +37,7 @@ public class KafkaProducerConfig {
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
     
@@ -0,0 +1,18 @@
+package libsys.comp41720.borrowservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+// Multi-document transactions need a replica set; a standalone mongod rejects them, so they are opt-in
+@Configuration
+@ConditionalOnProperty(name = "borrow.mongo.transactions.enabled", havingValue = "true")
+public class MongoTransactionConfig {
+    
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory mongoDatabaseFactory) {
+        return new MongoTransactionManager(mongoDatabaseFactory);
+    }
+}
@@ -28,5 +28,8 @@ public class BorrowRequest {
     private String bookTitle;
     
     private Integer borrowDays;
+    
+    // Branch to borrow from; book-service falls back to another branch when it has no copies
+    private String preferredBranch;
 }
 
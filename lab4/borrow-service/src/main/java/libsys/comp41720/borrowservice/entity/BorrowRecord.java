@@ -4,12 +4,22 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+// One index per query shape in BorrowRecordRepository: member lookups share the member/status/book prefix,
+// status and overdue lookups the status/due-date one. BorrowRecordQueryPlanTest checks the plans on every
+// build, BorrowQueryBenchmark at full scale.
 @Document(collection = "borrow_records")
+@CompoundIndexes({
+        @CompoundIndex(name = "member_status_book", def = "{'memberId': 1, 'status': 1, 'bookIsbn': 1}"),
+        @CompoundIndex(name = "status_due_date", def = "{'status': 1, 'dueDate': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,6 +32,7 @@ public class BorrowRecord {
     private String memberName;
     private String memberEmail;
     
+    @Indexed(name = "book_isbn")
     private String bookIsbn;
     private String bookTitle;
     
@@ -44,9 +55,10 @@ public class BorrowRecord {
         LOST
     }
     
+    // Also true for an ACTIVE borrow the overdue scanner has not reached yet
     public boolean isOverdue() {
-        return status == BorrowStatus.ACTIVE && 
-               LocalDate.now().isAfter(dueDate);
+        return status == BorrowStatus.OVERDUE || 
+               (status == BorrowStatus.ACTIVE && LocalDate.now().isAfter(dueDate));
     }
 }
 
@@ -0,0 +1,57 @@
+package libsys.comp41720.borrowservice.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// A borrow event waiting to be relayed to Kafka. The payload is the Avro-encoded event, so the relay sends
+// exactly what was recorded alongside the borrow record. Ids are ObjectIds generated by the writing instance,
+// which keeps one instance's events in the order it wrote them; the relay keeps each borrow's events in that
+// order. Sent events expire after a week.
+@Document(collection = "borrow_outbox")
+@CompoundIndexes({
+        @CompoundIndex(name = "status_id", def = "{'status': 1, '_id': 1}"),
+        @CompoundIndex(name = "aggregate_status", def = "{'aggregateId': 1, 'status': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    
+    @Id
+    private String id;
+    
+    private String topic;
+    private String aggregateId;
+    private String eventType;
+    private byte[] payload;
+    
+    // Set for events that must be recorded only once, to borrowId:eventType
+    @Indexed(name = "dedup_key", unique = true, sparse = true)
+    private String dedupKey;
+    
+    private OutboxStatus status;
+    private int attempts;
+    private String lastError;
+    
+    // Set while a relay instance is publishing the event; another instance takes it over once this passes
+    private String leaseOwner;
+    private Instant leaseUntil;
+    
+    private Instant createdAt;
+    
+    @Indexed(name = "sent_at_ttl", expireAfter = "7d")
+    private Instant sentAt;
+    
+    public enum OutboxStatus {
+        PENDING,
+        SENT
+    }
+}
@@ -0,0 +1,25 @@
+package libsys.comp41720.borrowservice.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// How far overdue detection has got: every active borrow due before scannedThrough has been marked OVERDUE
+@Document(collection = "borrow_overdue_watermark")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueWatermark {
+    
+    @Id
+    private String id;
+    
+    private LocalDate scannedThrough;
+    
+    private LocalDateTime updatedAt;
+}
@@ -1,48 +1,174 @@
 package libsys.comp41720.borrowservice.grpc;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.StatusRuntimeException;
 import libsys.comp41720.grpc.*;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+// Calls book-service over a small pool of channels. Each channel resolves the target through DNS, so behind a
+// headless Kubernetes service it sees every pod; round_robin spreads calls across them and outlier detection
+// stops sending to a pod whose calls keep failing, until it has served its ejection time.
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class BookServiceGrpcClient {
     
+    private final GrpcClientMetricsInterceptor metricsInterceptor;
+    private final GrpcDeadlineInterceptor deadlineInterceptor;
+    
     @Value("${book.grpc.host:localhost}")
     private String grpcHost;
     
     @Value("${book.grpc.port:50052}")
     private int grpcPort;
     
-    private ManagedChannel channel;
+    // Overrides host and port, e.g. dns:///book-service-headless.library.svc.cluster.local:50052
+    @Value("${book.grpc.target:}")
+    private String grpcTarget;
+    
+    @Value("${book.grpc.load-balancing-policy:round_robin}")
+    private String loadBalancingPolicy;
+    
+    @Value("${book.grpc.channels:2}")
+    private int channelCount;
+    
+    @Value("${book.grpc.keepalive.time:30s}")
+    private Duration keepAliveTime;
+    
+    @Value("${book.grpc.keepalive.timeout:10s}")
+    private Duration keepAliveTimeout;
+    
+    @Value("${book.grpc.keepalive.without-calls:false}")
+    private boolean keepAliveWithoutCalls;
+    
+    @Value("${book.grpc.idle-timeout:5m}")
+    private Duration idleTimeout;
+    
+    @Value("${book.grpc.health-check.enabled:true}")
+    private boolean healthCheckEnabled;
+    
+    @Value("${book.grpc.outlier-ejection.enabled:true}")
+    private boolean outlierEjectionEnabled;
+    
+    @Value("${book.grpc.outlier-ejection.interval:10s}")
+    private Duration outlierEjectionInterval;
+    
+    @Value("${book.grpc.outlier-ejection.base-ejection-time:30s}")
+    private Duration baseEjectionTime;
+    
+    @Value("${book.grpc.outlier-ejection.max-ejection-percent:50}")
+    private int maxEjectionPercent;
+    
+    @Value("${book.grpc.outlier-ejection.failure-percentage:50}")
+    private int failurePercentageThreshold;
+    
+    @Value("${book.grpc.outlier-ejection.minimum-hosts:2}")
+    private int minimumHosts;
+    
+    @Value("${book.grpc.outlier-ejection.request-volume:20}")
+    private int requestVolume;
+    
+    private ManagedChannelPool channelPool;
     private BookServiceGrpc.BookServiceBlockingStub blockingStub;
+    private BookServiceGrpc.BookServiceFutureStub futureStub;
     
     @PostConstruct
     public void init() {
-        log.info("Initializing gRPC client for Book Service at {}:{}", grpcHost, grpcPort);
-        channel = ManagedChannelBuilder
-                .forAddress(grpcHost, grpcPort)
-                .usePlaintext()
-                .build();
-        blockingStub = BookServiceGrpc.newBlockingStub(channel);
+        String target = grpcTarget.isBlank() ? "dns:///" + grpcHost + ":" + grpcPort : grpcTarget;
+        log.info("Initializing gRPC client for Book Service at {} - policy: {}, channels: {}",
+                target, loadBalancingPolicy, channelCount);
+        
+        Map<String, ?> serviceConfig = serviceConfig();
+        List<ManagedChannel> channels = new ArrayList<>(channelCount);
+        for (int i = 0; i < Math.max(1, channelCount); i++) {
+            channels.add(ManagedChannelBuilder
+                    .forTarget(target)
+                    .usePlaintext()
+                    .defaultServiceConfig(serviceConfig)
+                    .keepAliveTime(keepAliveTime.toNanos(), TimeUnit.NANOSECONDS)
+                    .keepAliveTimeout(keepAliveTimeout.toNanos(), TimeUnit.NANOSECONDS)
+                    .keepAliveWithoutCalls(keepAliveWithoutCalls)
+                    .idleTimeout(idleTimeout.toNanos(), TimeUnit.NANOSECONDS)
+                    .intercept(metricsInterceptor)
+                    .build());
+        }
+        channelPool = new ManagedChannelPool(channels);
+        init(channelPool);
         log.info("gRPC client initialized successfully");
     }
     
+    // Also used to point the client at an in-process server
+    public void init(Channel channel) {
+        Channel withDeadlines = deadlineInterceptor == null
+                ? channel
+                : ClientInterceptors.intercept(channel, deadlineInterceptor);
+        blockingStub = BookServiceGrpc.newBlockingStub(withDeadlines);
+        futureStub = BookServiceGrpc.newFutureStub(withDeadlines);
+    }
+    
     @PreDestroy
-    public void cleanup() {
-        if (channel != null && !channel.isShutdown()) {
-            log.info("Shutting down gRPC channel");
-            channel.shutdown();
+    public void cleanup() throws InterruptedException {
+        if (channelPool != null && !channelPool.isShutdown()) {
+            log.info("Shutting down gRPC channels");
+            channelPool.shutdown();
+            if (!channelPool.awaitTermination(5, TimeUnit.SECONDS)) {
+                channelPool.shutdownNow();
+            }
         }
     }
     
+    // Service config numbers are doubles and durations are strings, as they would be when parsed from JSON.
+    // The health check falls back to treating an endpoint as serving if it does not implement grpc.health.v1.
+    private Map<String, ?> serviceConfig() {
+        Map<String, Object> childPolicy = Map.of(loadBalancingPolicy, Map.of());
+        Map<String, Object> config = new LinkedHashMap<>();
+        if (outlierEjectionEnabled) {
+            Map<String, Object> outlierDetection = new LinkedHashMap<>();
+            outlierDetection.put("interval", toServiceConfigDuration(outlierEjectionInterval));
+            outlierDetection.put("baseEjectionTime", toServiceConfigDuration(baseEjectionTime));
+            outlierDetection.put("maxEjectionPercent", (double) maxEjectionPercent);
+            outlierDetection.put("failurePercentageEjection", Map.of(
+                    "threshold", (double) failurePercentageThreshold,
+                    "enforcementPercentage", 100.0,
+                    "minimumHosts", (double) minimumHosts,
+                    "requestVolume", (double) requestVolume));
+            outlierDetection.put("childPolicy", List.of(childPolicy));
+            config.put("loadBalancingConfig", List.of(Map.of("outlier_detection_experimental", outlierDetection)));
+        } else {
+            config.put("loadBalancingConfig", List.of(childPolicy));
+        }
+        if (healthCheckEnabled) {
+            config.put("healthCheckConfig", Map.of("serviceName", ""));
+        }
+        return config;
+    }
+    
+    private static String toServiceConfigDuration(Duration duration) {
+        return String.format(Locale.ROOT, "%d.%09ds", duration.getSeconds(), duration.getNano());
+    }
+    
     public boolean checkBookAvailability(String isbn) {
         try {
             log.info("gRPC Client: Checking availability for ISBN: {}", isbn);
@@ -86,6 +212,108 @@ public class BookServiceGrpcClient {
         }
     }
     
+    // The copies come back on their own unless the hold is confirmed within holdSeconds.
+    // preferredBranch may be null.
+    public Optional<Long> holdBook(String isbn, int copiesNeeded, int holdSeconds, String preferredBranch) {
+        return holdBookAsync(isbn, copiesNeeded, holdSeconds, preferredBranch).join();
+    }
+    
+    // Completes on a gRPC thread with the hold ID, or empty when the hold was refused or the call failed
+    public CompletableFuture<Optional<Long>> holdBookAsync(String isbn, int copiesNeeded, int holdSeconds,
+                                                           String preferredBranch) {
+        log.info("gRPC Client: Holding book - ISBN: {}, Copies: {}, Seconds: {}, Branch: {}",
+                isbn, copiesNeeded, holdSeconds, preferredBranch);
+        
+        BookReservationRequest.Builder request = BookReservationRequest.newBuilder()
+                .setIsbn(isbn)
+                .setCopiesNeeded(copiesNeeded)
+                .setHoldSeconds(holdSeconds);
+        if (preferredBranch != null) {
+            request.setPreferredBranch(preferredBranch);
+        }
+        
+        CompletableFuture<Optional<Long>> hold = new CompletableFuture<>();
+        Futures.addCallback(futureStub.reserveBook(request.build()), new FutureCallback<>() {
+            @Override
+            public void onSuccess(BookReservationResponse response) {
+                log.info("gRPC Client: Hold result - ISBN: {}, Success: {}, Hold ID: {}, Branch: {}", 
+                        isbn, response.getSuccess(), response.getHoldId(), response.getBranch());
+                hold.complete(response.getSuccess() ? Optional.of(response.getHoldId()) : Optional.empty());
+            }
+            
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("gRPC Client: Failed to hold book - ISBN: {}", isbn, t);
+                hold.complete(Optional.empty());
+            }
+        }, MoreExecutors.directExecutor());
+        return hold;
+    }
+    
+    // False when book-service refused the confirm; a failed call is rethrown, since book-service may still have
+    // confirmed the hold (e.g. when only the deadline ran out)
+    public boolean confirmHold(long holdId) {
+        try {
+            log.info("gRPC Client: Confirming hold {}", holdId);
+            
+            HoldResponse response = blockingStub.confirmHold(HoldRequest.newBuilder()
+                    .setHoldId(holdId)
+                    .build());
+            
+            log.info("gRPC Client: Confirm result - Hold ID: {}, Success: {}, Message: {}", 
+                    holdId, response.getSuccess(), response.getMessage());
+            
+            return response.getSuccess();
+            
+        } catch (StatusRuntimeException e) {
+            log.error("gRPC Client: Failed to confirm hold {}", holdId, e);
+            throw e;
+        }
+    }
+    
+    // Gives back the copies of a hold whether or not it was confirmed: a hold still held is released, a confirmed
+    // one is returned like a loan, and one that expired or was released already has its copies back
+    public boolean undoHold(long holdId, String isbn, int copies) {
+        try {
+            log.info("gRPC Client: Undoing hold {}", holdId);
+            
+            HoldResponse response = blockingStub.releaseHold(HoldRequest.newBuilder()
+                    .setHoldId(holdId)
+                    .build());
+            
+            log.info("gRPC Client: Release result - Hold ID: {}, Success: {}, Status: {}", 
+                    holdId, response.getSuccess(), response.getStatus());
+            
+            if (response.getSuccess() || !"CONFIRMED".equals(response.getStatus())) {
+                return true;
+            }
+            return releaseBook(isbn, copies);
+            
+        } catch (StatusRuntimeException e) {
+            log.error("gRPC Client: Failed to undo hold {}", holdId, e);
+            return false;
+        }
+    }
+    
+    public boolean releaseHold(long holdId) {
+        try {
+            log.info("gRPC Client: Releasing hold {}", holdId);
+            
+            HoldResponse response = blockingStub.releaseHold(HoldRequest.newBuilder()
+                    .setHoldId(holdId)
+                    .build());
+            
+            log.info("gRPC Client: Release result - Hold ID: {}, Success: {}, Message: {}", 
+                    holdId, response.getSuccess(), response.getMessage());
+            
+            return response.getSuccess();
+            
+        } catch (StatusRuntimeException e) {
+            log.error("gRPC Client: Failed to release hold {}", holdId, e);
+            return false;
+        }
+    }
+    
     public boolean releaseBook(String isbn, int copiesReturned) {
         try {
             log.info("gRPC Client: Releasing book - ISBN: {}, Copies: {}", isbn, copiesReturned);
@@ -107,5 +335,91 @@ public class BookServiceGrpcClient {
             return false;
         }
     }
+    
+    public Map<String, Boolean> batchCheckAvailability(Collection<String> isbns) {
+        try {
+            log.info("gRPC Client: Batch checking availability for {} books", isbns.size());
+            
+            BatchAvailabilityRequest request = BatchAvailabilityRequest.newBuilder()
+                    .addAllIsbns(isbns)
+                    .build();
+            
+            BatchAvailabilityResponse response = blockingStub.batchCheckAvailability(request);
+            
+            Map<String, Boolean> availability = new LinkedHashMap<>();
+            for (BookAvailabilityResult result : response.getResultsList()) {
+                availability.put(result.getIsbn(), result.getFound() && result.getAvailable());
+            }
+            
+            log.info("gRPC Client: Batch availability result - {}", availability);
+            
+            return availability;
+            
+        } catch (StatusRuntimeException e) {
+            log.error("gRPC Client: Failed to batch check availability for {} books", isbns.size(), e);
+            return allFalse(isbns);
+        }
+    }
+    
+    public Map<String, Boolean> batchReserveBooks(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        try {
+            log.info("gRPC Client: Batch reserving {} books, all-or-nothing: {}", copiesByIsbn.size(), allOrNothing);
+            
+            BatchReservationRequest.Builder request = BatchReservationRequest.newBuilder()
+                    .setMode(allOrNothing ? BatchMode.ALL_OR_NOTHING : BatchMode.PARTIAL_SUCCESS);
+            copiesByIsbn.forEach((isbn, copies) -> request.addItems(BookReservationRequest.newBuilder()
+                    .setIsbn(isbn)
+                    .setCopiesNeeded(copies)));
+            
+            BatchReservationResponse response = blockingStub.batchReserveBooks(request.build());
+            
+            log.info("gRPC Client: Batch reservation result - Success: {}, Message: {}", 
+                    response.getSuccess(), response.getMessage());
+            
+            return toSuccessMap(response.getResultsList());
+            
+        } catch (StatusRuntimeException e) {
+            log.error("gRPC Client: Failed to batch reserve {} books", copiesByIsbn.size(), e);
+            return allFalse(copiesByIsbn.keySet());
+        }
+    }
+    
+    public Map<String, Boolean> batchReleaseBooks(Map<String, Integer> copiesByIsbn, boolean allOrNothing) {
+        try {
+            log.info("gRPC Client: Batch releasing {} books, all-or-nothing: {}", copiesByIsbn.size(), allOrNothing);
+            
+            BatchReleaseRequest.Builder request = BatchReleaseRequest.newBuilder()
+                    .setMode(allOrNothing ? BatchMode.ALL_OR_NOTHING : BatchMode.PARTIAL_SUCCESS);
+            copiesByIsbn.forEach((isbn, copies) -> request.addItems(BookReleaseRequest.newBuilder()
+                    .setIsbn(isbn)
+                    .setCopiesReturned(copies)));
+            
+            BatchReleaseResponse response = blockingStub.batchReleaseBooks(request.build());
+            
+            log.info("gRPC Client: Batch release result - Success: {}, Message: {}", 
+                    response.getSuccess(), response.getMessage());
+            
+            return toSuccessMap(response.getResultsList());
+            
+        } catch (StatusRuntimeException e) {
+            log.error("gRPC Client: Failed to batch release {} books", copiesByIsbn.size(), e);
+            return allFalse(copiesByIsbn.keySet());
+        }
+    }
+    
+    private Map<String, Boolean> toSuccessMap(List<BookBatchItemResult> results) {
+        Map<String, Boolean> successByIsbn = new LinkedHashMap<>();
+        for (BookBatchItemResult result : results) {
+            successByIsbn.put(result.getIsbn(), result.getSuccess());
+        }
+        return successByIsbn;
+    }
+    
+    private Map<String, Boolean> allFalse(Collection<String> isbns) {
+        Map<String, Boolean> failed = new LinkedHashMap<>();
+        for (String isbn : isbns) {
+            failed.put(isbn, false);
+        }
+        return failed;
+    }
 }
-
@@ -0,0 +1,138 @@
+package libsys.comp41720.borrowservice.grpc;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Client-side counterpart of book-service's GrpcServerMetricsInterceptor; the difference between the
+// two latencies is time spent on the network and in queues
+@Component
+@RequiredArgsConstructor
+public class GrpcClientMetricsInterceptor implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<MethodDescriptor<?, ?>, MethodMeters> metersByMethod = new ConcurrentHashMap<>();
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions,
+                                                               Channel next) {
+        MethodMeters meters = metersByMethod.computeIfAbsent(method,
+                descriptor -> new MethodMeters(meterRegistry, descriptor.getFullMethodName()));
+        return new MeasuredCall<>(next.newCall(method, callOptions), meters);
+    }
+
+    // Protobuf memoizes the size, so marshalling the message afterwards does not compute it again
+    private static int serializedSize(Object message) {
+        return message instanceof MessageLite lite ? lite.getSerializedSize() : 0;
+    }
+
+    private static final class MeasuredCall<ReqT, RespT>
+            extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private final MethodMeters meters;
+        private long startNanos;
+
+        private MeasuredCall(ClientCall<ReqT, RespT> call, MethodMeters meters) {
+            super(call);
+            this.meters = meters;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            startNanos = System.nanoTime();
+            meters.inFlight.incrementAndGet();
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                @Override
+                public void onMessage(RespT message) {
+                    meters.responseSize.record(serializedSize(message));
+                    super.onMessage(message);
+                }
+
+                // Called exactly once per started call, including cancellations and deadline expiry
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    meters.inFlight.decrementAndGet();
+                    meters.latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                    meters.statusCounter(status.getCode()).increment();
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            meters.requestSize.record(serializedSize(message));
+            super.sendMessage(message);
+        }
+    }
+
+    private static final class MethodMeters {
+        private final MeterRegistry registry;
+        private final String method;
+        private final Timer latency;
+        private final DistributionSummary requestSize;
+        private final DistributionSummary responseSize;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicReferenceArray<Counter> statusCounters =
+                new AtomicReferenceArray<>(Status.Code.values().length);
+
+        private MethodMeters(MeterRegistry registry, String method) {
+            this.registry = registry;
+            this.method = method;
+            this.latency = Timer.builder("grpc.client.calls")
+                    .description("Client-side latency of gRPC calls")
+                    .tag("method", method)
+                    .register(registry);
+            this.requestSize = messageSize(registry, method, "request");
+            this.responseSize = messageSize(registry, method, "response");
+            Gauge.builder("grpc.client.calls.in.flight", inFlight, AtomicInteger::get)
+                    .description("gRPC calls started but not yet closed")
+                    .tag("method", method)
+                    .register(registry);
+        }
+
+        // Only status codes that actually occur get a time series
+        Counter statusCounter(Status.Code code) {
+            Counter counter = statusCounters.get(code.ordinal());
+            if (counter == null) {
+                counter = Counter.builder("grpc.client.calls.completed")
+                        .description("Completed gRPC calls by status code")
+                        .tag("method", method)
+                        .tag("status", code.name())
+                        .register(registry);
+                statusCounters.set(code.ordinal(), counter);
+            }
+            return counter;
+        }
+
+        private static DistributionSummary messageSize(MeterRegistry registry, String method, String direction) {
+            return DistributionSummary.builder("grpc.client.message.size")
+                    .description("Serialized size of gRPC messages")
+                    .baseUnit("bytes")
+                    .tag("method", method)
+                    .tag("direction", direction)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package libsys.comp41720.borrowservice.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Gives every unary call that has no deadline of its own one from configuration, so a hung book-service fails the
+// caller instead of holding its thread. Overrides are keyed by bare method name, e.g. "ReserveBook=3s".
+@Component
+public class GrpcDeadlineInterceptor implements ClientInterceptor {
+
+    private final Duration defaultDeadline;
+    private final Map<String, Duration> deadlinesByMethod = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public GrpcDeadlineInterceptor(@Value("${book.grpc.deadline.default:2s}") Duration defaultDeadline,
+                                   @Value("${book.grpc.deadline.methods:}") String methodDeadlines) {
+        this.defaultDeadline = defaultDeadline;
+        for (String entry : methodDeadlines.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected Method=duration in book.grpc.deadline.methods: " + entry);
+            }
+            deadlinesByMethod.put(parts[0].trim(), DurationStyle.detectAndParse(parts[1].trim()));
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions,
+                                                               Channel next) {
+        // Streams such as WatchAvailability are meant to stay open
+        if (callOptions.getDeadline() != null || method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.newCall(method, callOptions);
+        }
+        Duration deadline = deadlineFor(method.getBareMethodName());
+        return next.newCall(method, callOptions.withDeadlineAfter(deadline.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    public Duration deadlineFor(String bareMethodName) {
+        return bareMethodName == null
+                ? defaultDeadline
+                : deadlinesByMethod.getOrDefault(bareMethodName, defaultDeadline);
+    }
+}
@@ -0,0 +1,114 @@
+package libsys.comp41720.borrowservice.outbox;
+
+import com.mongodb.ErrorCategory;
+import libsys.comp41720.borrowservice.entity.OutboxEvent;
+import libsys.comp41720.borrowservice.repository.OutboxEventRepository;
+import libsys.comp41720.events.BorrowEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+
+// Records borrow events for OutboxRelay to publish. With Mongo transactions enabled the insert joins the
+// caller's transaction, so an event exists exactly when the borrow record change it describes was committed.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BorrowEventOutbox {
+
+    public static final String BORROW_TOPIC = "borrow-events";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final MongoTemplate mongoTemplate;
+
+    public OutboxEvent append(BorrowEvent event) {
+        OutboxEvent saved = outboxEventRepository.insert(toEntry(event));
+        log.debug("Queued {} event {} for borrow {}", event.getEventType(), saved.getId(), event.getBorrowId());
+        return saved;
+    }
+
+    // Records each event unless one of the same type was already recorded for its borrow, so a step repeated
+    // after a failure does not queue its events twice. The insert is unordered, so the duplicates are skipped
+    // and everything else is still written; any other write error fails the call.
+    public int appendAllOnce(List<BorrowEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<OutboxEvent> entries = events.stream().map(event -> {
+            OutboxEvent entry = toEntry(event);
+            entry.setDedupKey(dedupKey(entry.getAggregateId(), entry.getEventType()));
+            return entry;
+        }).toList();
+        int inserted;
+        try {
+            inserted = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEvent.class)
+                    .insert(entries)
+                    .execute()
+                    .getInsertedCount();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream()
+                    .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates || e.getWriteConcernError() != null) {
+                throw e;
+            }
+            inserted = e.getResult().getInsertedCount();
+        }
+        log.debug("Queued {} of {} borrow events, the rest were already recorded", inserted, entries.size());
+        return inserted;
+    }
+
+    // Drops events appendAllOnce recorded that have not been picked up for sending
+    public void discardPending(List<String> dedupKeys) {
+        if (dedupKeys.isEmpty()) {
+            return;
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("dedupKey").in(dedupKeys)
+                        .and("status").is(OutboxEvent.OutboxStatus.PENDING)
+                        .and("leaseOwner").is(null)),
+                OutboxEvent.class);
+    }
+
+    public static String dedupKey(String borrowId, String eventType) {
+        return borrowId + ":" + eventType;
+    }
+
+    private static OutboxEvent toEntry(BorrowEvent event) {
+        OutboxEvent entry = new OutboxEvent();
+        entry.setTopic(BORROW_TOPIC);
+        entry.setAggregateId(event.getBorrowId().toString());
+        entry.setEventType(event.getEventType().toString());
+        entry.setPayload(encode(event));
+        entry.setStatus(OutboxEvent.OutboxStatus.PENDING);
+        entry.setCreatedAt(Instant.now());
+        return entry;
+    }
+
+    static byte[] encode(BorrowEvent event) {
+        try {
+            ByteBuffer buffer = event.toByteBuffer();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode borrow event " + event.getBorrowId(), e);
+        }
+    }
+
+    static BorrowEvent decode(byte[] payload) {
+        try {
+            return BorrowEvent.fromByteBuffer(ByteBuffer.wrap(payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode outbox payload", e);
+        }
+    }
+}
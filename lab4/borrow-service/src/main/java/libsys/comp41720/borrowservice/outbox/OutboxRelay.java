@@ -0,0 +1,304 @@
+package libsys.comp41720.borrowservice.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.borrowservice.entity.OutboxEvent;
+import libsys.comp41720.borrowservice.repository.OutboxEventRepository;
+import libsys.comp41720.events.BorrowEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drains the borrow outbox to Kafka in batches, oldest first. Each batch is leased before it is sent, so
+// several borrow-service instances can run the relay without publishing the same events; a lease left by an
+// instance that died runs out and the events are picked up again. Delivery is at least once, and in order for
+// each borrow: once an event's send fails, the borrow's later events in the batch are handed back unmarked and
+// go out again after it, and a batch leaves out events of a borrow whose older event is still pending elsewhere,
+// such as under another instance's lease.
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final MongoTemplate mongoTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, BorrowEvent> kafkaTemplate;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration leaseTime;
+    private final Duration sendTimeout;
+    private final Counter sent;
+    private final Counter failed;
+    private final DistributionSummary batches;
+    private final AtomicLong pending = new AtomicLong();
+    // Creation time of the oldest unsent event, or 0 when the outbox is drained
+    private final AtomicLong oldestPendingMillis = new AtomicLong();
+    private final ScheduledExecutorService relay;
+
+    public OutboxRelay(MongoTemplate mongoTemplate,
+                       OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, BorrowEvent> kafkaTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${borrow.outbox.batch-size:100}") int batchSize,
+                       @Value("${borrow.outbox.poll-interval:200ms}") Duration pollInterval,
+                       @Value("${borrow.outbox.lease-time:60s}") Duration leaseTime,
+                       @Value("${borrow.outbox.send-timeout:30s}") Duration sendTimeout) {
+        if (leaseTime.compareTo(sendTimeout) <= 0) {
+            throw new IllegalArgumentException("borrow.outbox.lease-time must exceed borrow.outbox.send-timeout");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.leaseTime = leaseTime;
+        this.sendTimeout = sendTimeout;
+        this.sent = Counter.builder("borrow.outbox.sent")
+                .description("Outbox events published to Kafka")
+                .register(meterRegistry);
+        this.failed = Counter.builder("borrow.outbox.failed")
+                .description("Outbox event sends that failed and will be retried")
+                .register(meterRegistry);
+        this.batches = DistributionSummary.builder("borrow.outbox.batch.size")
+                .description("Events claimed per relay batch")
+                .register(meterRegistry);
+        Gauge.builder("borrow.outbox.pending", pending, AtomicLong::get)
+                .description("Outbox events not yet published")
+                .register(meterRegistry);
+        Gauge.builder("borrow.outbox.lag", this, OutboxRelay::lagSeconds)
+                .description("Age of the oldest outbox event not yet published")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.relay = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "borrow-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        relay.scheduleWithFixedDelay(this::drainQuietly, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Outbox relay started - batch size: {}, poll interval: {}", batchSize, pollInterval);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        relay.shutdown();
+        relay.awaitTermination(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (Exception e) {
+            log.warn("Outbox relay pass failed, retrying in {}", pollInterval, e);
+        }
+    }
+
+    // Keeps taking batches while they come back full and every send succeeds; failures wait for the next pass
+    public void drain() {
+        try {
+            while (true) {
+                List<OutboxEvent> batch = claim();
+                if (batch.isEmpty() || !publish(batch) || batch.size() < batchSize) {
+                    return;
+                }
+            }
+        } finally {
+            refreshBacklog();
+        }
+    }
+
+    private List<OutboxEvent> claim() {
+        Instant now = Instant.now();
+        Query candidates = Query.query(claimable(now))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Only the events this update leased are ours; another instance may have taken some in between
+        String lease = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+                Query.query(new Criteria().andOperator(Criteria.where("_id").in(ids), claimable(now))),
+                new Update().set("leaseOwner", lease).set("leaseUntil", now.plus(leaseTime)),
+                OutboxEvent.class);
+        Query leased = Query.query(Criteria.where("_id").in(ids).and("leaseOwner").is(lease))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        List<OutboxEvent> batch = mongoTemplate.find(leased, OutboxEvent.class);
+        batches.record(batch.size());
+        return withoutOlderPending(batch);
+    }
+
+    // An older event of the same borrow outside the batch was leased by another instance or handed back since
+    // the batch was found; the borrow's events here wait for it to go out first
+    private List<OutboxEvent> withoutOlderPending(List<OutboxEvent> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        Query outside = Query.query(Criteria.where("aggregateId")
+                .in(batch.stream().map(OutboxEvent::getAggregateId).distinct().toList())
+                .and("status").is(OutboxEvent.OutboxStatus.PENDING)
+                .and("_id").nin(batch.stream().map(OutboxEvent::getId).toList()));
+        outside.fields().include("_id").include("aggregateId");
+        // ObjectId hex strings sort in creation order
+        Map<String, String> oldestOutside = new HashMap<>();
+        for (OutboxEvent other : mongoTemplate.find(outside, OutboxEvent.class)) {
+            oldestOutside.merge(other.getAggregateId(), other.getId(), (a, b) -> a.compareTo(b) <= 0 ? a : b);
+        }
+        if (oldestOutside.isEmpty()) {
+            return batch;
+        }
+
+        List<OutboxEvent> ready = new ArrayList<>(batch.size());
+        List<String> deferred = new ArrayList<>();
+        for (OutboxEvent entry : batch) {
+            String older = oldestOutside.get(entry.getAggregateId());
+            if (older != null && older.compareTo(entry.getId()) < 0) {
+                deferred.add(entry.getId());
+            } else {
+                ready.add(entry);
+            }
+        }
+        handBack(deferred);
+        return ready;
+    }
+
+    private static Criteria claimable(Instant now) {
+        return Criteria.where("status").is(OutboxEvent.OutboxStatus.PENDING)
+                .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now));
+    }
+
+    // Sends the whole batch before waiting, so the producer can put it in as few requests as it likes. A borrow
+    // whose event could not even be handed to the producer sends nothing more in this batch.
+    private boolean publish(List<OutboxEvent> batch) {
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+        Set<String> unsendable = new HashSet<>();
+        for (OutboxEvent entry : batch) {
+            if (unsendable.contains(entry.getAggregateId())) {
+                sends.add(null);
+                continue;
+            }
+            try {
+                BorrowEvent event = BorrowEventOutbox.decode(entry.getPayload());
+                sends.add(kafkaTemplate.send(entry.getTopic(), entry.getAggregateId(), event));
+            } catch (RuntimeException e) {
+                sends.add(CompletableFuture.failedFuture(e));
+                unsendable.add(entry.getAggregateId());
+            }
+        }
+        kafkaTemplate.flush();
+
+        // The first failure of a borrow comes before any of its skipped sends, so those are never waited on
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<String> sentIds = new ArrayList<>(batch.size());
+        List<String> heldBack = new ArrayList<>();
+        Set<String> failedAggregates = new HashSet<>();
+        boolean allSent = true;
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent entry = batch.get(i);
+            if (failedAggregates.contains(entry.getAggregateId())) {
+                heldBack.add(entry.getId());
+                continue;
+            }
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sentIds.add(entry.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                allSent = false;
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.warn("Failed to publish outbox event {} for borrow {}: {}",
+                        entry.getId(), entry.getAggregateId(), cause.toString());
+                releaseForRetry(entry, cause);
+                failedAggregates.add(entry.getAggregateId());
+                allSent = false;
+            }
+        }
+        handBack(heldBack);
+
+        if (!sentIds.isEmpty()) {
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("_id").in(sentIds)),
+                    new Update()
+                            .set("status", OutboxEvent.OutboxStatus.SENT)
+                            .set("sentAt", Instant.now())
+                            .unset("leaseOwner")
+                            .unset("leaseUntil"),
+                    OutboxEvent.class);
+            sent.increment(sentIds.size());
+        }
+        return allSent;
+    }
+
+    private void releaseForRetry(OutboxEvent entry, Throwable cause) {
+        failed.increment();
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(entry.getId())),
+                new Update()
+                        .inc("attempts", 1)
+                        .set("lastError", String.valueOf(cause.getMessage()))
+                        .unset("leaseOwner")
+                        .unset("leaseUntil"),
+                OutboxEvent.class);
+    }
+
+    // Events waiting on an older one of their borrow; they lose the lease but no attempt is counted against them
+    private void handBack(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(ids)),
+                new Update().unset("leaseOwner").unset("leaseUntil"),
+                OutboxEvent.class);
+    }
+
+    private void refreshBacklog() {
+        pending.set(outboxEventRepository.countByStatus(OutboxEvent.OutboxStatus.PENDING));
+        oldestPendingMillis.set(outboxEventRepository
+                .findFirstByStatusOrderByIdAsc(OutboxEvent.OutboxStatus.PENDING)
+                .map(oldest -> oldest.getCreatedAt().toEpochMilli())
+                .orElse(0L));
+    }
+
+    private double lagSeconds() {
+        long oldest = oldestPendingMillis.get();
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest) / 1000.0;
+    }
+}
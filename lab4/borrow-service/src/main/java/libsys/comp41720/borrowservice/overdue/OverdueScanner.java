@@ -0,0 +1,128 @@
+package libsys.comp41720.borrowservice.overdue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.entity.OverdueWatermark;
+import libsys.comp41720.borrowservice.repository.OverdueWatermarkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Turns ACTIVE borrows OVERDUE once their due date has passed. A watermark records the day up to which this has
+// been done, so each day only the borrows that fell due since then are read, through the status/due-date index;
+// ticks on a day already scanned do nothing. The watermark only moves once every batch is done, so a failed
+// pass is simply repeated. Several instances may scan at once: a borrow is only changed while still ACTIVE.
+@Component
+@Slf4j
+public class OverdueScanner {
+
+    static final String WATERMARK_ID = "borrow-overdue";
+
+    private final MongoTemplate mongoTemplate;
+    private final OverdueTransitions overdueTransitions;
+    private final OverdueWatermarkRepository overdueWatermarkRepository;
+    private final int batchSize;
+    private final Duration scanInterval;
+    private final Counter transitions;
+    private final ScheduledExecutorService scanner;
+
+    public OverdueScanner(MongoTemplate mongoTemplate,
+                          OverdueTransitions overdueTransitions,
+                          OverdueWatermarkRepository overdueWatermarkRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${borrow.overdue.batch-size:500}") int batchSize,
+                          @Value("${borrow.overdue.scan-interval:1m}") Duration scanInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.overdueTransitions = overdueTransitions;
+        this.overdueWatermarkRepository = overdueWatermarkRepository;
+        this.batchSize = batchSize;
+        this.scanInterval = scanInterval;
+        this.transitions = Counter.builder("borrow.overdue.transitions")
+                .description("Borrows marked OVERDUE")
+                .register(meterRegistry);
+        this.scanner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "overdue-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The first pass runs straight away, catching up on whatever fell due while the service was down
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scanner.scheduleWithFixedDelay(this::scanQuietly, 0, scanInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Overdue scanner started - batch size: {}, interval: {}", batchSize, scanInterval);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanner.shutdownNow();
+    }
+
+    private void scanQuietly() {
+        try {
+            scan();
+        } catch (Exception e) {
+            log.warn("Overdue scan failed, retrying in {}", scanInterval, e);
+        }
+    }
+
+    public int scan() {
+        LocalDate today = LocalDate.now();
+        LocalDate scannedThrough = overdueWatermarkRepository.findById(WATERMARK_ID)
+                .map(OverdueWatermark::getScannedThrough)
+                .orElse(null);
+        if (scannedThrough != null && !scannedThrough.isBefore(today)) {
+            return 0;
+        }
+
+        // Without a watermark every active borrow already past due is caught up on
+        Criteria dueDate = Criteria.where("dueDate").lt(today);
+        if (scannedThrough != null) {
+            dueDate = dueDate.gte(scannedThrough);
+        }
+        Query due = Query.query(Criteria.where("status").is(BorrowRecord.BorrowStatus.ACTIVE)
+                        .andOperator(dueDate))
+                .with(Sort.by(Sort.Direction.ASC, "dueDate"))
+                .limit(batchSize);
+        due.fields().include("_id");
+
+        // Marked borrows leave the ACTIVE range, so each query picks up where the last batch ended
+        int marked = 0;
+        while (true) {
+            List<String> ids = mongoTemplate.find(due, BorrowRecord.class).stream()
+                    .map(BorrowRecord::getId)
+                    .toList();
+            if (!ids.isEmpty()) {
+                int changed = overdueTransitions.markOverdue(ids).size();
+                marked += changed;
+                transitions.increment(changed);
+            }
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+
+        overdueWatermarkRepository.save(new OverdueWatermark(WATERMARK_ID, today, LocalDateTime.now()));
+        if (marked > 0 || scannedThrough == null) {
+            log.info("Marked {} borrows overdue, due before {}", marked, today);
+        }
+        return marked;
+    }
+}
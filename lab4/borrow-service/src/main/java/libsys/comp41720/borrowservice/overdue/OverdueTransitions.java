@@ -0,0 +1,69 @@
+package libsys.comp41720.borrowservice.overdue;
+
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.outbox.BorrowEventOutbox;
+import libsys.comp41720.borrowservice.service.BorrowManagementService;
+import libsys.comp41720.events.BorrowEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+// Marks one batch of borrows OVERDUE and records their events. The events are written first, each under a key
+// only one OVERDUE event per borrow can have, and only then is the status changed. Without Mongo transactions a
+// failure in between leaves the borrows ACTIVE, so the next scan picks them up again and writes no event twice.
+// Only borrows still ACTIVE when the update runs change; the events of any returned after they were read are
+// dropped again while still unsent. With Mongo transactions enabled everything commits together.
+@Component
+@RequiredArgsConstructor
+public class OverdueTransitions {
+
+    private static final String OVERDUE = "OVERDUE";
+
+    private final MongoTemplate mongoTemplate;
+    private final BorrowEventOutbox borrowEventOutbox;
+
+    @Transactional
+    public List<BorrowRecord> markOverdue(List<String> borrowIds) {
+        List<BorrowRecord> due = mongoTemplate.find(
+                Query.query(Criteria.where("_id").in(borrowIds).and("status").is(BorrowRecord.BorrowStatus.ACTIVE)),
+                BorrowRecord.class);
+        if (due.isEmpty()) {
+            return List.of();
+        }
+        borrowEventOutbox.appendAllOnce(due.stream()
+                .map(record -> BorrowManagementService.toBorrowEvent(record, OVERDUE))
+                .toList());
+
+        // Stored dates keep milliseconds, so the stamp is truncated to find the rows it was written to
+        List<String> dueIds = due.stream().map(BorrowRecord::getId).toList();
+        LocalDateTime stamp = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        long changed = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(dueIds).and("status").is(BorrowRecord.BorrowStatus.ACTIVE)),
+                new Update().set("status", BorrowRecord.BorrowStatus.OVERDUE).set("updatedAt", stamp),
+                BorrowRecord.class).getModifiedCount();
+        List<BorrowRecord> marked = changed == 0 ? List.of() : mongoTemplate.find(
+                Query.query(Criteria.where("_id").in(dueIds)
+                        .and("status").is(BorrowRecord.BorrowStatus.OVERDUE)
+                        .and("updatedAt").is(stamp)),
+                BorrowRecord.class);
+
+        // Borrows another instance marked meanwhile keep the event; it is the one both of them recorded
+        if (marked.size() < due.size()) {
+            Query returned = Query.query(Criteria.where("_id").in(dueIds)
+                    .and("status").ne(BorrowRecord.BorrowStatus.OVERDUE));
+            returned.fields().include("_id");
+            borrowEventOutbox.discardPending(mongoTemplate.find(returned, BorrowRecord.class).stream()
+                    .map(record -> BorrowEventOutbox.dedupKey(record.getId(), OVERDUE))
+                    .toList());
+        }
+        return marked;
+    }
+}
@@ -23,7 +23,8 @@ public interface BorrowRecordRepository extends MongoRepository<BorrowRecord, St
     @Query("{'status': 'ACTIVE', 'dueDate': {$lt: ?0}}")
     List<BorrowRecord> findOverdueBorrows(LocalDate currentDate);
     
-    @Query("{'memberId': ?0, 'bookIsbn': ?1, 'status': 'ACTIVE'}")
+    // An overdue borrow is still out, so it blocks borrowing the same book again
+    @Query("{'memberId': ?0, 'bookIsbn': ?1, 'status': {$in: ['ACTIVE', 'OVERDUE']}}")
     List<BorrowRecord> findActiveBorrowByMemberAndBook(String memberId, String bookIsbn);
 }
 
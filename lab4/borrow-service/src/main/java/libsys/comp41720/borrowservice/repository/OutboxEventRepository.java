@@ -0,0 +1,15 @@
+package libsys.comp41720.borrowservice.repository;
+
+import libsys.comp41720.borrowservice.entity.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String> {
+    
+    long countByStatus(OutboxEvent.OutboxStatus status);
+    
+    Optional<OutboxEvent> findFirstByStatusOrderByIdAsc(OutboxEvent.OutboxStatus status);
+}
@@ -0,0 +1,9 @@
+package libsys.comp41720.borrowservice.repository;
+
+import libsys.comp41720.borrowservice.entity.OverdueWatermark;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OverdueWatermarkRepository extends MongoRepository<OverdueWatermark, String> {
+}
@@ -4,18 +4,21 @@ import libsys.comp41720.borrowservice.dto.BorrowRecordDTO;
 import libsys.comp41720.borrowservice.dto.BorrowRequest;
 import libsys.comp41720.borrowservice.entity.BorrowRecord;
 import libsys.comp41720.borrowservice.grpc.BookServiceGrpcClient;
+import libsys.comp41720.borrowservice.outbox.BorrowEventOutbox;
 import libsys.comp41720.borrowservice.repository.BorrowRecordRepository;
 import libsys.comp41720.events.BorrowEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,68 +28,103 @@ public class BorrowManagementService {
     
     private final BorrowRecordRepository borrowRecordRepository;
     private final BookServiceGrpcClient bookServiceGrpcClient;
-    private final KafkaTemplate<String, BorrowEvent> kafkaTemplate;
+    private final BorrowEventOutbox borrowEventOutbox;
     
     private static final int DEFAULT_BORROW_DAYS = 14;
-    private static final String BORROW_TOPIC = "borrow-events";
+    
+    @Value("${book.grpc.hold-seconds:60}")
+    private int holdSeconds;
     
     @Transactional
     public BorrowRecordDTO borrowBook(BorrowRequest request) {
         log.info("Processing borrow request for member: {}, book: {}", 
                 request.getMemberId(), request.getBookIsbn());
         
-        // Check if book is available via gRPC
-        boolean isAvailable = bookServiceGrpcClient.checkBookAvailability(request.getBookIsbn());
-        if (!isAvailable) {
-            throw new IllegalStateException("Book is not available for borrowing");
-        }
+        // The conditional hold doubles as the availability check, and it is in flight while the duplicate
+        // check runs; a duplicate borrow therefore holds a copy briefly and hands it straight back.
+        // If this service dies before confirming, book-service takes the copy back.
+        CompletableFuture<Optional<Long>> pendingHold = bookServiceGrpcClient.holdBookAsync(
+                request.getBookIsbn(), 1, holdSeconds, request.getPreferredBranch());
         
         // Check if member already has an active borrow for this book
-        List<BorrowRecord> existingBorrows = borrowRecordRepository
-                .findActiveBorrowByMemberAndBook(request.getMemberId(), request.getBookIsbn());
+        List<BorrowRecord> existingBorrows;
+        try {
+            existingBorrows = borrowRecordRepository
+                    .findActiveBorrowByMemberAndBook(request.getMemberId(), request.getBookIsbn());
+        } catch (RuntimeException e) {
+            pendingHold.join().ifPresent(bookServiceGrpcClient::releaseHold);
+            throw e;
+        }
         
+        Optional<Long> hold = pendingHold.join();
         if (!existingBorrows.isEmpty()) {
+            hold.ifPresent(bookServiceGrpcClient::releaseHold);
             throw new IllegalStateException("Member already has an active borrow for this book");
         }
+        long holdId = hold.orElseThrow(() -> new IllegalStateException("Book is not available for borrowing"));
+        
+        // Create borrow record
+        BorrowRecord borrowRecord = new BorrowRecord();
+        borrowRecord.setId(UUID.randomUUID().toString());
+        borrowRecord.setMemberId(request.getMemberId());
+        borrowRecord.setMemberName(request.getMemberName());
+        borrowRecord.setMemberEmail(request.getMemberEmail());
+        borrowRecord.setBookIsbn(request.getBookIsbn());
+        borrowRecord.setBookTitle(request.getBookTitle());
+        borrowRecord.setBorrowDate(LocalDate.now());
+        
+        int borrowDays = request.getBorrowDays() != null ? request.getBorrowDays() : DEFAULT_BORROW_DAYS;
+        borrowRecord.setDueDate(LocalDate.now().plusDays(borrowDays));
+        
+        borrowRecord.setStatus(BorrowRecord.BorrowStatus.ACTIVE);
+        borrowRecord.setCreatedAt(LocalDateTime.now());
+        borrowRecord.setUpdatedAt(LocalDateTime.now());
+        
+        BorrowRecord savedRecord;
+        try {
+            savedRecord = borrowRecordRepository.save(borrowRecord);
+        } catch (RuntimeException e) {
+            // Compensate: release the held book (a no-op if the hold already expired)
+            log.error("Failed to create borrow record, releasing held book", e);
+            bookServiceGrpcClient.releaseHold(holdId);
+            throw new RuntimeException("Failed to complete borrow transaction", e);
+        }
         
-        // Reserve book via gRPC
-        boolean reserved = bookServiceGrpcClient.reserveBook(request.getBookIsbn(), 1);
-        if (!reserved) {
-            throw new IllegalStateException("Failed to reserve book");
+        // Without Mongo transactions the saved record stays unless it is deleted here, so every failure from
+        // now on removes it as well as giving the copy back
+        boolean confirmed;
+        try {
+            confirmed = bookServiceGrpcClient.confirmHold(holdId);
+        } catch (RuntimeException e) {
+            log.error("Confirming hold {} failed, undoing borrow {}", holdId, savedRecord.getId(), e);
+            borrowRecordRepository.delete(savedRecord);
+            if (!bookServiceGrpcClient.undoHold(holdId, request.getBookIsbn(), 1)) {
+                log.error("Could not return the copy of book {} held by {}", request.getBookIsbn(), holdId);
+            }
+            throw new RuntimeException("Failed to complete borrow transaction", e);
         }
+        if (!confirmed) {
+            // The hold expired or was released first, so its copy is already back
+            borrowRecordRepository.delete(savedRecord);
+            throw new IllegalStateException("Book hold " + holdId + " could not be confirmed");
+        }
+        log.info("Borrow record created successfully: {}", savedRecord.getId());
         
+        // Queue the Kafka event; it commits with the record when Mongo transactions are enabled. Without them a
+        // borrow nobody hears of is undone: the confirmed copy is returned and the record removed
         try {
-            // Create borrow record
-            BorrowRecord borrowRecord = new BorrowRecord();
-            borrowRecord.setId(UUID.randomUUID().toString());
-            borrowRecord.setMemberId(request.getMemberId());
-            borrowRecord.setMemberName(request.getMemberName());
-            borrowRecord.setMemberEmail(request.getMemberEmail());
-            borrowRecord.setBookIsbn(request.getBookIsbn());
-            borrowRecord.setBookTitle(request.getBookTitle());
-            borrowRecord.setBorrowDate(LocalDate.now());
-            
-            int borrowDays = request.getBorrowDays() != null ? request.getBorrowDays() : DEFAULT_BORROW_DAYS;
-            borrowRecord.setDueDate(LocalDate.now().plusDays(borrowDays));
-            
-            borrowRecord.setStatus(BorrowRecord.BorrowStatus.ACTIVE);
-            borrowRecord.setCreatedAt(LocalDateTime.now());
-            borrowRecord.setUpdatedAt(LocalDateTime.now());
-            
-            BorrowRecord savedRecord = borrowRecordRepository.save(borrowRecord);
-            log.info("Borrow record created successfully: {}", savedRecord.getId());
-            
-            // Send Kafka event
             publishBorrowEvent(savedRecord, "BORROW");
-            
-            return BorrowRecordDTO.fromEntity(savedRecord);
-            
-        } catch (Exception e) {
-            // Compensate: release the reserved book
-            log.error("Failed to create borrow record, releasing reserved book", e);
-            bookServiceGrpcClient.releaseBook(request.getBookIsbn(), 1);
+        } catch (RuntimeException e) {
+            log.error("Recording the event for borrow {} failed, undoing it", savedRecord.getId(), e);
+            borrowRecordRepository.delete(savedRecord);
+            if (!bookServiceGrpcClient.releaseBook(request.getBookIsbn(), 1)) {
+                log.error("Could not return the copy of book {} taken by borrow {}", request.getBookIsbn(),
+                        savedRecord.getId());
+            }
             throw new RuntimeException("Failed to complete borrow transaction", e);
         }
+        
+        return BorrowRecordDTO.fromEntity(savedRecord);
     }
     
     @Transactional
@@ -96,7 +134,8 @@ public class BorrowManagementService {
         BorrowRecord borrowRecord = borrowRecordRepository.findById(borrowId)
                 .orElseThrow(() -> new IllegalArgumentException("Borrow record not found"));
         
-        if (borrowRecord.getStatus() != BorrowRecord.BorrowStatus.ACTIVE) {
+        if (borrowRecord.getStatus() != BorrowRecord.BorrowStatus.ACTIVE
+                && borrowRecord.getStatus() != BorrowRecord.BorrowStatus.OVERDUE) {
             throw new IllegalStateException("Borrow record is not active");
         }
         
@@ -107,15 +146,36 @@ public class BorrowManagementService {
         }
         
         // Update borrow record
+        BorrowRecord.BorrowStatus previousStatus = borrowRecord.getStatus();
+        LocalDateTime previousUpdatedAt = borrowRecord.getUpdatedAt();
         borrowRecord.setReturnDate(LocalDate.now());
         borrowRecord.setStatus(BorrowRecord.BorrowStatus.RETURNED);
         borrowRecord.setUpdatedAt(LocalDateTime.now());
         
-        BorrowRecord updatedRecord = borrowRecordRepository.save(borrowRecord);
+        BorrowRecord updatedRecord;
+        try {
+            updatedRecord = borrowRecordRepository.save(borrowRecord);
+        } catch (RuntimeException e) {
+            log.error("Failed to update borrow record {}, taking the copy back", borrowId, e);
+            retakeCopy(borrowRecord);
+            throw new RuntimeException("Failed to complete return transaction", e);
+        }
         log.info("Book returned successfully: {}", borrowId);
         
-        // Send Kafka event
-        publishBorrowEvent(updatedRecord, "RETURN");
+        // Queue the Kafka event. Without Mongo transactions a return nobody hears of could never be retried, as
+        // the record is no longer active, so it is undone: the record goes back to its status and the copy is
+        // taken off the shelf again
+        try {
+            publishBorrowEvent(updatedRecord, "RETURN");
+        } catch (RuntimeException e) {
+            log.error("Recording the event for return of borrow {} failed, undoing it", borrowId, e);
+            updatedRecord.setReturnDate(null);
+            updatedRecord.setStatus(previousStatus);
+            updatedRecord.setUpdatedAt(previousUpdatedAt);
+            borrowRecordRepository.save(updatedRecord);
+            retakeCopy(updatedRecord);
+            throw new RuntimeException("Failed to complete return transaction", e);
+        }
         
         return BorrowRecordDTO.fromEntity(updatedRecord);
     }
@@ -136,35 +196,39 @@ public class BorrowManagementService {
                 .collect(Collectors.toList());
     }
     
+    // Served from the status OverdueScanner maintains
     public List<BorrowRecordDTO> getOverdueBorrows() {
         log.info("Fetching overdue borrows");
-        return borrowRecordRepository.findOverdueBorrows(LocalDate.now())
+        return borrowRecordRepository.findByStatus(BorrowRecord.BorrowStatus.OVERDUE)
                 .stream()
                 .map(BorrowRecordDTO::fromEntity)
                 .collect(Collectors.toList());
     }
     
-    private void publishBorrowEvent(BorrowRecord record, String eventType) {
-        try {
-            BorrowEvent event = BorrowEvent.newBuilder()
-                    .setBorrowId(record.getId())
-                    .setMemberName(record.getMemberName())
-                    .setMemberEmail(record.getMemberEmail())
-                    .setBookTitle(record.getBookTitle())
-                    .setBookIsbn(record.getBookIsbn())
-                    .setBorrowDate(record.getBorrowDate().toString())
-                    .setDueDate(record.getDueDate().toString())
-                    .setEventType(eventType)
-                    .build();
-            
-            log.info("Publishing borrow event to Kafka: {}", event);
-            kafkaTemplate.send(BORROW_TOPIC, record.getId(), event);
-            log.info("Borrow event published successfully");
-            
-        } catch (Exception e) {
-            log.error("Failed to publish borrow event to Kafka", e);
-            // Don't fail the transaction if Kafka publish fails
+    private void retakeCopy(BorrowRecord record) {
+        if (!bookServiceGrpcClient.reserveBook(record.getBookIsbn(), 1)) {
+            log.error("Could not take back the copy of book {} returned by borrow {}", record.getBookIsbn(),
+                    record.getId());
         }
     }
+    
+    // The outbox relay publishes the event; failing to record it fails the operation, as the event would be lost
+    private void publishBorrowEvent(BorrowRecord record, String eventType) {
+        BorrowEvent event = toBorrowEvent(record, eventType);
+        log.info("Recording borrow event in the outbox: {}", event);
+        borrowEventOutbox.append(event);
+    }
+    
+    public static BorrowEvent toBorrowEvent(BorrowRecord record, String eventType) {
+        return BorrowEvent.newBuilder()
+                .setBorrowId(record.getId())
+                .setMemberName(record.getMemberName())
+                .setMemberEmail(record.getMemberEmail())
+                .setBookTitle(record.getBookTitle())
+                .setBookIsbn(record.getBookIsbn())
+                .setBorrowDate(record.getBorrowDate().toString())
+                .setDueDate(record.getDueDate().toString())
+                .setEventType(eventType)
+                .build();
+    }
 }
-
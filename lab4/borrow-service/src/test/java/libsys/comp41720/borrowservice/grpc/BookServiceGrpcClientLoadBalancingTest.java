@@ -0,0 +1,242 @@
+package libsys.comp41720.borrowservice.grpc;
+
+import io.grpc.Context;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.grpc.BookAvailabilityRequest;
+import libsys.comp41720.grpc.BookAvailabilityResponse;
+import libsys.comp41720.grpc.BookReservationRequest;
+import libsys.comp41720.grpc.BookReservationResponse;
+import libsys.comp41720.grpc.BookServiceGrpc;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// BookServiceGrpcClient, wired from properties as in the service, calling three book-service replicas on loopback
+// ports that a static name resolver hands out the way DNS would for a headless service, as GrpcLoadBalancingBenchmark
+// does. Availability checks are answered at once; reservations are never answered at all.
+class BookServiceGrpcClientLoadBalancingTest {
+
+    private static final int REPLICAS = 3;
+    private static final String ISBN = "978-0-13-468599-1";
+    private static final AtomicInteger SCHEMES = new AtomicInteger();
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<ReplicaStandIn> replicas = new ArrayList<>();
+    private StaticResolverProvider resolverProvider;
+    private AnnotationConfigApplicationContext context;
+    private BookServiceGrpcClient client;
+
+    // Each test gets its own scheme, so no channel can resolve to another test's servers
+    @BeforeEach
+    void setUp() throws IOException {
+        List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 0; i < REPLICAS; i++) {
+            ReplicaStandIn replica = new ReplicaStandIn();
+            Server server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                    .addService(replica)
+                    .build()
+                    .start();
+            servers.add(server);
+            replicas.add(replica);
+            addresses.add(new EquivalentAddressGroup(new InetSocketAddress("127.0.0.1", server.getPort())));
+        }
+        resolverProvider = new StaticResolverProvider("booktest" + SCHEMES.incrementAndGet(), addresses);
+        NameResolverRegistry.getDefaultRegistry().register(resolverProvider);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "book.grpc.target", resolverProvider.scheme + ":///book-service",
+                "book.grpc.load-balancing-policy", "round_robin",
+                "book.grpc.channels", 2,
+                "book.grpc.deadline.default", "5s",
+                "book.grpc.deadline.methods", "ReserveBook=300ms",
+                "book.grpc.outlier-ejection.interval", "500ms",
+                "book.grpc.outlier-ejection.request-volume", 5)));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(GrpcClientMetricsInterceptor.class, GrpcDeadlineInterceptor.class,
+                BookServiceGrpcClient.class);
+        context.refresh();
+        client = context.getBean(BookServiceGrpcClient.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+        servers.forEach(Server::shutdownNow);
+        NameResolverRegistry.getDefaultRegistry().deregister(resolverProvider);
+    }
+
+    @Test
+    void roundRobinSpreadsCallsOverEveryReplica() {
+        // Calls only go to replicas whose connection is up, so the count starts once every one has answered
+        awaitCalls(() -> {
+            client.checkBookAvailability(ISBN);
+            return replicas.stream().allMatch(replica -> replica.availabilityCalls.get() > 0);
+        });
+        replicas.forEach(replica -> replica.availabilityCalls.set(0));
+
+        int calls = 300;
+        for (int i = 0; i < calls; i++) {
+            assertThat(client.checkBookAvailability(ISBN)).isTrue();
+        }
+
+        assertThat(replicas).allSatisfy(replica ->
+                assertThat(replica.availabilityCalls.get()).isBetween((long) calls / 6, (long) calls / 2));
+    }
+
+    // Ejection lasts the 30s base ejection time, far longer than this test
+    @Test
+    void outlierDetectionEjectsTheFailingReplica() {
+        ReplicaStandIn failing = replicas.get(REPLICAS - 1);
+        failing.failing = true;
+
+        // Ejected once a whole round of calls goes by without reaching it
+        awaitCalls(() -> {
+            long before = failing.availabilityCalls.get();
+            for (int i = 0; i < 30; i++) {
+                client.checkBookAvailability(ISBN);
+            }
+            return failing.availabilityCalls.get() == before;
+        });
+
+        long failedCalls = failing.availabilityCalls.get();
+        for (int i = 0; i < 100; i++) {
+            assertThat(client.checkBookAvailability(ISBN)).isTrue();
+        }
+        assertThat(failing.availabilityCalls.get()).isEqualTo(failedCalls);
+        assertThat(replicas.subList(0, REPLICAS - 1)).allSatisfy(replica ->
+                assertThat(replica.availabilityCalls.get()).isPositive());
+    }
+
+    @Test
+    void hungReplicaTripsThePerMethodDeadline() {
+        long start = System.nanoTime();
+        assertThat(client.reserveBook(ISBN, 1)).isFalse();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The method's own deadline, not the 5s default, is what reached the server and ended the call
+        assertThat(elapsedMillis).isBetween(250L, 2_000L);
+        assertThat(replicas.stream().mapToLong(replica -> replica.reservationMillisLeft.get()).max().orElseThrow())
+                .isBetween(1L, 300L);
+        Counter deadlineExceeded = context.getBean(SimpleMeterRegistry.class)
+                .find("grpc.client.calls.completed")
+                .tag("method", BookServiceGrpc.getReserveBookMethod().getFullMethodName())
+                .tag("status", Status.Code.DEADLINE_EXCEEDED.name())
+                .counter();
+        assertThat(deadlineExceeded).isNotNull();
+        assertThat(deadlineExceeded.count()).isEqualTo(1.0);
+    }
+
+    private static void awaitCalls(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Calls did not settle within 15s");
+            }
+        }
+    }
+
+    private final class ReplicaStandIn extends BookServiceGrpc.BookServiceImplBase {
+        private final AtomicLong availabilityCalls = new AtomicLong();
+        private final AtomicLong reservationMillisLeft = new AtomicLong(-1);
+        private volatile boolean failing;
+
+        @Override
+        public void checkBookAvailability(BookAvailabilityRequest request,
+                                          StreamObserver<BookAvailabilityResponse> responseObserver) {
+            availabilityCalls.incrementAndGet();
+            if (failing) {
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("replica failing").asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(BookAvailabilityResponse.newBuilder()
+                    .setAvailable(true)
+                    .setAvailableCopies(3)
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        // Never answers; the call stays open until the client gives up on it
+        @Override
+        public void reserveBook(BookReservationRequest request,
+                                StreamObserver<BookReservationResponse> responseObserver) {
+            reservationMillisLeft.set(Context.current().getDeadline().timeRemaining(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // Resolves every target with its scheme to the fixed replica addresses
+    private static final class StaticResolverProvider extends NameResolverProvider {
+        private final String scheme;
+        private final List<EquivalentAddressGroup> addresses;
+
+        private StaticResolverProvider(String scheme, List<EquivalentAddressGroup> addresses) {
+            this.scheme = scheme;
+            this.addresses = addresses;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+            if (!scheme.equals(targetUri.getScheme())) {
+                return null;
+            }
+            return new NameResolver() {
+                @Override
+                public String getServiceAuthority() {
+                    return "book-service";
+                }
+
+                @Override
+                public void start(Listener2 listener) {
+                    listener.onResult(ResolutionResult.newBuilder().setAddresses(addresses).build());
+                }
+
+                @Override
+                public void shutdown() {
+                }
+            };
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return scheme;
+        }
+
+        @Override
+        protected boolean isAvailable() {
+            return true;
+        }
+
+        // Above the built-in DNS resolver so the scheme lookup finds this one
+        @Override
+        protected int priority() {
+            return 6;
+        }
+    }
+}
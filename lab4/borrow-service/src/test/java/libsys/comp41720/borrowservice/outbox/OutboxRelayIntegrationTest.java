@@ -0,0 +1,254 @@
+package libsys.comp41720.borrowservice.outbox;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.borrowservice.entity.OutboxEvent;
+import libsys.comp41720.borrowservice.repository.OutboxEventRepository;
+import libsys.comp41720.events.BorrowEvent;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// OutboxRelay against an embedded Kafka broker and a MongoDB container. The topic has one partition, so once an
+// event sent after another is read, everything the relay sent before it has been read too.
+@Testcontainers(disabledWithoutDocker = true)
+@EmbeddedKafka(partitions = 1, topics = BorrowEventOutbox.BORROW_TOPIC)
+class OutboxRelayIntegrationTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+    private static OutboxEventRepository repository;
+
+    private DefaultKafkaProducerFactory<String, BorrowEvent> producerFactory;
+    private KafkaConsumer<String, byte[]> consumer;
+    private BorrowEventOutbox outbox;
+    private OutboxRelay relay;
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(MONGO.getConnectionString());
+        mongoTemplate = new MongoTemplate(mongoClient, "outbox_relay_test");
+        repository = new MongoRepositoryFactory(mongoTemplate).getRepository(OutboxEventRepository.class);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(OutboxEvent.class);
+        IndexOperations indexOps = mongoTemplate.indexOps(OutboxEvent.class);
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        IndexResolver.create(mappingContext).resolveIndexFor(OutboxEvent.class).forEach(indexOps::ensureIndex);
+        EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+        producerFactory = new DefaultKafkaProducerFactory<>(
+                Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()),
+                new StringSerializer(), (topic, event) -> BorrowEventOutbox.encode(event));
+        consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, UUID.randomUUID().toString(),
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"),
+                new StringDeserializer(), new ByteArrayDeserializer());
+        consumer.subscribe(List.of(BorrowEventOutbox.BORROW_TOPIC));
+        outbox = new BorrowEventOutbox(repository, mongoTemplate);
+        // Batches of two, so a drain has to carry on over several of them
+        relay = new OutboxRelay(mongoTemplate, repository, new KafkaTemplate<>(producerFactory),
+                new SimpleMeterRegistry(), 2, Duration.ofMillis(200), Duration.ofSeconds(10), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.close();
+        producerFactory.destroy();
+    }
+
+    @Test
+    void relaysEachBorrowsEventsInOrderAndMarksThemSent() {
+        String first = borrowId();
+        String second = borrowId();
+        outbox.append(event(first, "BORROW"));
+        outbox.append(event(second, "BORROW"));
+        outbox.append(event(first, "RENEW"));
+        outbox.append(event(second, "RETURN"));
+        outbox.append(event(first, "RETURN"));
+
+        relay.drain();
+
+        List<ConsumerRecord<String, byte[]>> records = readThrough(first, "RETURN");
+        assertThat(eventTypes(records, first)).containsExactly("BORROW", "RENEW", "RETURN");
+        assertThat(eventTypes(records, second)).containsExactly("BORROW", "RETURN");
+        assertThat(repository.findAll()).allSatisfy(entry -> {
+            assertThat(entry.getStatus()).isEqualTo(OutboxEvent.OutboxStatus.SENT);
+            assertThat(entry.getSentAt()).isNotNull();
+            assertThat(entry.getLeaseOwner()).isNull();
+        });
+    }
+
+    @Test
+    void takesOverExpiredLeasesButNotLiveOnes() {
+        String abandoned = borrowId();
+        String taken = borrowId();
+        lease(outbox.append(event(abandoned, "BORROW")), "crashed", Instant.now().minusSeconds(5));
+        OutboxEvent leased = lease(outbox.append(event(taken, "BORROW")), "alive", Instant.now().plusSeconds(60));
+        String marker = borrowId();
+        outbox.append(event(marker, "BORROW"));
+
+        relay.drain();
+
+        List<ConsumerRecord<String, byte[]>> records = readThrough(marker, "BORROW");
+        assertThat(eventTypes(records, abandoned)).containsExactly("BORROW");
+        assertThat(eventTypes(records, taken)).isEmpty();
+        OutboxEvent stillLeased = repository.findById(leased.getId()).orElseThrow();
+        assertThat(stillLeased.getStatus()).isEqualTo(OutboxEvent.OutboxStatus.PENDING);
+        assertThat(stillLeased.getLeaseOwner()).isEqualTo("alive");
+    }
+
+    // The undecodable event fails on every pass, so the borrow's later event waits behind it; a pass ends at a
+    // failure, so the other borrow's event goes first
+    @Test
+    void stopsABorrowAfterItsEventFails() throws Exception {
+        String stuck = borrowId();
+        String other = borrowId();
+        outbox.append(event(other, "BORROW"));
+        OutboxEvent broken = outbox.append(event(stuck, "BORROW"));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(broken.getId())),
+                new Update().set("payload", new byte[] {0}), OutboxEvent.class);
+        OutboxEvent later = outbox.append(event(stuck, "RETURN"));
+
+        relay.drain();
+        relay.drain();
+        // The relay is starved by the failing event, so the marker is sent directly, after everything it sent
+        String marker = borrowId();
+        new KafkaTemplate<>(producerFactory).send(BorrowEventOutbox.BORROW_TOPIC, marker, event(marker, "BORROW"))
+                .get(10, TimeUnit.SECONDS);
+
+        List<ConsumerRecord<String, byte[]>> records = readThrough(marker, "BORROW");
+        assertThat(eventTypes(records, other)).containsExactly("BORROW");
+        assertThat(eventTypes(records, stuck)).isEmpty();
+        OutboxEvent failed = repository.findById(broken.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(OutboxEvent.OutboxStatus.PENDING);
+        assertThat(failed.getAttempts()).isEqualTo(2);
+        OutboxEvent waiting = repository.findById(later.getId()).orElseThrow();
+        assertThat(waiting.getStatus()).isEqualTo(OutboxEvent.OutboxStatus.PENDING);
+        assertThat(waiting.getAttempts()).isZero();
+        assertThat(waiting.getLeaseOwner()).isNull();
+    }
+
+    @Test
+    void holdsBackEventsBehindAnOlderOneLeasedElsewhere() {
+        String borrow = borrowId();
+        lease(outbox.append(event(borrow, "BORROW")), "alive", Instant.now().plusSeconds(60));
+        OutboxEvent later = outbox.append(event(borrow, "RETURN"));
+        String marker = borrowId();
+        outbox.append(event(marker, "BORROW"));
+
+        relay.drain();
+
+        List<ConsumerRecord<String, byte[]>> records = readThrough(marker, "BORROW");
+        assertThat(eventTypes(records, borrow)).isEmpty();
+        OutboxEvent waiting = repository.findById(later.getId()).orElseThrow();
+        assertThat(waiting.getStatus()).isEqualTo(OutboxEvent.OutboxStatus.PENDING);
+        assertThat(waiting.getLeaseOwner()).isNull();
+    }
+
+    // A scan repeated after the status change failed records the batch's events again
+    @Test
+    void appendsEachBorrowsEventOnlyOnce() {
+        String recorded = borrowId();
+        String fresh = borrowId();
+        outbox.appendAllOnce(List.of(event(recorded, "OVERDUE")));
+
+        int inserted = outbox.appendAllOnce(List.of(event(recorded, "OVERDUE"), event(fresh, "OVERDUE")));
+
+        assertThat(inserted).isEqualTo(1);
+        assertThat(repository.findAll()).extracting(OutboxEvent::getDedupKey).containsExactlyInAnyOrder(
+                BorrowEventOutbox.dedupKey(recorded, "OVERDUE"), BorrowEventOutbox.dedupKey(fresh, "OVERDUE"));
+    }
+
+    private static OutboxEvent lease(OutboxEvent entry, String owner, Instant until) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(entry.getId())),
+                new Update().set("leaseOwner", owner).set("leaseUntil", until), OutboxEvent.class);
+        return entry;
+    }
+
+    // Reads until the given event arrives, failing after ten seconds
+    private List<ConsumerRecord<String, byte[]>> readThrough(String borrowId, String eventType) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(200))) {
+                records.add(record);
+                if (record.key().equals(borrowId)
+                        && BorrowEventOutbox.decode(record.value()).getEventType().toString().equals(eventType)) {
+                    return records;
+                }
+            }
+        }
+        throw new AssertionError(eventType + " event for borrow " + borrowId + " was not published");
+    }
+
+    private static List<String> eventTypes(List<ConsumerRecord<String, byte[]>> records, String borrowId) {
+        return records.stream()
+                .filter(record -> record.key().equals(borrowId))
+                .map(record -> BorrowEventOutbox.decode(record.value()).getEventType().toString())
+                .toList();
+    }
+
+    private static String borrowId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static BorrowEvent event(String borrowId, String eventType) {
+        return BorrowEvent.newBuilder()
+                .setBorrowId(borrowId)
+                .setMemberName("Ada Lovelace")
+                .setMemberEmail("ada@example.com")
+                .setBookTitle("The Pragmatic Programmer")
+                .setBookIsbn("978-0-000001")
+                .setBorrowDate("2026-01-01")
+                .setDueDate("2026-01-15")
+                .setEventType(eventType)
+                .build();
+    }
+}
@@ -0,0 +1,211 @@
+package libsys.comp41720.borrowservice.overdue;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.entity.OutboxEvent;
+import libsys.comp41720.borrowservice.entity.OverdueWatermark;
+import libsys.comp41720.borrowservice.outbox.BorrowEventOutbox;
+import libsys.comp41720.borrowservice.repository.OutboxEventRepository;
+import libsys.comp41720.borrowservice.repository.OverdueWatermarkRepository;
+import libsys.comp41720.events.BorrowEvent;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// OverdueScanner and OverdueTransitions against a MongoDB container without transactions, which is how the
+// service runs by default. Batches hold two borrows, so a pass over three or more runs several of them.
+@Testcontainers(disabledWithoutDocker = true)
+class OverdueScannerIntegrationTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+    private static OutboxEventRepository outboxEventRepository;
+    private static OverdueWatermarkRepository overdueWatermarkRepository;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(MONGO.getConnectionString());
+        mongoTemplate = new MongoTemplate(mongoClient, "overdue_scanner_test");
+        MongoRepositoryFactory repositoryFactory = new MongoRepositoryFactory(mongoTemplate);
+        outboxEventRepository = repositoryFactory.getRepository(OutboxEventRepository.class);
+        overdueWatermarkRepository = repositoryFactory.getRepository(OverdueWatermarkRepository.class);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    // The outbox's unique dedup key is what keeps a repeated pass from queueing an event twice
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        for (Class<?> type : List.of(BorrowRecord.class, OutboxEvent.class, OverdueWatermark.class)) {
+            mongoTemplate.dropCollection(type);
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            IndexResolver.create(mappingContext).resolveIndexFor(type).forEach(indexOps::ensureIndex);
+        }
+    }
+
+    @Test
+    void firstPassCatchesUpOnEveryActiveBorrowPastDue() {
+        BorrowRecord longOverdue = borrow(today.minusDays(40));
+        BorrowRecord dueYesterday = borrow(today.minusDays(1));
+        BorrowRecord dueToday = borrow(today);
+
+        assertThat(scanner(new BorrowEventOutbox(outboxEventRepository, mongoTemplate)).scan()).isEqualTo(2);
+
+        assertThat(statusOf(longOverdue)).isEqualTo(BorrowRecord.BorrowStatus.OVERDUE);
+        assertThat(statusOf(dueYesterday)).isEqualTo(BorrowRecord.BorrowStatus.OVERDUE);
+        assertThat(statusOf(dueToday)).isEqualTo(BorrowRecord.BorrowStatus.ACTIVE);
+        assertThat(overdueEventBorrowIds()).containsExactlyInAnyOrder(longOverdue.getId(), dueYesterday.getId());
+        assertThat(scannedThrough()).isEqualTo(today);
+    }
+
+    // Borrows due before the watermark were handled by an earlier pass; one left ACTIVE there is not read again
+    @Test
+    void passOnlyReadsBorrowsThatFellDueSinceTheWatermarkAndADayAlreadyScannedDoesNothing() {
+        overdueWatermarkRepository.save(new OverdueWatermark(OverdueScanner.WATERMARK_ID, today.minusDays(3),
+                LocalDateTime.now()));
+        BorrowRecord beforeWindow = borrow(today.minusDays(4));
+        BorrowRecord firstDayOfWindow = borrow(today.minusDays(3));
+        BorrowRecord dueYesterday = borrow(today.minusDays(1));
+        BorrowRecord alsoDueYesterday = borrow(today.minusDays(1));
+        BorrowRecord dueToday = borrow(today);
+        OverdueScanner scanner = scanner(new BorrowEventOutbox(outboxEventRepository, mongoTemplate));
+
+        assertThat(scanner.scan()).isEqualTo(3);
+
+        assertThat(statusOf(beforeWindow)).isEqualTo(BorrowRecord.BorrowStatus.ACTIVE);
+        assertThat(statusOf(dueToday)).isEqualTo(BorrowRecord.BorrowStatus.ACTIVE);
+        assertThat(overdueEventBorrowIds()).containsExactlyInAnyOrder(firstDayOfWindow.getId(), dueYesterday.getId(),
+                alsoDueYesterday.getId());
+        assertThat(scannedThrough()).isEqualTo(today);
+
+        BorrowRecord lateEntry = borrow(today.minusDays(2));
+        assertThat(scanner.scan()).isZero();
+        assertThat(statusOf(lateEntry)).isEqualTo(BorrowRecord.BorrowStatus.ACTIVE);
+        assertThat(overdueEventBorrowIds()).hasSize(3);
+    }
+
+    // The first batch's events are written and then the pass fails before any status changes
+    @Test
+    void passRepeatedAfterAFailureBetweenTheEventsAndTheStatusQueuesNoEventTwice() {
+        List<BorrowRecord> due = List.of(borrow(today.minusDays(3)), borrow(today.minusDays(2)),
+                borrow(today.minusDays(1)));
+        BorrowEventOutbox failsOnce = new BorrowEventOutbox(outboxEventRepository, mongoTemplate) {
+            private boolean failed;
+
+            @Override
+            public int appendAllOnce(List<BorrowEvent> events) {
+                int inserted = super.appendAllOnce(events);
+                if (!failed) {
+                    failed = true;
+                    throw new IllegalStateException("Lost the connection after writing the events");
+                }
+                return inserted;
+            }
+        };
+        OverdueScanner scanner = scanner(failsOnce);
+
+        assertThatThrownBy(scanner::scan).isInstanceOf(IllegalStateException.class);
+        assertThat(due).allSatisfy(record ->
+                assertThat(statusOf(record)).isEqualTo(BorrowRecord.BorrowStatus.ACTIVE));
+        assertThat(overdueEventBorrowIds()).hasSize(BATCH_SIZE);
+        assertThat(overdueWatermarkRepository.findById(OverdueScanner.WATERMARK_ID)).isEmpty();
+
+        assertThat(scanner.scan()).isEqualTo(due.size());
+        assertThat(due).allSatisfy(record ->
+                assertThat(statusOf(record)).isEqualTo(BorrowRecord.BorrowStatus.OVERDUE));
+        assertThat(overdueEventBorrowIds()).containsExactlyInAnyOrderElementsOf(
+                due.stream().map(BorrowRecord::getId).toList());
+        assertThat(scannedThrough()).isEqualTo(today);
+    }
+
+    // The member returns the book after the batch was read and its events written, before the status changes
+    @Test
+    void borrowReturnedBetweenTheReadAndTheUpdateLosesItsOverdueEvent() {
+        BorrowRecord returnedMeanwhile = borrow(today.minusDays(2));
+        BorrowRecord stillOut = borrow(today.minusDays(1));
+        BorrowEventOutbox returnsOneBorrow = new BorrowEventOutbox(outboxEventRepository, mongoTemplate) {
+            @Override
+            public int appendAllOnce(List<BorrowEvent> events) {
+                int inserted = super.appendAllOnce(events);
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(returnedMeanwhile.getId())),
+                        new Update().set("status", BorrowRecord.BorrowStatus.RETURNED).set("returnDate", today),
+                        BorrowRecord.class);
+                return inserted;
+            }
+        };
+
+        assertThat(scanner(returnsOneBorrow).scan()).isEqualTo(1);
+
+        assertThat(statusOf(returnedMeanwhile)).isEqualTo(BorrowRecord.BorrowStatus.RETURNED);
+        assertThat(statusOf(stillOut)).isEqualTo(BorrowRecord.BorrowStatus.OVERDUE);
+        assertThat(overdueEventBorrowIds()).containsExactly(stillOut.getId());
+    }
+
+    private OverdueScanner scanner(BorrowEventOutbox outbox) {
+        return new OverdueScanner(mongoTemplate, new OverdueTransitions(mongoTemplate, outbox),
+                overdueWatermarkRepository, new SimpleMeterRegistry(), BATCH_SIZE, Duration.ofMinutes(1));
+    }
+
+    private BorrowRecord borrow(LocalDate dueDate) {
+        BorrowRecord record = new BorrowRecord();
+        record.setMemberId("M-1");
+        record.setMemberName("Member One");
+        record.setMemberEmail("member1@example.com");
+        record.setBookIsbn("978-0-000001");
+        record.setBookTitle("Book 978-0-000001");
+        record.setBorrowDate(dueDate.minusDays(14));
+        record.setDueDate(dueDate);
+        record.setStatus(BorrowRecord.BorrowStatus.ACTIVE);
+        record.setCreatedAt(dueDate.minusDays(14).atStartOfDay());
+        record.setUpdatedAt(dueDate.minusDays(14).atStartOfDay());
+        return mongoTemplate.insert(record);
+    }
+
+    private static BorrowRecord.BorrowStatus statusOf(BorrowRecord record) {
+        return mongoTemplate.findById(record.getId(), BorrowRecord.class).getStatus();
+    }
+
+    private static List<String> overdueEventBorrowIds() {
+        return mongoTemplate.find(Query.query(Criteria.where("eventType").is("OVERDUE")), OutboxEvent.class)
+                .stream()
+                .map(OutboxEvent::getAggregateId)
+                .toList();
+    }
+
+    private static LocalDate scannedThrough() {
+        return overdueWatermarkRepository.findById(OverdueScanner.WATERMARK_ID).orElseThrow().getScannedThrough();
+    }
+}
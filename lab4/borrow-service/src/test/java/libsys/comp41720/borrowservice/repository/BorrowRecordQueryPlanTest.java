@@ -0,0 +1,177 @@
+package libsys.comp41720.borrowservice.repository;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Explains the find command every BorrowRecordRepository query sends, against a MongoDB container holding a small
+// borrow history indexed the way BorrowRecord declares, and fails when the winning plan scans the collection or
+// reads documents it does not return. BorrowQueryBenchmark makes the same check at full scale.
+@Testcontainers(disabledWithoutDocker = true)
+class BorrowRecordQueryPlanTest {
+
+    private static final int RECORDS = 20_000;
+    private static final int MEMBERS = 2_000;
+    private static final int BOOKS = 1_000;
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static final FindCapture FINDS = new FindCapture();
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+    private static BorrowRecordRepository repository;
+    private static BorrowRecord sample;
+
+    @BeforeAll
+    static void seed() {
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(MONGO.getConnectionString()))
+                .addCommandListener(FINDS)
+                .build());
+        mongoTemplate = new MongoTemplate(mongoClient, "borrow_query_plans");
+        repository = new MongoRepositoryFactory(mongoTemplate).getRepository(BorrowRecordRepository.class);
+
+        IndexOperations indexOps = mongoTemplate.indexOps(BorrowRecord.class);
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        IndexResolver.create(mappingContext).resolveIndexFor(BorrowRecord.class).forEach(indexOps::ensureIndex);
+
+        // Mostly returned loans, the rest out and about half of those already marked overdue
+        Random random = new Random(41720);
+        LocalDate today = LocalDate.now();
+        List<BorrowRecord> records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            boolean active = random.nextInt(100) < 8;
+            LocalDate borrowDate = today.minusDays(active ? random.nextInt(28) : 28 + random.nextInt(700));
+            BorrowRecord record = new BorrowRecord();
+            record.setMemberId("M-" + random.nextInt(MEMBERS));
+            record.setMemberName("Member " + i);
+            record.setMemberEmail("member" + i + "@example.com");
+            record.setBookIsbn(String.format("978-0-%06d", random.nextInt(BOOKS)));
+            record.setBookTitle("Book " + record.getBookIsbn());
+            record.setBorrowDate(borrowDate);
+            record.setDueDate(borrowDate.plusDays(14));
+            record.setReturnDate(active ? null : borrowDate.plusDays(random.nextInt(21)));
+            record.setStatus(!active ? BorrowRecord.BorrowStatus.RETURNED
+                    : record.getDueDate().isBefore(today) ? BorrowRecord.BorrowStatus.OVERDUE
+                    : BorrowRecord.BorrowStatus.ACTIVE);
+            record.setCreatedAt(borrowDate.atStartOfDay());
+            record.setUpdatedAt(LocalDateTime.now());
+            records.add(record);
+        }
+        mongoTemplate.insert(records, BorrowRecord.class);
+
+        // Queries run with the arguments of a real active loan so every one of them has something to find
+        sample = mongoTemplate.findOne(
+                Query.query(Criteria.where("status").is(BorrowRecord.BorrowStatus.ACTIVE)), BorrowRecord.class);
+        assertThat(sample).isNotNull();
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"findByMemberId", "findByBookIsbn", "findByStatus", "findActiveBorrowsByMember",
+            "findOverdueBorrows", "findActiveBorrowByMemberAndBook"})
+    void queryIsServedByAnIndex(String query) {
+        FINDS.last = null;
+        run(query);
+        BsonDocument find = FINDS.last;
+        assertThat(find).as("%s sent no find command", query).isNotNull();
+
+        // Session and cluster fields belong to the original command, not to the explain
+        BsonDocument explained = new BsonDocument();
+        find.forEach((key, value) -> {
+            if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+                explained.put(key, value);
+            }
+        });
+        Document explain = mongoTemplate.getDb().runCommand(
+                new Document("explain", explained).append("verbosity", "executionStats"));
+
+        Set<String> stages = new LinkedHashSet<>();
+        Set<String> indexes = new LinkedHashSet<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan"), stages, indexes);
+        Document stats = explain.get("executionStats", Document.class);
+        long returned = ((Number) stats.get("nReturned")).longValue();
+        long docsExamined = ((Number) stats.get("totalDocsExamined")).longValue();
+
+        assertThat(stages).as("%s plan stages, using indexes %s", query, indexes).doesNotContain("COLLSCAN");
+        assertThat(docsExamined)
+                .as("%s documents examined for %d returned; its index does not cover the filter", query, returned)
+                .isLessThanOrEqualTo(returned);
+    }
+
+    private static void run(String query) {
+        switch (query) {
+            case "findByMemberId" -> repository.findByMemberId(sample.getMemberId());
+            case "findByBookIsbn" -> repository.findByBookIsbn(sample.getBookIsbn());
+            case "findByStatus" -> repository.findByStatus(BorrowRecord.BorrowStatus.ACTIVE);
+            case "findActiveBorrowsByMember" -> repository.findActiveBorrowsByMember(sample.getMemberId());
+            case "findOverdueBorrows" -> repository.findOverdueBorrows(LocalDate.now());
+            case "findActiveBorrowByMemberAndBook" ->
+                    repository.findActiveBorrowByMemberAndBook(sample.getMemberId(), sample.getBookIsbn());
+            default -> throw new IllegalArgumentException("Unknown query " + query);
+        }
+    }
+
+    // Classic and slot-based plans nest stages differently, so every nested document is searched
+    private static void collectStages(Object node, Set<String> stages, Set<String> indexes) {
+        if (node instanceof Map<?, ?> map) {
+            if (map.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            if (map.get("indexName") instanceof String indexName) {
+                indexes.add(indexName);
+            }
+            map.values().forEach(value -> collectStages(value, stages, indexes));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages, indexes));
+        }
+    }
+
+    // Keeps the last find command sent, as the driver serialized it
+    private static final class FindCapture implements CommandListener {
+        private volatile BsonDocument last;
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            if ("find".equals(event.getCommandName())) {
+                last = event.getCommand().clone();
+            }
+        }
+    }
+}
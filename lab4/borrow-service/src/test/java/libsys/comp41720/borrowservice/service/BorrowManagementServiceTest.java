@@ -0,0 +1,125 @@
+package libsys.comp41720.borrowservice.service;
+
+import io.grpc.Status;
+import libsys.comp41720.borrowservice.dto.BorrowRequest;
+import libsys.comp41720.borrowservice.entity.BorrowRecord;
+import libsys.comp41720.borrowservice.grpc.BookServiceGrpcClient;
+import libsys.comp41720.borrowservice.outbox.BorrowEventOutbox;
+import libsys.comp41720.borrowservice.repository.BorrowRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// A borrow that fails after its record was saved must leave neither the record nor the copy behind, whether
+// confirming the hold or queueing its event is what failed; a return whose event is lost is undone the same way
+class BorrowManagementServiceTest {
+
+    private static final String ISBN = "978-0-000001";
+    private static final long HOLD_ID = 7L;
+
+    private final BorrowRecordRepository repository = mock(BorrowRecordRepository.class);
+    private final BookServiceGrpcClient client = mock(BookServiceGrpcClient.class);
+    private final BorrowEventOutbox outbox = mock(BorrowEventOutbox.class);
+    private final BorrowManagementService service = new BorrowManagementService(repository, client, outbox);
+
+    @BeforeEach
+    void setUp() {
+        when(client.holdBookAsync(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(HOLD_ID)));
+        when(repository.findActiveBorrowByMemberAndBook("M-1", ISBN)).thenReturn(List.of());
+        when(repository.save(any(BorrowRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void confirmedBorrowIsKeptAndQueued() {
+        when(client.confirmHold(HOLD_ID)).thenReturn(true);
+
+        service.borrowBook(request());
+
+        verify(outbox).append(any());
+        verify(repository, never()).delete(any());
+        verify(client, never()).undoHold(anyLong(), anyString(), anyInt());
+    }
+
+    @Test
+    void refusedConfirmDeletesTheRecord() {
+        when(client.confirmHold(HOLD_ID)).thenReturn(false);
+
+        assertThatThrownBy(() -> service.borrowBook(request())).isInstanceOf(IllegalStateException.class);
+
+        verify(repository).delete(any(BorrowRecord.class));
+        verify(outbox, never()).append(any());
+    }
+
+    // The deadline may run out after book-service confirmed, so the copy is given back either way
+    @Test
+    void failedConfirmCallDeletesTheRecordAndReturnsTheCopy() {
+        when(client.confirmHold(HOLD_ID)).thenThrow(Status.DEADLINE_EXCEEDED.asRuntimeException());
+        when(client.undoHold(HOLD_ID, ISBN, 1)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.borrowBook(request())).isInstanceOf(RuntimeException.class);
+
+        verify(repository).delete(any(BorrowRecord.class));
+        verify(client).undoHold(HOLD_ID, ISBN, 1);
+        verify(outbox, never()).append(any());
+    }
+
+    @Test
+    void failedOutboxAppendDeletesTheRecordAndReturnsTheCopy() {
+        when(client.confirmHold(HOLD_ID)).thenReturn(true);
+        when(outbox.append(any())).thenThrow(new IllegalStateException("outbox unavailable"));
+        when(client.releaseBook(ISBN, 1)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.borrowBook(request())).isInstanceOf(RuntimeException.class);
+
+        verify(repository).delete(any(BorrowRecord.class));
+        verify(client).releaseBook(ISBN, 1);
+    }
+
+    // The record is no longer active once saved, so a lost RETURN event could never be recorded by a retry
+    @Test
+    void failedOutboxAppendOnReturnRestoresTheRecordAndTakesTheCopyBack() {
+        BorrowRecord record = new BorrowRecord();
+        record.setId("B-1");
+        record.setMemberId("M-1");
+        record.setMemberName("Ada Lovelace");
+        record.setMemberEmail("ada@example.com");
+        record.setBookIsbn(ISBN);
+        record.setBookTitle("The Pragmatic Programmer");
+        record.setBorrowDate(LocalDate.now().minusDays(20));
+        record.setDueDate(LocalDate.now().minusDays(6));
+        record.setStatus(BorrowRecord.BorrowStatus.OVERDUE);
+        when(repository.findById("B-1")).thenReturn(Optional.of(record));
+        when(client.releaseBook(ISBN, 1)).thenReturn(true);
+        when(outbox.append(any())).thenThrow(new IllegalStateException("outbox unavailable"));
+        when(client.reserveBook(ISBN, 1)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.returnBook("B-1")).isInstanceOf(RuntimeException.class);
+
+        assertThat(record.getStatus()).isEqualTo(BorrowRecord.BorrowStatus.OVERDUE);
+        assertThat(record.getReturnDate()).isNull();
+        verify(repository, times(2)).save(record);
+        verify(client).reserveBook(ISBN, 1);
+    }
+
+    private static BorrowRequest request() {
+        return new BorrowRequest("M-1", "Ada Lovelace", "ada@example.com", ISBN, "The Pragmatic Programmer", 14,
+                null);
+    }
+}
@@ -36,6 +36,8 @@ public class EmailNotificationService {
                 sendBorrowConfirmationEmail(event);
             } else if ("RETURN".equals(event.getEventType().toString())) {
                 sendReturnConfirmationEmail(event);
+            } else if ("OVERDUE".equals(event.getEventType().toString())) {
+                sendOverdueReminderEmail(event);
             }
             
             // Manually acknowledge the message
@@ -60,34 +62,7 @@ public class EmailNotificationService {
             helper.setTo(event.getMemberEmail().toString());
             helper.setSubject("Library Book Borrowed: " + event.getBookTitle());
             
-            String emailContent = String.format("""
-                    Dear %s,
-                    
-                    This email confirms that you have successfully borrowed the following book:
-                    
-                    Book Title: %s
-                    ISBN: %s
-                    Borrow Date: %s
-                    Due Date: %s
-                    Borrow ID: %s
-                    
-                    Please return the book on or before the due date to avoid any late fees.
-                    
-                    Thank you for using our library system!
-                    
-                    Best Regards,
-                    Library Management System
-                    COMP41720 Project
-                    """,
-                    event.getMemberName(),
-                    event.getBookTitle(),
-                    event.getBookIsbn(),
-                    event.getBorrowDate(),
-                    event.getDueDate(),
-                    event.getBorrowId()
-            );
-            
-            helper.setText(emailContent);
+            helper.setText(renderBorrowConfirmation(event));
         };
         
         try {
@@ -109,29 +84,7 @@ public class EmailNotificationService {
             helper.setTo(event.getMemberEmail().toString());
             helper.setSubject("Library Book Returned: " + event.getBookTitle());
             
-            String emailContent = String.format("""
-                    Dear %s,
-                    
-                    This email confirms that you have successfully returned the following book:
-                    
-                    Book Title: %s
-                    ISBN: %s
-                    Borrow ID: %s
-                    
-                    Thank you for returning the book on time.
-                    We hope you enjoyed reading it!
-                    
-                    Best Regards,
-                    Library Management System
-                    COMP41720 Project
-                    """,
-                    event.getMemberName(),
-                    event.getBookTitle(),
-                    event.getBookIsbn(),
-                    event.getBorrowId()
-            );
-            
-            helper.setText(emailContent);
+            helper.setText(renderReturnConfirmation(event));
         };
         
         try {
@@ -142,5 +95,106 @@ public class EmailNotificationService {
             throw new RuntimeException("Failed to send email", e);
         }
     }
+    
+    private void sendOverdueReminderEmail(BorrowEvent event) {
+        log.info("Preparing overdue reminder email for: {}", event.getMemberEmail());
+        
+        MimeMessagePreparator messagePreparator = mimeMessage -> {
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            
+            helper.setFrom("library-system@comp41720.edu");
+            helper.setTo(event.getMemberEmail().toString());
+            helper.setSubject("Library Book Overdue: " + event.getBookTitle());
+            
+            helper.setText(renderOverdueReminder(event));
+        };
+        
+        try {
+            javaMailSender.send(messagePreparator);
+            log.info("Overdue reminder email sent successfully to: {}", event.getMemberEmail());
+        } catch (MailException e) {
+            log.error("Failed to send overdue reminder email to: {}", event.getMemberEmail(), e);
+            throw new RuntimeException("Failed to send email", e);
+        }
+    }
+    
+    // Rendering is kept apart from sending so it can be measured without a mail server
+    public static String renderBorrowConfirmation(BorrowEvent event) {
+        return String.format("""
+                Dear %s,
+                
+                This email confirms that you have successfully borrowed the following book:
+                
+                Book Title: %s
+                ISBN: %s
+                Borrow Date: %s
+                Due Date: %s
+                Borrow ID: %s
+                
+                Please return the book on or before the due date to avoid any late fees.
+                
+                Thank you for using our library system!
+                
+                Best Regards,
+                Library Management System
+                COMP41720 Project
+                """,
+                event.getMemberName(),
+                event.getBookTitle(),
+                event.getBookIsbn(),
+                event.getBorrowDate(),
+                event.getDueDate(),
+                event.getBorrowId()
+        );
+    }
+    
+    public static String renderReturnConfirmation(BorrowEvent event) {
+        return String.format("""
+                Dear %s,
+                
+                This email confirms that you have successfully returned the following book:
+                
+                Book Title: %s
+                ISBN: %s
+                Borrow ID: %s
+                
+                Thank you for returning the book on time.
+                We hope you enjoyed reading it!
+                
+                Best Regards,
+                Library Management System
+                COMP41720 Project
+                """,
+                event.getMemberName(),
+                event.getBookTitle(),
+                event.getBookIsbn(),
+                event.getBorrowId()
+        );
+    }
+    
+    public static String renderOverdueReminder(BorrowEvent event) {
+        return String.format("""
+                Dear %s,
+                
+                The following book was due back on %s and has not been returned yet:
+                
+                Book Title: %s
+                ISBN: %s
+                Borrow Date: %s
+                Borrow ID: %s
+                
+                Please return it as soon as possible to avoid further late fees.
+                
+                Best Regards,
+                Library Management System
+                COMP41720 Project
+                """,
+                event.getMemberName(),
+                event.getDueDate(),
+                event.getBookTitle(),
+                event.getBookIsbn(),
+                event.getBorrowDate(),
+                event.getBorrowId()
+        );
+    }
 }
-